@@ -282,6 +282,53 @@ public class BasicDB extends DB {
     return Status.OK;
   }
 
+  /**
+   * Conditionally replace the value of one field of a record. Always succeeds.
+   *
+   * @param table    The name of the table
+   * @param key      The record key of the record to write.
+   * @param field    The name of the field to write.
+   * @param expected The value the field must hold.
+   * @param value    The new value of the field.
+   * @return Zero on success, a non-zero error code on error
+   */
+  @Override
+  public Status compareAndSet(String table, String key, String field, ByteIterator expected, ByteIterator value) {
+    delay();
+
+    if (verbose) {
+      StringBuilder sb = getStringBuilder();
+      sb.append("COMPARE-AND-SET ").append(table).append(" ").append(key).append(" [ ")
+          .append(field).append("=").append(expected).append(" -> ").append(value).append(" ]");
+      System.out.println(sb);
+    }
+
+    return Status.OK;
+  }
+
+  /**
+   * Add to a counter held in one field of a record.
+   *
+   * @param table The name of the table
+   * @param key   The record key of the record holding the counter.
+   * @param field The name of the field holding the counter.
+   * @param delta The amount to add.
+   * @return Zero on success, a non-zero error code on error
+   */
+  @Override
+  public Status increment(String table, String key, String field, long delta) {
+    delay();
+
+    if (verbose) {
+      StringBuilder sb = getStringBuilder();
+      sb.append("INCREMENT ").append(table).append(" ").append(key).append(" [ ")
+          .append(field).append("+=").append(delta).append(" ]");
+      System.out.println(sb);
+    }
+
+    return Status.OK;
+  }
+
   @Override
   public void cleanup() {
     synchronized (MUTEX) {
@@ -29,7 +29,7 @@ import site.ycsb.workloads.TimeSeriesWorkload;
  * Basic DB for printing out time series workloads and/or tracking the distribution
  * of keys and fields.
  */
-public class BasicTSDB extends BasicDB {
+public class BasicTSDB extends BasicDB implements TimeseriesBatchWriter {
 
   /** Time series workload specific counters. */
   protected static Map<Long, Integer> timestamps;
@@ -173,7 +173,36 @@ public class BasicTSDB extends BasicDB {
   @Override
   public Status insert(String table, String key, Map<String, ByteIterator> values) {
     delay();
-    
+    recordInsert(table, key, values);
+    return Status.OK;
+  }
+
+  /**
+   * Reference batch implementation: a single delay for the whole batch, then
+   * the same printing and counting as {@link #insert(String, String, Map)} for
+   * every point.
+   */
+  @Override
+  public Status insertBatch(String table, TimeseriesBatch batch) {
+    delay();
+    if (!verbose && !count) {
+      return Status.OK;
+    }
+    final Map<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    for (int i = 0; i < batch.size(); i++) {
+      values.clear();
+      for (int t = 0; t < batch.getTagCount(); t++) {
+        values.put(batch.getTagKey(t), new StringByteIterator(batch.getTagValue(i, t)));
+      }
+      values.put(timestampKey, new NumericByteIterator(batch.getTimestamp(i)));
+      values.put(valueKey, batch.isFloatingPoint(i) ? new NumericByteIterator(batch.getDoubleValue(i)) 
+          : new NumericByteIterator(batch.getLongValue(i)));
+      recordInsert(table, batch.getMetric(i), values);
+    }
+    return Status.OK;
+  }
+
+  private void recordInsert(String table, String key, Map<String, ByteIterator> values) {
     boolean isFloat = false;
     
     if (verbose) {
@@ -219,8 +248,6 @@ public class BasicTSDB extends BasicDB {
         incCounter(integers, hash);
       }
     }
-
-    return Status.OK;
   }
 
   @Override
@@ -16,6 +16,8 @@
  */
 package site.ycsb;
 
+import java.nio.ByteBuffer;
+
 /**
  *  A ByteIterator that iterates through a byte array.
  */
@@ -51,6 +53,22 @@ public class ByteArrayByteIterator extends ByteIterator {
     return ret;
   }
 
+  @Override
+  public int nextBuf(byte[] buf, int bufOff) {
+    int size = Math.min(len - off, buf.length - bufOff);
+    System.arraycopy(str, off, buf, bufOff, size);
+    off += size;
+    return bufOff + size;
+  }
+
+  @Override
+  public int nextBuf(ByteBuffer buf) {
+    int size = Math.min(len - off, buf.remaining());
+    buf.put(str, off, size);
+    off += size;
+    return size;
+  }
+
   @Override
   public long bytesLeft() {
     return len - off;
@@ -16,9 +16,9 @@
  */
 package site.ycsb;
 
+import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 
 /**
@@ -42,6 +42,12 @@ import java.util.Iterator;
  * The StringByteIterator class contains a number of convenience methods for
  * backend drivers that convert between Map&lt;String,String&gt; and
  * Map&lt;String,ByteBuffer&gt;.
+ * <p>
+ * Drivers that write to NIO channels or native libraries can move the
+ * contents in bulk with {@link #nextBuf(ByteBuffer)}, which also accepts
+ * direct buffers, or stream them through {@link #asInputStream()}, instead of
+ * materializing a heap array with {@link #toArray()}.
+ * </p>
  *
  */
 public abstract class ByteIterator implements Iterator<Byte> {
@@ -66,6 +72,51 @@ public abstract class ByteIterator implements Iterator<Byte> {
     return sz;
   }
 
+  /**
+   * Consumes as many bytes as fit in the remaining space of the buffer, or
+   * all of the remaining bytes if fewer, and advances the buffer's position.
+   * Works with both heap and direct buffers.
+   *
+   * @param buf The buffer to fill.
+   * @return The number of bytes transferred.
+   */
+  public int nextBuf(ByteBuffer buf) {
+    int start = buf.position();
+    while (buf.hasRemaining() && hasNext()) {
+      buf.put(nextByte());
+    }
+    return buf.position() - start;
+  }
+
+  /**
+   * Returns an InputStream view of the remaining contents. Reading from the
+   * stream consumes this iterator.
+   */
+  public InputStream asInputStream() {
+    return new InputStream() {
+      @Override
+      public int read() {
+        return hasNext() ? nextByte() & 0xFF : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+          return 0;
+        }
+        if (!hasNext()) {
+          return -1;
+        }
+        return nextBuf(ByteBuffer.wrap(b, off, len));
+      }
+
+      @Override
+      public int available() {
+        return (int) Math.min(bytesLeft(), Integer.MAX_VALUE);
+      }
+    };
+  }
+
   public abstract long bytesLeft();
 
   @Override
@@ -84,9 +135,7 @@ public abstract class ByteIterator implements Iterator<Byte> {
   
   /** Consumes remaining contents of this object, and returns them as a string. */
   public String toString() {
-    Charset cset = Charset.forName("UTF-8");
-    CharBuffer cb = cset.decode(ByteBuffer.wrap(this.toArray()));
-    return cb.toString();
+    return new String(this.toArray(), StandardCharsets.UTF_8);
   }
 
   /** Consumes remaining contents of this object, and returns them as a byte array. */
@@ -0,0 +1,304 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded map deciding which entries a {@link CachingDB} keeps. Not
+ * thread safe, callers synchronize.
+ *
+ * @param <V> The cached values.
+ */
+abstract class CachePolicy<V> {
+  /** Returns the value for the key and records the access, or null if it is not cached. */
+  abstract V get(String key);
+
+  /** Adds or replaces an entry, evicting others if the cache is full. */
+  abstract void put(String key, V value);
+
+  abstract void remove(String key);
+
+  abstract int size();
+
+  /**
+   * @param name lru, slru or tinylfu.
+   * @param capacity The maximum number of entries.
+   * @return A new, empty policy.
+   */
+  static <V> CachePolicy<V> create(final String name, final int capacity) {
+    switch (name) {
+    case "lru":
+      return new Lru<V>(capacity);
+    case "slru":
+      return new Slru<V>(capacity);
+    case "tinylfu":
+      return new TinyLfu<V>(capacity);
+    default:
+      throw new IllegalArgumentException("Unknown cache policy '" + name + "'.");
+    }
+  }
+
+  /**
+   * Least recently used.
+   */
+  static final class Lru<V> extends CachePolicy<V> {
+    private final LinkedHashMap<String, V> map = new LinkedHashMap<String, V>(16, 0.75f, true);
+    private final int capacity;
+
+    Lru(final int capacity) {
+      this.capacity = capacity;
+    }
+
+    @Override
+    V get(final String key) {
+      return map.get(key);
+    }
+
+    @Override
+    void put(final String key, final V value) {
+      map.put(key, value);
+      while (map.size() > capacity) {
+        removeEldest();
+      }
+    }
+
+    @Override
+    void remove(final String key) {
+      map.remove(key);
+    }
+
+    @Override
+    int size() {
+      return map.size();
+    }
+
+    boolean containsKey(final String key) {
+      return map.containsKey(key);
+    }
+
+    /** @return The least recently used key, or null if empty. */
+    String eldestKey() {
+      return map.isEmpty() ? null : map.keySet().iterator().next();
+    }
+
+    /** Removes the least recently used entry and returns it. */
+    Map.Entry<String, V> removeEldest() {
+      final Iterator<Map.Entry<String, V>> it = map.entrySet().iterator();
+      final Map.Entry<String, V> eldest = it.next();
+      it.remove();
+      return eldest;
+    }
+  }
+
+  /**
+   * Segmented LRU: new entries go on probation and are only protected once
+   * they are hit again, so a burst of one-off reads cannot flush the entries
+   * that are used repeatedly.
+   */
+  static final class Slru<V> extends CachePolicy<V> {
+    private final Lru<V> probation;
+    private final Lru<V> protectedSegment;
+    private final int capacity;
+    private final int protectedCapacity;
+
+    Slru(final int capacity) {
+      this.capacity = capacity;
+      protectedCapacity = (int) (capacity * 0.8);
+      probation = new Lru<V>(Integer.MAX_VALUE);
+      protectedSegment = new Lru<V>(Integer.MAX_VALUE);
+    }
+
+    @Override
+    V get(final String key) {
+      V value = protectedSegment.get(key);
+      if (value == null) {
+        value = probation.get(key);
+        if (value != null) {
+          probation.remove(key);
+          protectedSegment.put(key, value);
+          while (protectedSegment.size() > protectedCapacity) {
+            final Map.Entry<String, V> demoted = protectedSegment.removeEldest();
+            probation.put(demoted.getKey(), demoted.getValue());
+          }
+        }
+      }
+      return value;
+    }
+
+    @Override
+    void put(final String key, final V value) {
+      if (protectedSegment.containsKey(key)) {
+        protectedSegment.put(key, value);
+        return;
+      }
+      probation.put(key, value);
+      while (size() > capacity) {
+        remove(victim());
+      }
+    }
+
+    @Override
+    void remove(final String key) {
+      probation.remove(key);
+      protectedSegment.remove(key);
+    }
+
+    @Override
+    int size() {
+      return probation.size() + protectedSegment.size();
+    }
+
+    boolean containsKey(final String key) {
+      return probation.containsKey(key) || protectedSegment.containsKey(key);
+    }
+
+    /** @return The key that would be evicted next, or null if empty. */
+    String victim() {
+      final String key = probation.eldestKey();
+      return key != null ? key : protectedSegment.eldestKey();
+    }
+  }
+
+  /**
+   * W-TinyLFU: a small LRU window in front of a segmented LRU. Entries
+   * leaving the window only replace the segmented LRU's victim if a
+   * frequency sketch says they were used more often.
+   */
+  static final class TinyLfu<V> extends CachePolicy<V> {
+    private final Lru<V> window;
+    private final Slru<V> main;
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final FrequencySketch sketch;
+
+    TinyLfu(final int capacity) {
+      windowCapacity = Math.max(1, capacity / 100);
+      mainCapacity = Math.max(1, capacity - windowCapacity);
+      window = new Lru<V>(Integer.MAX_VALUE);
+      main = new Slru<V>(mainCapacity);
+      sketch = new FrequencySketch(capacity);
+    }
+
+    @Override
+    V get(final String key) {
+      sketch.increment(key);
+      final V value = window.get(key);
+      return value != null ? value : main.get(key);
+    }
+
+    @Override
+    void put(final String key, final V value) {
+      if (main.containsKey(key)) {
+        main.put(key, value);
+        return;
+      }
+      window.put(key, value);
+      if (window.size() <= windowCapacity) {
+        return;
+      }
+      final Map.Entry<String, V> candidate = window.removeEldest();
+      if (main.size() < mainCapacity) {
+        main.put(candidate.getKey(), candidate.getValue());
+        return;
+      }
+      final String victim = main.victim();
+      if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim)) {
+        main.remove(victim);
+        main.put(candidate.getKey(), candidate.getValue());
+      }
+    }
+
+    @Override
+    void remove(final String key) {
+      window.remove(key);
+      main.remove(key);
+    }
+
+    @Override
+    int size() {
+      return window.size() + main.size();
+    }
+  }
+
+  /**
+   * A count-min sketch of counters saturating at 15, one byte each, that are
+   * halved periodically, so the frequencies follow changes in popularity.
+   * Every row hashes the key independently.
+   */
+  static final class FrequencySketch {
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final byte[][] counters;
+    private final int shift;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(final int capacity) {
+      final int width = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+      shift = 64 - Integer.numberOfTrailingZeros(width);
+      counters = new byte[SEEDS.length][width];
+      sampleSize = 10 * Math.max(1, capacity);
+    }
+
+    void increment(final String key) {
+      final int hash = key.hashCode();
+      for (int i = 0; i < SEEDS.length; i++) {
+        final int index = index(hash, i);
+        if (counters[i][index] < 15) {
+          counters[i][index]++;
+        }
+      }
+      if (++additions >= sampleSize) {
+        reset();
+      }
+    }
+
+    int frequency(final String key) {
+      final int hash = key.hashCode();
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < SEEDS.length; i++) {
+        frequency = Math.min(frequency, counters[i][index(hash, i)]);
+      }
+      return frequency;
+    }
+
+    private int index(final int hash, final int row) {
+      return (int) (mix(hash ^ SEEDS[row]) >>> shift);
+    }
+
+    /** The SplitMix64 finalizer, so every bit of the seeded hash affects the index. */
+    private static long mix(final long z) {
+      long x = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+      x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+      return x ^ (x >>> 31);
+    }
+
+    private void reset() {
+      for (final byte[] row : counters) {
+        for (int i = 0; i < row.length; i++) {
+          row[i] >>= 1;
+        }
+      }
+      additions /= 2;
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import site.ycsb.measurements.Measurements;
+
+/**
+ * A decorator ({@code db.decorators=cache}) that puts a bounded in-process
+ * read-through cache, shared by all client threads, in front of any binding.
+ * <p>
+ * Whole records are cached: a read miss fetches every field from the DB,
+ * caches the record and then returns the requested fields. Writes either
+ * update cached records ({@code cache.writepolicy=through}) or drop them
+ * ({@code invalidate}); deletes, conditional writes and increments always
+ * drop them, as only the DB knows their outcome. A record fetched or
+ * written while another write to the same key is in progress is not cached,
+ * as the DB may have ordered the two either way. Scans bypass the cache.
+ * Read latency is additionally recorded as READ-CACHE-HIT and
+ * READ-CACHE-MISS, and the hits, misses and hit ratio are counted under
+ * CACHE.
+ */
+public class CachingDB extends DBDecorator {
+  /** The maximum number of records cached. */
+  public static final String SIZE_PROPERTY = "cache.size";
+  public static final String SIZE_PROPERTY_DEFAULT = "10000";
+
+  /** The eviction policy: lru, slru (segmented LRU) or tinylfu (W-TinyLFU). */
+  public static final String POLICY_PROPERTY = "cache.policy";
+  public static final String POLICY_PROPERTY_DEFAULT = "lru";
+
+  /** What writes do to cached records: through or invalidate. */
+  public static final String WRITE_POLICY_PROPERTY = "cache.writepolicy";
+  public static final String WRITE_POLICY_PROPERTY_DEFAULT = "through";
+
+  /** The number of independently locked parts the cache is split into. */
+  public static final String SHARDS_PROPERTY = "cache.shards";
+  public static final String SHARDS_PROPERTY_DEFAULT = "16";
+
+  private static final Object MUTEX = new Object();
+  private static int counter = 0;
+  private static Shard[] shards;
+
+  private final Measurements measurements = Measurements.getMeasurements();
+  private boolean writeThrough;
+
+  public CachingDB(final DB db) {
+    super(db);
+  }
+
+  @Override
+  public void init() throws DBException {
+    final String writePolicy = getProperties().getProperty(WRITE_POLICY_PROPERTY, WRITE_POLICY_PROPERTY_DEFAULT);
+    if (!writePolicy.equals("through") && !writePolicy.equals("invalidate")) {
+      throw new DBException("Unknown cache write policy '" + writePolicy + "'.");
+    }
+    writeThrough = writePolicy.equals("through");
+    synchronized (MUTEX) {
+      if (counter == 0) {
+        final int size = Integer.parseInt(getProperties().getProperty(SIZE_PROPERTY, SIZE_PROPERTY_DEFAULT));
+        final int count = Integer.parseInt(getProperties().getProperty(SHARDS_PROPERTY, SHARDS_PROPERTY_DEFAULT));
+        final String policy = getProperties().getProperty(POLICY_PROPERTY, POLICY_PROPERTY_DEFAULT);
+        if (size < count || count < 1) {
+          throw new DBException("'" + SIZE_PROPERTY + "' must be at least '" + SHARDS_PROPERTY + "'.");
+        }
+        shards = new Shard[count];
+        try {
+          for (int i = 0; i < count; i++) {
+            // Spread the remainder so the shards add up to the configured size.
+            shards[i] = new Shard(CachePolicy.create(policy, size / count + (i < size % count ? 1 : 0)));
+          }
+        } catch (IllegalArgumentException e) {
+          throw new DBException(e.getMessage());
+        }
+      }
+      counter++;
+    }
+    measurements.countRatio("CACHE", "HitRatio", "Hits", "Hits", "Misses");
+    super.init();
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    super.cleanup();
+    synchronized (MUTEX) {
+      counter--;
+    }
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    final long st = System.nanoTime();
+    final String cacheKey = table + ':' + key;
+    final Shard shard = shard(cacheKey);
+    Map<String, byte[]> record;
+    final KeyState state;
+    final long generation;
+    synchronized (shard) {
+      record = shard.policy.get(cacheKey);
+      if (record != null) {
+        state = null;
+        generation = 0;
+      } else {
+        state = shard.acquire(cacheKey);
+        generation = state.generation;
+      }
+    }
+    if (record != null) {
+      copyTo(record, fields, result);
+      measurements.count("CACHE", "Hits", 1);
+      measurements.measureNanos("READ-CACHE-HIT", System.nanoTime() - st);
+      return Status.OK;
+    }
+
+    final HashMap<String, ByteIterator> row = new HashMap<String, ByteIterator>();
+    final Status status = super.read(table, key, null, row);
+    if (status.isOk()) {
+      record = copy(row);
+      copyTo(record, fields, result);
+    }
+    synchronized (shard) {
+      // A write that started after the fetch may have been overtaken by it, keep its value out.
+      if (record != null && state.generation == generation) {
+        shard.policy.put(cacheKey, record);
+      }
+      shard.release(cacheKey, state);
+    }
+    measurements.count("CACHE", "Misses", 1);
+    measurements.measureNanos("READ-CACHE-MISS", System.nanoTime() - st);
+    return status;
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    if (!writeThrough) {
+      final long generation = beginWrite(table, key);
+      return endWrite(table, key, generation, super.update(table, key, values), null, false);
+    }
+    // The DB consumes the iterators, so keep a copy for the cache.
+    final Map<String, byte[]> update = copy(values);
+    final long generation = beginWrite(table, key);
+    return endWrite(table, key, generation, super.update(table, key, iterators(update)), update, true);
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    if (!writeThrough) {
+      final long generation = beginWrite(table, key);
+      return endWrite(table, key, generation, super.insert(table, key, values), null, false);
+    }
+    final Map<String, byte[]> record = copy(values);
+    final long generation = beginWrite(table, key);
+    return endWrite(table, key, generation, super.insert(table, key, iterators(record)), record, false);
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    final long generation = beginWrite(table, key);
+    return endWrite(table, key, generation, super.delete(table, key), null, false);
+  }
+
+  @Override
+  public Status compareAndSet(String table, String key, String field, ByteIterator expected, ByteIterator value) {
+    final long generation = beginWrite(table, key);
+    return endWrite(table, key, generation, super.compareAndSet(table, key, field, expected, value), null, false);
+  }
+
+  @Override
+  public Status increment(String table, String key, String field, long delta) {
+    final long generation = beginWrite(table, key);
+    return endWrite(table, key, generation, super.increment(table, key, field, delta), null, false);
+  }
+
+  /**
+   * Announces a write to a key, so read misses fetching it do not cache what they get.
+   */
+  private static long beginWrite(final String table, final String key) {
+    final String cacheKey = table + ':' + key;
+    final Shard shard = shard(cacheKey);
+    synchronized (shard) {
+      return ++shard.acquire(cacheKey).generation;
+    }
+  }
+
+  /**
+   * Applies a completed write to the cache. Its value is only cached if no other
+   * write to the key started or ended while it ran, as the DB may have applied
+   * them in either order; otherwise the cached record is dropped.
+   *
+   * @param generation The generation returned by {@link #beginWrite}.
+   * @param value The fields written, or null to drop the cached record.
+   * @param merge Whether the fields update the cached record rather than replace it.
+   * @return The status of the write.
+   */
+  private static Status endWrite(final String table, final String key, final long generation, final Status status,
+                                 final Map<String, byte[]> value, final boolean merge) {
+    final String cacheKey = table + ':' + key;
+    final Shard shard = shard(cacheKey);
+    synchronized (shard) {
+      final KeyState state = shard.busy.get(cacheKey);
+      final boolean alone = state.generation == generation;
+      state.generation++;
+      final Map<String, byte[]> cached = shard.policy.get(cacheKey);
+      if (value == null || !alone || !status.isOk() || (merge && cached == null)) {
+        shard.policy.remove(cacheKey);
+      } else if (merge) {
+        final Map<String, byte[]> merged = new HashMap<String, byte[]>(cached);
+        merged.putAll(value);
+        shard.policy.put(cacheKey, merged);
+      } else {
+        shard.policy.put(cacheKey, value);
+      }
+      shard.release(cacheKey, state);
+    }
+    return status;
+  }
+
+  private static Shard shard(final String cacheKey) {
+    return shards[(cacheKey.hashCode() & Integer.MAX_VALUE) % shards.length];
+  }
+
+  /**
+   * One independently locked part of the cache, and the keys with writes or
+   * read misses in progress.
+   */
+  private static final class Shard {
+    private final CachePolicy<Map<String, byte[]>> policy;
+    private final HashMap<String, KeyState> busy = new HashMap<String, KeyState>();
+
+    Shard(final CachePolicy<Map<String, byte[]>> policy) {
+      this.policy = policy;
+    }
+
+    KeyState acquire(final String cacheKey) {
+      KeyState state = busy.get(cacheKey);
+      if (state == null) {
+        state = new KeyState();
+        busy.put(cacheKey, state);
+      }
+      state.users++;
+      return state;
+    }
+
+    void release(final String cacheKey, final KeyState state) {
+      if (--state.users == 0) {
+        busy.remove(cacheKey);
+      }
+    }
+  }
+
+  /**
+   * Counts the starts and ends of writes to a key while anything is in progress on it.
+   */
+  private static final class KeyState {
+    private long generation;
+    private int users;
+  }
+
+  private static Map<String, byte[]> copy(final Map<String, ByteIterator> values) {
+    final Map<String, byte[]> copy = new HashMap<String, byte[]>(values.size() * 2);
+    for (final Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+      copy.put(entry.getKey(), entry.getValue().toArray());
+    }
+    return copy;
+  }
+
+  private static Map<String, ByteIterator> iterators(final Map<String, byte[]> values) {
+    final Map<String, ByteIterator> iterators = new HashMap<String, ByteIterator>(values.size() * 2);
+    for (final Map.Entry<String, byte[]> entry : values.entrySet()) {
+      iterators.put(entry.getKey(), new ByteArrayByteIterator(entry.getValue()));
+    }
+    return iterators;
+  }
+
+  private static void copyTo(final Map<String, byte[]> record, final Set<String> fields,
+                             final Map<String, ByteIterator> result) {
+    for (final Map.Entry<String, byte[]> entry : record.entrySet()) {
+      if (fields == null || fields.contains(entry.getKey())) {
+        result.put(entry.getKey(), new ByteArrayByteIterator(entry.getValue()));
+      }
+    }
+  }
+}
@@ -149,11 +149,35 @@ public final class Client {
    */
   public static final String LABEL_PROPERTY = "label";
 
+  /**
+   * The number of transactions each client thread runs before the measured
+   * run starts. These are not counted or measured.
+   */
+  public static final String WARM_UP_OPERATIONS_PROPERTY = "warmupoperations";
+
+  /**
+   * The minimum time (in seconds) each client thread runs transactions
+   * before the measured run starts.
+   */
+  public static final String WARM_UP_TIME_PROPERTY = "warmuptime";
+
+  /**
+   * The seed of the random numbers drawn by the generators and value fillers.
+   * Every client thread gets its own stream, so runs with the same seed, thread
+   * count and workload issue the same operations on the same keys.
+   */
+  public static final String RANDOM_SEED_PROPERTY = "randomseed";
+
   /**
    * An optional thread used to track progress and measure JVM stats.
    */
   private static StatusThread statusthread = null;
 
+  /**
+   * Where the client threads wait for each other before the measured run.
+   */
+  private static StartBarrier startbarrier = null;
+
   // HTrace integration related constants.
 
   /**
@@ -241,6 +265,14 @@ public final class Client {
       double throughput = 1000.0 * (opcount) / (runtime);
       exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
 
+      final Measurements measurements = Measurements.getMeasurements();
+      if (measurements.isTrackingBytes()) {
+        exporter.write("OVERALL", "ReadThroughput(bytes/sec)",
+            1000.0 * measurements.getTotalBytesRead() / runtime);
+        exporter.write("OVERALL", "WriteThroughput(bytes/sec)",
+            1000.0 * measurements.getTotalBytesWritten() / runtime);
+      }
+
       final Map<String, Long[]> gcs = Utils.getGCStatst();
       long totalGCCount = 0;
       long totalGCTime = 0;
@@ -264,8 +296,27 @@ public final class Client {
         exporter.write("MAX_SYS_LOAD_AVG", "Load", statusthread.getMaxLoadAvg());
         exporter.write("MIN_SYS_LOAD_AVG", "Load", statusthread.getMinLoadAvg());
       }
+      if (statusthread != null && statusthread.trackClientCpu()) {
+        final long clientCpuNs = statusthread.getClientCpuTimeNs();
+        final long clientAllocBytes = statusthread.getClientAllocatedBytes();
+        exporter.write("CLIENT_CPU", "Time(ms)", TimeUnit.NANOSECONDS.toMillis(clientCpuNs));
+        exporter.write("CLIENT_CPU", "Time(%)", ((double) clientCpuNs / TimeUnit.MILLISECONDS.toNanos(runtime)
+            / Runtime.getRuntime().availableProcessors()) * (double) 100);
+        exporter.write("CLIENT_ALLOC", "Bytes", clientAllocBytes);
+        if (opcount > 0) {
+          exporter.write("CLIENT_CPU", "TimePerOp(us)", clientCpuNs / 1000.0 / opcount);
+          exporter.write("CLIENT_ALLOC", "BytesPerOp", (double) clientAllocBytes / opcount);
+        }
+        if (statusthread.getClientIntervals() > 0) {
+          exporter.write("CLIENT_CPU", "MaxIntervalTimePerOp(us)", statusthread.getMaxClientCpuPerOpUs());
+          exporter.write("CLIENT_CPU", "MinIntervalTimePerOp(us)", statusthread.getMinClientCpuPerOpUs());
+          exporter.write("CLIENT_ALLOC", "MaxIntervalBytesPerOp", statusthread.getMaxClientAllocPerOp());
+          exporter.write("CLIENT_ALLOC", "MinIntervalBytesPerOp", statusthread.getMinClientAllocPerOp());
+        }
+        exporter.write("CLIENT_CPU_SATURATED_INTERVALS", "Count", statusthread.getClientCpuSaturatedIntervals());
+      }
 
-      Measurements.getMeasurements().exportMeasurements(exporter);
+      measurements.exportMeasurements(exporter);
     } finally {
       if (exporter != null) {
         exporter.close();
@@ -299,6 +350,10 @@ public final class Client {
 
     Measurements.setProperties(props);
 
+    if (props.getProperty(RANDOM_SEED_PROPERTY) != null) {
+      Utils.setRandomSeed(Long.parseLong(props.getProperty(RANDOM_SEED_PROPERTY)));
+    }
+
     Workload workload = getWorkload(props);
 
     final Tracer tracer = getTracer(props, workload);
@@ -321,6 +376,8 @@ public final class Client {
           Measurements.MEASUREMENT_TRACK_JVM_PROPERTY_DEFAULT).equals("true");
       statusthread = new StatusThread(completeLatch, clients, label, standardstatus, statusIntervalSeconds,
           trackJVMStats);
+      statusthread.setStuckThreadFactor(Double.parseDouble(props.getProperty(
+          StatusThread.STUCK_THREAD_FACTOR_PROPERTY, StatusThread.STUCK_THREAD_FACTOR_PROPERTY_DEFAULT)));
       statusthread.start();
     }
 
@@ -359,6 +416,10 @@ public final class Client {
       }
 
       en = System.currentTimeMillis();
+      // Measure from the moment the clients were released, after their init and warm-up.
+      if (startbarrier.getStartTimeMs() > 0) {
+        st = startbarrier.getStartTimeMs();
+      }
     }
 
     try {
@@ -422,6 +483,12 @@ public final class Client {
         threadcount = opcount;
         System.out.println("Warning: the threadcount is bigger than recordcount, the threadcount will be recordcount!");
       }
+      final int warmUpOps = Integer.parseInt(props.getProperty(WARM_UP_OPERATIONS_PROPERTY, "0"));
+      final long warmUpNs = TimeUnit.SECONDS.toNanos(Long.parseLong(props.getProperty(WARM_UP_TIME_PROPERTY, "0")));
+      startbarrier = new StartBarrier(threadcount);
+      if (dotransactions && (warmUpOps > 0 || warmUpNs > 0)) {
+        Measurements.getMeasurements().setWarmingUp(true);
+      }
       for (int threadid = 0; threadid < threadcount; threadid++) {
         DB db;
         try {
@@ -443,6 +510,8 @@ public final class Client {
             completeLatch);
         t.setThreadId(threadid);
         t.setThreadCount(threadcount);
+        t.setStartBarrier(startbarrier);
+        t.setWarmUp(warmUpOps, warmUpNs);
         clients.add(t);
       }
 
@@ -44,6 +44,15 @@ public class ClientThread implements Runnable {
   private Properties props;
   private long targetOpsTickNs;
   private final Measurements measurements;
+  private StartBarrier startBarrier;
+  private int warmUpOps;
+  private long warmUpNs;
+
+  // The ID of the thread running this client, and its CPU and allocation
+  // totals captured just before it completes.
+  private volatile long runningThreadId = -1;
+  private volatile long finalCpuTimeNs = -1;
+  private volatile long finalAllocatedBytes = -1;
 
   /**
    * Constructor.
@@ -81,17 +90,39 @@ public class ClientThread implements Runnable {
     threadcount = threadCount;
   }
 
+  /**
+   * Sets the barrier all clients wait at before starting the measured run.
+   */
+  void setStartBarrier(final StartBarrier barrier) {
+    startBarrier = barrier;
+  }
+
+  /**
+   * Sets how much unmeasured work this client does before the measured run.
+   * Only transactions are warmed up, as extra inserts would change the data set.
+   *
+   * @param ops The number of operations to warm up with.
+   * @param durationNs How long to warm up for in nanoseconds.
+   */
+  void setWarmUp(final int ops, final long durationNs) {
+    warmUpOps = ops;
+    warmUpNs = durationNs;
+  }
+
   public int getOpsDone() {
     return opsdone;
   }
 
   @Override
   public void run() {
+    runningThreadId = Thread.currentThread().getId();
+    Utils.setRandomStream(threadid);
     try {
       db.init();
     } catch (DBException e) {
       e.printStackTrace();
       e.printStackTrace(System.out);
+      leaveStartBarrier();
       return;
     }
 
@@ -100,6 +131,7 @@ public class ClientThread implements Runnable {
     } catch (WorkloadException e) {
       e.printStackTrace();
       e.printStackTrace(System.out);
+      leaveStartBarrier();
       return;
     }
 
@@ -114,6 +146,18 @@ public class ClientThread implements Runnable {
       sleepUntil(System.nanoTime() + randomMinorDelay);
     }
     try {
+      if (dotransactions) {
+        warmUp();
+      }
+      if (startBarrier != null) {
+        try {
+          startBarrier.await();
+        } catch (InterruptedException e) {
+          // Asked to stop before the run started, the workload will say so.
+          Thread.currentThread().interrupt();
+        }
+      }
+
       if (dotransactions) {
         long startTimeNanos = System.nanoTime();
 
@@ -125,7 +169,7 @@ public class ClientThread implements Runnable {
 
           opsdone++;
 
-          throttleNanos(startTimeNanos);
+          throttleNanos(startTimeNanos, opsdone);
         }
       } else {
         long startTimeNanos = System.nanoTime();
@@ -138,9 +182,10 @@ public class ClientThread implements Runnable {
 
           opsdone++;
 
-          throttleNanos(startTimeNanos);
+          throttleNanos(startTimeNanos, opsdone);
         }
       }
+      workload.cleanupThread(db, workloadstate);
     } catch (Exception e) {
       e.printStackTrace();
       e.printStackTrace(System.out);
@@ -154,6 +199,8 @@ public class ClientThread implements Runnable {
       e.printStackTrace();
       e.printStackTrace(System.out);
     } finally {
+      finalCpuTimeNs = Utils.getThreadCpuTimeNs(runningThreadId);
+      finalAllocatedBytes = Utils.getThreadAllocatedBytes(runningThreadId);
       completeLatch.countDown();
     }
   }
@@ -166,16 +213,77 @@ public class ClientThread implements Runnable {
     }
   }
 
-  private void throttleNanos(long startTimeNanos) {
+  /**
+   * Runs transactions that are not counted until the warm-up operation count
+   * and duration have both been reached.
+   */
+  private void warmUp() {
+    if (warmUpOps <= 0 && warmUpNs <= 0) {
+      return;
+    }
+    long startTimeNanos = System.nanoTime();
+    long deadline = startTimeNanos + warmUpNs;
+    long ops = 0;
+    while ((ops < warmUpOps || System.nanoTime() < deadline) && !workload.isStopRequested()) {
+      if (!workload.doTransaction(db, workloadstate)) {
+        break;
+      }
+      ops++;
+      throttleNanos(startTimeNanos, ops);
+    }
+  }
+
+  private void leaveStartBarrier() {
+    if (startBarrier != null) {
+      startBarrier.leave();
+    }
+  }
+
+  private void throttleNanos(long startTimeNanos, long ops) {
     //throttle the operations
     if (targetOpsPerMs > 0) {
       // delay until next tick
-      long deadline = startTimeNanos + opsdone * targetOpsTickNs;
+      long deadline = startTimeNanos + ops * targetOpsTickNs;
       sleepUntil(deadline);
       measurements.setIntendedStartTimeNs(deadline);
     }
   }
 
+  /**
+   * @return The CPU time in nanoseconds used by this client so far, or 0 if
+   * it has not started or the JVM cannot measure it.
+   */
+  long getCpuTimeNs() {
+    if (finalCpuTimeNs >= 0) {
+      return finalCpuTimeNs;
+    }
+    if (runningThreadId < 0) {
+      return 0;
+    }
+    return Math.max(0, Utils.getThreadCpuTimeNs(runningThreadId));
+  }
+
+  /**
+   * @return The heap bytes allocated by this client so far, or 0 if it has
+   * not started or the JVM cannot measure it.
+   */
+  long getAllocatedBytes() {
+    if (finalAllocatedBytes >= 0) {
+      return finalAllocatedBytes;
+    }
+    if (runningThreadId < 0) {
+      return 0;
+    }
+    return Math.max(0, Utils.getThreadAllocatedBytes(runningThreadId));
+  }
+
+  /**
+   * @return The measuring wrapper around this client's DB, or null if the DB is not wrapped.
+   */
+  DBWrapper getDBWrapper() {
+    return db instanceof DBWrapper ? (DBWrapper) db : null;
+  }
+
   /**
    * The total amount of work this thread is still expected to do.
    */
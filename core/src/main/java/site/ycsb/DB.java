@@ -132,4 +132,35 @@ public abstract class DB {
    * @return The result of the operation.
    */
   public abstract Status delete(String table, String key);
+
+  /**
+   * Atomically replace the value of one field of a record, but only if it still holds the expected value.
+   * Bindings implement this with the database's conditional write, e.g. a lightweight transaction or a
+   * check-and-mutate.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record to write.
+   * @param field The name of the field to write.
+   * @param expected The value the field must hold for the write to be applied.
+   * @param value The new value of the field.
+   * @return {@link Status#OK} if the value was replaced, {@link Status#CONFLICT} if the field held another
+   * value, or {@link Status#NOT_IMPLEMENTED} if the binding has no conditional writes.
+   */
+  public Status compareAndSet(String table, String key, String field, ByteIterator expected, ByteIterator value) {
+    return Status.NOT_IMPLEMENTED;
+  }
+
+  /**
+   * Atomically add to a counter held in one field of a record. A field that does not exist yet holds 0.
+   * How the counter is stored is up to the binding.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record holding the counter.
+   * @param field The name of the field holding the counter.
+   * @param delta The amount to add.
+   * @return The result of the operation, or {@link Status#NOT_IMPLEMENTED} if the binding has no counters.
+   */
+  public Status increment(String table, String key, String field, long delta) {
+    return Status.NOT_IMPLEMENTED;
+  }
 }
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * A DB that wraps another one to change or observe its behavior, such as
+ * injecting faults. Decorators are listed in the {@code db.decorators}
+ * property and sit between {@link DBWrapper} and the binding, so whatever
+ * they add is part of the measured latency.
+ * <p>
+ * Every call is forwarded to the wrapped DB by default. Subclasses must
+ * have a public constructor taking the DB to wrap.
+ */
+public abstract class DBDecorator extends DB implements TimeseriesBatchWriter {
+  protected final DB db;
+
+  protected DBDecorator(final DB db) {
+    this.db = db;
+  }
+
+  /**
+   * @return The binding at the bottom of any stack of decorators.
+   */
+  public static DB unwrap(DB db) {
+    while (db instanceof DBDecorator) {
+      db = ((DBDecorator) db).db;
+    }
+    return db;
+  }
+
+  /**
+   * Creates another, uninitialized instance of a binding, wrapped in the same
+   * decorators and sharing its properties. For decorators that need more than
+   * one connection to the store.
+   *
+   * @param db The binding or decorator stack to copy.
+   * @return The new instance.
+   * @throws DBException If an instance cannot be created.
+   */
+  protected static DB replicate(final DB db) throws DBException {
+    try {
+      final DB copy;
+      if (db instanceof DBDecorator) {
+        copy = db.getClass().getConstructor(DB.class).newInstance(replicate(((DBDecorator) db).db));
+      } else {
+        copy = db.getClass().getDeclaredConstructor().newInstance();
+      }
+      copy.setProperties(db.getProperties());
+      return copy;
+    } catch (ReflectiveOperationException e) {
+      throw new DBException("Unable to create another " + db.getClass().getName(), e);
+    }
+  }
+
+  @Override
+  public void setProperties(Properties p) {
+    db.setProperties(p);
+  }
+
+  @Override
+  public Properties getProperties() {
+    return db.getProperties();
+  }
+
+  @Override
+  public void init() throws DBException {
+    db.init();
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    db.cleanup();
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    return db.read(table, key, fields, result);
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    return db.scan(table, startkey, recordcount, fields, result);
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    return db.update(table, key, values);
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    return db.insert(table, key, values);
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    return db.delete(table, key);
+  }
+
+  @Override
+  public Status compareAndSet(String table, String key, String field, ByteIterator expected, ByteIterator value) {
+    return db.compareAndSet(table, key, field, expected, value);
+  }
+
+  @Override
+  public Status increment(String table, String key, String field, long delta) {
+    return db.increment(table, key, field, delta);
+  }
+
+  /**
+   * Forwards the batch if the wrapped DB supports batches.
+   */
+  @Override
+  public Status insertBatch(String table, TimeseriesBatch batch) {
+    if (!(db instanceof TimeseriesBatchWriter)) {
+      return Status.NOT_IMPLEMENTED;
+    }
+    return ((TimeseriesBatchWriter) db).insertBatch(table, batch);
+  }
+}
@@ -19,12 +19,28 @@ package site.ycsb;
 
 import org.apache.htrace.core.Tracer;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 /**
  * Creates a DB layer by dynamically classloading the specified DB class.
  */
 public final class DBFactory {
+  /**
+   * A comma separated list of {@link DBDecorator}s to wrap the binding in,
+   * innermost first. Either short names or fully qualified class names.
+   */
+  public static final String DECORATORS_PROPERTY = "db.decorators";
+
+  private static final Map<String, String> DECORATORS = new HashMap<String, String>();
+
+  static {
+    DECORATORS.put("cache", "site.ycsb.CachingDB");
+    DECORATORS.put("fault", "site.ycsb.FaultInjectingDB");
+    DECORATORS.put("hedge", "site.ycsb.HedgingDB");
+  }
+
   private DBFactory() {
     // not used
   }
@@ -35,9 +51,9 @@ public final class DBFactory {
     DB ret;
 
     try {
-      Class dbclass = classLoader.loadClass(dbname);
+      Class<?> dbclass = classLoader.loadClass(dbname);
 
-      ret = (DB) dbclass.newInstance();
+      ret = (DB) dbclass.getDeclaredConstructor().newInstance();
     } catch (Exception e) {
       e.printStackTrace();
       return null;
@@ -45,6 +61,20 @@ public final class DBFactory {
 
     ret.setProperties(properties);
 
+    for (String decorator : properties.getProperty(DECORATORS_PROPERTY, "").split(",")) {
+      decorator = decorator.trim();
+      if (decorator.isEmpty()) {
+        continue;
+      }
+      try {
+        String classname = DECORATORS.containsKey(decorator) ? DECORATORS.get(decorator) : decorator;
+        Class<?> decoratorclass = classLoader.loadClass(classname);
+        ret = (DB) decoratorclass.getConstructor(DB.class).newInstance(ret);
+      } catch (Exception e) {
+        throw new UnknownDBException("Unable to create DB decorator " + decorator, e);
+      }
+    }
+
     return new DBWrapper(ret, tracer);
   }
 
@@ -23,15 +23,34 @@ import org.apache.htrace.core.TraceScope;
 import org.apache.htrace.core.Tracer;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Wrapper around a "real" DB that measures latencies and counts return codes.
- * Also reports latency separately between OK and failed operations.
+ * Also reports latency separately between OK and failed operations, and
+ * optionally the number of value bytes each operation moved.
+ * <p>
+ * With {@code operationdeadline} set, operations run on a worker thread of
+ * the client and it waits for them until the deadline. An operation that
+ * misses it is measured and returned as {@link Status#TIMEOUT} with its
+ * latency capped at the deadline, and the DB instance it hangs in is
+ * abandoned for a new one created with {@link DBDecorator#replicate}. The
+ * operation in flight and any abandoned ones still running are published
+ * for the stuck thread watchdog in {@link StatusThread}.
  */
-public class DBWrapper extends DB {
-  private final DB db;
+public class DBWrapper extends DB implements TimeseriesBatchWriter {
+  private DB db;
   private final Measurements measurements;
   private final Tracer tracer;
+  private final boolean trackBytes;
 
   private boolean reportLatencyForEachError = false;
   private Set<String> latencyTrackedErrors = new HashSet<String>();
@@ -41,10 +60,26 @@ public class DBWrapper extends DB {
 
   private static final String LATENCY_TRACKED_ERRORS_PROPERTY = "latencytrackederrors";
 
+  /** The time in milliseconds an operation may take before it counts as timed out. 0 for no limit. */
+  public static final String OPERATION_DEADLINE_PROPERTY = "operationdeadline";
+  public static final String OPERATION_DEADLINE_PROPERTY_DEFAULT = "0";
+
+  private long deadlineNs;
+
+  // Runs the operations when there is a deadline.
+  private ExecutorService worker;
+
+  // The operation in flight and abandoned ones still running, only tracked with a deadline.
+  private volatile InFlight inFlight;
+  private final List<InFlight> abandoned = new CopyOnWriteArrayList<InFlight>();
+
   private final String scopeStringCleanup;
+  private final String scopeStringCompareAndSet;
   private final String scopeStringDelete;
+  private final String scopeStringIncrement;
   private final String scopeStringInit;
   private final String scopeStringInsert;
+  private final String scopeStringInsertBatch;
   private final String scopeStringRead;
   private final String scopeStringScan;
   private final String scopeStringUpdate;
@@ -53,11 +88,15 @@ public class DBWrapper extends DB {
     this.db = db;
     measurements = Measurements.getMeasurements();
     this.tracer = tracer;
+    trackBytes = measurements.isTrackingBytes();
     final String simple = db.getClass().getSimpleName();
     scopeStringCleanup = simple + "#cleanup";
+    scopeStringCompareAndSet = simple + "#compareAndSet";
     scopeStringDelete = simple + "#delete";
+    scopeStringIncrement = simple + "#increment";
     scopeStringInit = simple + "#init";
     scopeStringInsert = simple + "#insert";
+    scopeStringInsertBatch = simple + "#insertBatch";
     scopeStringRead = simple + "#read";
     scopeStringScan = simple + "#scan";
     scopeStringUpdate = simple + "#update";
@@ -89,6 +128,12 @@ public class DBWrapper extends DB {
           getProperty(REPORT_LATENCY_FOR_EACH_ERROR_PROPERTY,
               REPORT_LATENCY_FOR_EACH_ERROR_PROPERTY_DEFAULT));
 
+      deadlineNs = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(getProperties().getProperty(
+          OPERATION_DEADLINE_PROPERTY, OPERATION_DEADLINE_PROPERTY_DEFAULT)));
+      if (deadlineNs > 0) {
+        worker = Executors.newSingleThreadExecutor(new WorkerFactory());
+      }
+
       if (!reportLatencyForEachError) {
         String latencyTrackedErrorsProperty = getProperties().getProperty(LATENCY_TRACKED_ERRORS_PROPERTY, null);
         if (latencyTrackedErrorsProperty != null) {
@@ -114,6 +159,9 @@ public class DBWrapper extends DB {
       db.cleanup();
       long en = System.nanoTime();
       measure("CLEANUP", Status.OK, ist, st, en);
+      if (worker != null) {
+        worker.shutdown();
+      }
     }
   }
 
@@ -131,11 +179,22 @@ public class DBWrapper extends DB {
                      Map<String, ByteIterator> result) {
     try (final TraceScope span = tracer.newScope(scopeStringRead)) {
       long ist = measurements.getIntendedtartTimeNs();
-      long st = System.nanoTime();
-      Status res = db.read(table, key, fields, result);
+      long st = begin("READ");
+      Status res;
+      if (worker == null) {
+        res = db.read(table, key, fields, result);
+      } else {
+        // Read into a map of its own, which a read that misses the deadline may still fill later.
+        final DB target = db;
+        final HashMap<String, ByteIterator> own = new HashMap<String, ByteIterator>();
+        res = run("READ", () -> target.read(table, key, fields, own), st);
+        result.putAll(own);
+      }
       long en = System.nanoTime();
-      measure("READ", res, ist, st, en);
-      measurements.reportStatus("READ", res);
+      res = complete("READ", res, ist, st, en);
+      if (trackBytes) {
+        measurements.measureBytes("READ", countBytes(result), 0);
+      }
       return res;
     }
   }
@@ -155,15 +214,207 @@ public class DBWrapper extends DB {
                      Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
     try (final TraceScope span = tracer.newScope(scopeStringScan)) {
       long ist = measurements.getIntendedtartTimeNs();
-      long st = System.nanoTime();
-      Status res = db.scan(table, startkey, recordcount, fields, result);
+      long st = begin("SCAN");
+      Status res;
+      if (worker == null) {
+        res = db.scan(table, startkey, recordcount, fields, result);
+      } else {
+        final DB target = db;
+        final Vector<HashMap<String, ByteIterator>> own = new Vector<HashMap<String, ByteIterator>>();
+        res = run("SCAN", () -> target.scan(table, startkey, recordcount, fields, own), st);
+        result.addAll(own);
+      }
       long en = System.nanoTime();
-      measure("SCAN", res, ist, st, en);
-      measurements.reportStatus("SCAN", res);
+      res = complete("SCAN", res, ist, st, en);
+      if (trackBytes) {
+        long bytesRead = 0;
+        for (Map<String, ByteIterator> row : result) {
+          bytesRead += countBytes(row);
+        }
+        measurements.measureBytes("SCAN", bytesRead, 0);
+      }
       return res;
     }
   }
 
+  /**
+   * Sums the bytes left in each of the values without consuming them.
+   */
+  private static long countBytes(Map<String, ByteIterator> values) {
+    if (values == null) {
+      return 0;
+    }
+    long bytes = 0;
+    for (ByteIterator value : values.values()) {
+      if (value != null) {
+        bytes += value.bytesLeft();
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Marks the start of an operation.
+   *
+   * @return The start time.
+   */
+  private long begin(String op) {
+    long st = System.nanoTime();
+    if (deadlineNs > 0) {
+      inFlight = new InFlight(op, st, null);
+    }
+    return st;
+  }
+
+  /**
+   * Runs an operation on the worker thread and waits for it until the
+   * deadline. If it misses the deadline, the DB instance it hangs in is
+   * abandoned and replaced, so the next operation does not queue behind it.
+   *
+   * @return The status of the operation, or TIMEOUT if it missed the deadline.
+   */
+  private Status run(final String op, final Callable<Status> operation, final long startTimeNanos) {
+    final Future<Status> future = worker.submit(operation);
+    try {
+      return future.get(startTimeNanos + deadlineNs - System.nanoTime(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      abandon(new InFlight(op, startTimeNanos, future));
+      return Status.TIMEOUT;
+    } catch (InterruptedException e) {
+      abandon(new InFlight(op, startTimeNanos, future));
+      Thread.currentThread().interrupt();
+      return Status.ERROR;
+    } catch (ExecutionException e) {
+      // A binding that throws fails the client thread, as it would without a deadline.
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Leaves the worker and DB instance an operation hangs in behind and
+   * continues on a new instance. The old one is cleaned up if the operation
+   * ever returns. If no new instance can be created, operations keep
+   * queueing on the old one.
+   */
+  private void abandon(final InFlight stuck) {
+    abandoned.add(stuck);
+    final DB replacement;
+    try {
+      replacement = DBDecorator.replicate(db);
+      replacement.init();
+    } catch (DBException e) {
+      System.err.println("DBWrapper: unable to replace the DB instance " + stuck.operation
+          + " is stuck in: " + e.getMessage());
+      return;
+    }
+    final DB old = db;
+    worker.execute(() -> cleanupAbandoned(old));
+    worker.shutdown();
+    worker = Executors.newSingleThreadExecutor(new WorkerFactory());
+    db = replacement;
+  }
+
+  private static void cleanupAbandoned(final DB old) {
+    try {
+      old.cleanup();
+    } catch (DBException e) {
+      System.err.println("DBWrapper: cleanup of an abandoned DB instance failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Marks the end of an operation and records its latency and status. Past
+   * the deadline the operation is measured and returned as timed out with
+   * its latency capped.
+   *
+   * @return The status to hand back to the workload.
+   */
+  private Status complete(String op, Status result, long intendedStartTimeNanos,
+                          long startTimeNanos, long endTimeNanos) {
+    Status measured = result;
+    if (deadlineNs > 0) {
+      inFlight = null;
+      if (endTimeNanos - startTimeNanos > deadlineNs) {
+        measured = Status.TIMEOUT;
+        endTimeNanos = startTimeNanos + deadlineNs;
+      }
+    }
+    measure(op, measured, intendedStartTimeNanos, startTimeNanos, endTimeNanos);
+    measurements.reportStatus(op, measured);
+    return measured;
+  }
+
+  /**
+   * @return The operation deadline in nanoseconds, or 0 if there is none.
+   */
+  public long getOperationDeadlineNs() {
+    return deadlineNs;
+  }
+
+  /**
+   * @return How long the longest running operation, current or abandoned,
+   * has been running in nanoseconds, or 0 if there is none or no deadline is set.
+   */
+  public long getInFlightNs() {
+    final InFlight longest = longestInFlight();
+    return longest == null ? 0 : System.nanoTime() - longest.startNs;
+  }
+
+  /**
+   * @return The name of the longest running operation, current or abandoned,
+   * or null if there is none or no deadline is set.
+   */
+  public String getInFlightOperation() {
+    final InFlight longest = longestInFlight();
+    return longest == null ? null : longest.operation;
+  }
+
+  private InFlight longestInFlight() {
+    InFlight longest = inFlight;
+    for (InFlight stuck : abandoned) {
+      if (stuck.future.isDone()) {
+        abandoned.remove(stuck);
+      } else if (longest == null || stuck.startNs - longest.startNs < 0) {
+        longest = stuck;
+      }
+    }
+    return longest;
+  }
+
+  /**
+   * An operation that has been sent to the DB and has not returned yet.
+   */
+  private static final class InFlight {
+    private final String operation;
+    private final long startNs;
+    /** Where an abandoned operation will complete, null for the current one. */
+    private final Future<Status> future;
+
+    InFlight(final String operation, final long startNs, final Future<Status> future) {
+      this.operation = operation;
+      this.startNs = startNs;
+      this.future = future;
+    }
+  }
+
+  /**
+   * Creates daemon worker threads, so an operation stuck in a binding cannot keep the JVM alive.
+   */
+  private static final class WorkerFactory implements ThreadFactory {
+    @Override
+    public Thread newThread(final Runnable r) {
+      final Thread thread = new Thread(r, "DBWrapper worker");
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
   private void measure(String op, Status result, long intendedStartTimeNanos,
                        long startTimeNanos, long endTimeNanos) {
     String measurementName = op;
@@ -175,10 +426,7 @@ public class DBWrapper extends DB {
         measurementName = op + "-FAILED";
       }
     }
-    measurements.measure(measurementName,
-        (int) ((endTimeNanos - startTimeNanos) / 1000));
-    measurements.measureIntended(measurementName,
-        (int) ((endTimeNanos - intendedStartTimeNanos) / 1000));
+    measurements.measure(measurementName, intendedStartTimeNanos, startTimeNanos, endTimeNanos);
   }
 
   /**
@@ -193,12 +441,18 @@ public class DBWrapper extends DB {
   public Status update(String table, String key,
                        Map<String, ByteIterator> values) {
     try (final TraceScope span = tracer.newScope(scopeStringUpdate)) {
+      // Bindings consume the iterators, so the size has to be taken up front.
+      long bytesWritten = trackBytes ? countBytes(values) : 0;
       long ist = measurements.getIntendedtartTimeNs();
-      long st = System.nanoTime();
-      Status res = db.update(table, key, values);
+      long st = begin("UPDATE");
+      final DB target = db;
+      Status res = worker == null ? target.update(table, key, values)
+          : run("UPDATE", () -> target.update(table, key, values), st);
       long en = System.nanoTime();
-      measure("UPDATE", res, ist, st, en);
-      measurements.reportStatus("UPDATE", res);
+      res = complete("UPDATE", res, ist, st, en);
+      if (trackBytes) {
+        measurements.measureBytes("UPDATE", 0, bytesWritten);
+      }
       return res;
     }
   }
@@ -216,12 +470,51 @@ public class DBWrapper extends DB {
   public Status insert(String table, String key,
                        Map<String, ByteIterator> values) {
     try (final TraceScope span = tracer.newScope(scopeStringInsert)) {
+      // Bindings consume the iterators, so the size has to be taken up front.
+      long bytesWritten = trackBytes ? countBytes(values) : 0;
       long ist = measurements.getIntendedtartTimeNs();
-      long st = System.nanoTime();
-      Status res = db.insert(table, key, values);
+      long st = begin("INSERT");
+      final DB target = db;
+      Status res = worker == null ? target.insert(table, key, values)
+          : run("INSERT", () -> target.insert(table, key, values), st);
+      long en = System.nanoTime();
+      res = complete("INSERT", res, ist, st, en);
+      if (trackBytes) {
+        measurements.measureBytes("INSERT", 0, bytesWritten);
+      }
+      return res;
+    }
+  }
+
+  /**
+   * Write a batch of time series points if the wrapped DB supports it. The
+   * batch latency is recorded as INSERT-BATCH, its points are counted under
+   * INSERT-BATCH, and the batch latency divided by its points is recorded
+   * once per batch as INSERT-POINT-AVG.
+   *
+   * @param table The name of the table
+   * @param batch The points to write
+   * @return The result of the operation, or {@link Status#NOT_IMPLEMENTED} if
+   * the DB has no batch support.
+   */
+  @Override
+  public Status insertBatch(String table, TimeseriesBatch batch) {
+    if (!(DBDecorator.unwrap(db) instanceof TimeseriesBatchWriter)) {
+      return Status.NOT_IMPLEMENTED;
+    }
+    try (final TraceScope span = tracer.newScope(scopeStringInsertBatch)) {
+      final int points = batch.size();
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = begin("INSERT-BATCH");
+      final TimeseriesBatchWriter target = (TimeseriesBatchWriter) db;
+      Status res = worker == null ? target.insertBatch(table, batch)
+          : run("INSERT-BATCH", () -> target.insertBatch(table, batch), st);
       long en = System.nanoTime();
-      measure("INSERT", res, ist, st, en);
-      measurements.reportStatus("INSERT", res);
+      res = complete("INSERT-BATCH", res, ist, st, en);
+      if (res.isOk() && points > 0) {
+        measurements.measureNanos("INSERT-POINT-AVG", (en - st) / points);
+        measurements.count("INSERT-BATCH", "Points", points);
+      }
       return res;
     }
   }
@@ -236,12 +529,62 @@ public class DBWrapper extends DB {
   public Status delete(String table, String key) {
     try (final TraceScope span = tracer.newScope(scopeStringDelete)) {
       long ist = measurements.getIntendedtartTimeNs();
-      long st = System.nanoTime();
-      Status res = db.delete(table, key);
+      long st = begin("DELETE");
+      final DB target = db;
+      Status res = worker == null ? target.delete(table, key)
+          : run("DELETE", () -> target.delete(table, key), st);
+      long en = System.nanoTime();
+      res = complete("DELETE", res, ist, st, en);
+      return res;
+    }
+  }
+
+  /**
+   * Atomically replace the value of one field of a record if it still holds the expected value.
+   * Writes that find another value are reported as CONFLICT.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record to write.
+   * @param field The name of the field to write.
+   * @param expected The value the field must hold for the write to be applied.
+   * @param value The new value of the field.
+   * @return The result of the operation.
+   */
+  public Status compareAndSet(String table, String key, String field, ByteIterator expected, ByteIterator value) {
+    try (final TraceScope span = tracer.newScope(scopeStringCompareAndSet)) {
+      long bytesWritten = trackBytes ? value.bytesLeft() : 0;
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = begin("COMPARE-AND-SET");
+      final DB target = db;
+      Status res = worker == null ? target.compareAndSet(table, key, field, expected, value)
+          : run("COMPARE-AND-SET", () -> target.compareAndSet(table, key, field, expected, value), st);
       long en = System.nanoTime();
-      measure("DELETE", res, ist, st, en);
-      measurements.reportStatus("DELETE", res);
+      res = complete("COMPARE-AND-SET", res, ist, st, en);
+      if (trackBytes) {
+        measurements.measureBytes("COMPARE-AND-SET", 0, bytesWritten);
+      }
       return res;
     }
   }
+
+  /**
+   * Atomically add to a counter held in one field of a record.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record holding the counter.
+   * @param field The name of the field holding the counter.
+   * @param delta The amount to add.
+   * @return The result of the operation.
+   */
+  public Status increment(String table, String key, String field, long delta) {
+    try (final TraceScope span = tracer.newScope(scopeStringIncrement)) {
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = begin("INCREMENT");
+      final DB target = db;
+      Status res = worker == null ? target.increment(table, key, field, delta)
+          : run("INCREMENT", () -> target.increment(table, key, field, delta), st);
+      long en = System.nanoTime();
+      return complete("INCREMENT", res, ist, st, en);
+    }
+  }
 }
@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import site.ycsb.generator.ConstantIntegerGenerator;
+import site.ycsb.generator.ExponentialGenerator;
+import site.ycsb.generator.NumberGenerator;
+import site.ycsb.generator.UniformLongGenerator;
+
+/**
+ * A decorator ({@code db.decorators=fault}) that injects latency, errors,
+ * timeouts and stalls in front of any binding, to see how client settings
+ * and the measurements behave under tail events.
+ * <p>
+ * Each setting can be given for all operations as {@code fault.<setting>}
+ * or for one of them as {@code fault.<op>.<setting>}, where op is read,
+ * scan, update, insert, delete, compareandset or increment. Time series
+ * batches count as inserts.
+ * <ul>
+ * <li>{@code latency}: extra latency in microseconds, one of
+ * {@code constant:<us>}, {@code uniform:<min>:<max>} or {@code exponential:<mean>}.
+ * Empty (default) for none.</li>
+ * <li>{@code latencyprobability}: the chance an operation gets the extra latency (default 1).</li>
+ * <li>{@code errorprobability}: the chance an operation fails immediately with
+ * {@code errorstatus} (default ERROR) without reaching the DB.</li>
+ * <li>{@code timeoutprobability}: the chance an operation hangs for {@code timeout}
+ * milliseconds (default 1000) and then returns TIMEOUT without reaching the DB.</li>
+ * <li>{@code stallinterval} and {@code stallduration}, both in milliseconds:
+ * operations block for the duration at the start of each interval, like a GC
+ * pause or failover would. Intervals are aligned across all clients.</li>
+ * <li>{@code keymin} (inclusive) and {@code keymax} (exclusive): limit the
+ * faults to the keys in between, if set.</li>
+ * </ul>
+ */
+public class FaultInjectingDB extends DBDecorator {
+  public static final String PREFIX = "fault.";
+
+  public static final String KEY_MIN_PROPERTY = PREFIX + "keymin";
+  public static final String KEY_MAX_PROPERTY = PREFIX + "keymax";
+
+  public static final String STALL_INTERVAL_PROPERTY = PREFIX + "stallinterval";
+  public static final String STALL_INTERVAL_PROPERTY_DEFAULT = "0";
+
+  public static final String STALL_DURATION_PROPERTY = PREFIX + "stallduration";
+  public static final String STALL_DURATION_PROPERTY_DEFAULT = "0";
+
+  // Stall windows are shared by all clients.
+  private static final long STALL_EPOCH = System.nanoTime();
+
+  private Faults readFaults;
+  private Faults scanFaults;
+  private Faults updateFaults;
+  private Faults insertFaults;
+  private Faults deleteFaults;
+  private Faults compareAndSetFaults;
+  private Faults incrementFaults;
+
+  public FaultInjectingDB(final DB db) {
+    super(db);
+  }
+
+  @Override
+  public void init() throws DBException {
+    final Properties p = getProperties();
+    readFaults = new Faults(p, "read");
+    scanFaults = new Faults(p, "scan");
+    updateFaults = new Faults(p, "update");
+    insertFaults = new Faults(p, "insert");
+    deleteFaults = new Faults(p, "delete");
+    compareAndSetFaults = new Faults(p, "compareandset");
+    incrementFaults = new Faults(p, "increment");
+    super.init();
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    final Status fault = inject(readFaults, key);
+    return fault != null ? fault : super.read(table, key, fields, result);
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    final Status fault = inject(scanFaults, startkey);
+    return fault != null ? fault : super.scan(table, startkey, recordcount, fields, result);
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    final Status fault = inject(updateFaults, key);
+    return fault != null ? fault : super.update(table, key, values);
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    final Status fault = inject(insertFaults, key);
+    return fault != null ? fault : super.insert(table, key, values);
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    final Status fault = inject(deleteFaults, key);
+    return fault != null ? fault : super.delete(table, key);
+  }
+
+  @Override
+  public Status compareAndSet(String table, String key, String field, ByteIterator expected, ByteIterator value) {
+    final Status fault = inject(compareAndSetFaults, key);
+    return fault != null ? fault : super.compareAndSet(table, key, field, expected, value);
+  }
+
+  @Override
+  public Status increment(String table, String key, String field, long delta) {
+    final Status fault = inject(incrementFaults, key);
+    return fault != null ? fault : super.increment(table, key, field, delta);
+  }
+
+  @Override
+  public Status insertBatch(String table, TimeseriesBatch batch) {
+    final Status fault = inject(insertFaults, null);
+    return fault != null ? fault : super.insertBatch(table, batch);
+  }
+
+  /**
+   * Applies the faults for one operation.
+   *
+   * @param faults The faults configured for the operation type.
+   * @param key The key the operation is on, or null if there is none.
+   * @return The status to fail the operation with, or null to go ahead.
+   */
+  private Status inject(final Faults faults, final String key) {
+    if (key != null && ((faults.keyMin != null && key.compareTo(faults.keyMin) < 0)
+        || (faults.keyMax != null && key.compareTo(faults.keyMax) >= 0))) {
+      return null;
+    }
+    if (faults.stallIntervalNs > 0) {
+      final long now = System.nanoTime();
+      final long phase = (now - STALL_EPOCH) % faults.stallIntervalNs;
+      if (phase < faults.stallDurationNs) {
+        sleepUntil(now + faults.stallDurationNs - phase);
+      }
+    }
+    final Random random = Utils.random();
+    final double r = random.nextDouble();
+    if (r < faults.timeoutProbability) {
+      sleepUntil(System.nanoTime() + faults.timeoutNs);
+      return Status.TIMEOUT;
+    }
+    if (r < faults.timeoutProbability + faults.errorProbability) {
+      return faults.error;
+    }
+    if (faults.latency != null && random.nextDouble() < faults.latencyProbability) {
+      sleepUntil(System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(faults.latency.nextValue().longValue()));
+    }
+    return null;
+  }
+
+  /**
+   * Sleeps until the deadline, or until the thread is interrupted, leaving
+   * its interrupt status set for the caller.
+   */
+  private static void sleepUntil(final long deadline) {
+    long left = deadline - System.nanoTime();
+    while (left > 0 && !Thread.currentThread().isInterrupted()) {
+      LockSupport.parkNanos(left);
+      left = deadline - System.nanoTime();
+    }
+  }
+
+  /**
+   * The faults injected into one type of operation.
+   */
+  private static final class Faults {
+    private final NumberGenerator latency;
+    private final double latencyProbability;
+    private final double errorProbability;
+    private final Status error;
+    private final double timeoutProbability;
+    private final long timeoutNs;
+    private final long stallIntervalNs;
+    private final long stallDurationNs;
+    private final String keyMin;
+    private final String keyMax;
+
+    Faults(final Properties p, final String op) throws DBException {
+      latency = parseLatency(get(p, op, "latency", ""));
+      latencyProbability = Double.parseDouble(get(p, op, "latencyprobability", "1"));
+      errorProbability = Double.parseDouble(get(p, op, "errorprobability", "0"));
+      error = parseStatus(get(p, op, "errorstatus", Status.ERROR.getName()));
+      timeoutProbability = Double.parseDouble(get(p, op, "timeoutprobability", "0"));
+      timeoutNs = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(get(p, op, "timeout", "1000")));
+      if (errorProbability + timeoutProbability > 1) {
+        throw new DBException("The error and timeout probabilities for " + op + " add up to more than 1.");
+      }
+      stallIntervalNs = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(
+          get(p, op, "stallinterval", STALL_INTERVAL_PROPERTY_DEFAULT)));
+      stallDurationNs = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(
+          get(p, op, "stallduration", STALL_DURATION_PROPERTY_DEFAULT)));
+      if (stallIntervalNs > 0 && stallDurationNs >= stallIntervalNs) {
+        throw new DBException("The stall duration for " + op + " must be shorter than its stall interval.");
+      }
+      keyMin = get(p, op, "keymin", null);
+      keyMax = get(p, op, "keymax", null);
+    }
+
+    private static String get(final Properties p, final String op, final String setting, final String def) {
+      return p.getProperty(PREFIX + op + "." + setting, p.getProperty(PREFIX + setting, def));
+    }
+
+    private static NumberGenerator parseLatency(final String spec) throws DBException {
+      if (spec.isEmpty()) {
+        return null;
+      }
+      final String[] parts = spec.split(":");
+      try {
+        switch (parts[0]) {
+        case "constant":
+          return new ConstantIntegerGenerator(Integer.parseInt(parts[1]));
+        case "uniform":
+          return new UniformLongGenerator(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        case "exponential":
+          return new ExponentialGenerator(Double.parseDouble(parts[1]));
+        default:
+          break;
+        }
+      } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+        throw new DBException("Invalid fault latency '" + spec + "'.", e);
+      }
+      throw new DBException("Unknown fault latency distribution '" + parts[0] + "'.");
+    }
+
+    private static Status parseStatus(final String name) throws DBException {
+      for (final Status status : new Status[] {Status.ERROR, Status.NOT_FOUND, Status.UNEXPECTED_STATE,
+          Status.BAD_REQUEST, Status.FORBIDDEN, Status.SERVICE_UNAVAILABLE, Status.TIMEOUT}) {
+        if (status.getName().equals(name)) {
+          return status;
+        }
+      }
+      throw new DBException("Unknown fault error status '" + name + "'.");
+    }
+  }
+}
@@ -0,0 +1,364 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import site.ycsb.measurements.Measurements;
+
+/**
+ * A decorator ({@code db.decorators=hedge}) that hedges reads: if a read has
+ * not returned after a delay, the same read is sent again and whichever
+ * answers first is used, unless the first one failed and the other
+ * succeeds. The other read is left to finish, as interrupting it closes the
+ * NIO channels of some bindings. Failed reads can also be retried. Hedges,
+ * retries and reads left running share a budget so they cannot multiply the
+ * load when the store is struggling.
+ * <p>
+ * DB instances are used by one thread at a time, so reads run on worker
+ * threads that each own another instance of the binding; writes and scans
+ * go straight to the binding. The hand-off adds a little latency to every
+ * read. Reads that were hedged are also recorded as READ-HEDGED, and the
+ * time a winning hedge saved over the read it replaced, once that returns,
+ * as READ-HEDGE-SAVED. The reads, hedges, hedge rate, wins and retries are
+ * counted under HEDGE.
+ * <ul>
+ * <li>{@code hedge.delay}: microseconds to wait before hedging, or
+ * {@code p<percentile>} (default p95) to follow that percentile of recent
+ * read latencies, updated every second.</li>
+ * <li>{@code hedge.retries}: how often to retry a failed read (default 0).</li>
+ * <li>{@code hedge.budget}: hedges, retries and reads left running allowed,
+ * as a fraction of all reads (default 0.05).</li>
+ * </ul>
+ */
+public class HedgingDB extends DBDecorator {
+  public static final String DELAY_PROPERTY = "hedge.delay";
+  public static final String DELAY_PROPERTY_DEFAULT = "p95";
+
+  public static final String RETRIES_PROPERTY = "hedge.retries";
+  public static final String RETRIES_PROPERTY_DEFAULT = "0";
+
+  public static final String BUDGET_PROPERTY = "hedge.budget";
+  public static final String BUDGET_PROPERTY_DEFAULT = "0.05";
+
+  /** Extra requests the budget allows before any reads have been seen. */
+  private static final int BUDGET_BURST = 10;
+
+  /** How many reads an adaptive delay needs before it starts hedging. */
+  private static final int MIN_SAMPLES = 100;
+
+  private static final long DELAY_UPDATE_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+
+  private static final Object MUTEX = new Object();
+  private static int counter = 0;
+  private static final AtomicLong READS = new AtomicLong();
+  private static final AtomicLong EXTRA_REQUESTS = new AtomicLong();
+  /** Reads that lost to the other one and are still running. */
+  private static final AtomicLong LOSERS_IN_FLIGHT = new AtomicLong();
+
+  // The adaptive delay, shared by all clients.
+  private static final Recorder LATENCIES = new Recorder(3);
+  private static final AtomicBoolean UPDATING = new AtomicBoolean();
+  private static volatile long adaptiveDelayNs = Long.MAX_VALUE;
+  private static volatile long nextDelayUpdateNs;
+
+  private final Measurements measurements = Measurements.getMeasurements();
+  private final List<DB> replicas = new CopyOnWriteArrayList<DB>();
+  private final ThreadLocal<DB> replica = new ThreadLocal<DB>();
+  private ThreadPoolExecutor workers;
+  private double percentile;
+  private long fixedDelayNs;
+  private int retries;
+  private double budget;
+
+  public HedgingDB(final DB db) {
+    super(db);
+  }
+
+  @Override
+  public void init() throws DBException {
+    final String delay = getProperties().getProperty(DELAY_PROPERTY, DELAY_PROPERTY_DEFAULT);
+    try {
+      if (delay.startsWith("p")) {
+        percentile = Double.parseDouble(delay.substring(1));
+      } else {
+        fixedDelayNs = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(delay));
+      }
+    } catch (NumberFormatException e) {
+      throw new DBException("Invalid '" + DELAY_PROPERTY + "': " + delay, e);
+    }
+    retries = Integer.parseInt(getProperties().getProperty(RETRIES_PROPERTY, RETRIES_PROPERTY_DEFAULT));
+    budget = Double.parseDouble(getProperties().getProperty(BUDGET_PROPERTY, BUDGET_PROPERTY_DEFAULT));
+
+    synchronized (MUTEX) {
+      if (counter == 0) {
+        READS.set(0);
+        EXTRA_REQUESTS.set(0);
+        LOSERS_IN_FLIGHT.set(0);
+        LATENCIES.reset();
+        adaptiveDelayNs = Long.MAX_VALUE;
+        nextDelayUpdateNs = System.nanoTime() + DELAY_UPDATE_INTERVAL_NS;
+      }
+      counter++;
+    }
+    measurements.countRatio("HEDGE", "HedgeRate", "Hedges", "Reads");
+
+    // Usually two workers, more only while reads that lost are still running.
+    workers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, Long.MAX_VALUE, TimeUnit.NANOSECONDS,
+        new SynchronousQueue<Runnable>(), new WorkerFactory());
+    super.init();
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    workers.shutdownNow();
+    try {
+      workers.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (final DB db : replicas) {
+      db.cleanup();
+    }
+    super.cleanup();
+    synchronized (MUTEX) {
+      counter--;
+    }
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    READS.incrementAndGet();
+    measurements.count("HEDGE", "Reads", 1);
+    Status status = hedgedRead(table, key, fields, result);
+    for (int i = 0; i < retries && failed(status); i++) {
+      if (!acquireBudget()) {
+        break;
+      }
+      measurements.count("HEDGE", "Retries", 1);
+      result.clear();
+      status = hedgedRead(table, key, fields, result);
+    }
+    return status;
+  }
+
+  private Status hedgedRead(final String table, final String key, final Set<String> fields,
+                            final Map<String, ByteIterator> result) {
+    final long st = System.nanoTime();
+    final CompletionService<Status> completions = new ExecutorCompletionService<Status>(workers);
+    final HashMap<String, ByteIterator> primaryResult = new HashMap<String, ByteIterator>();
+    final ReplicaRead primaryRead = new ReplicaRead(table, key, fields, primaryResult);
+    completions.submit(primaryRead);
+    ReplicaRead hedgeRead = null;
+    Future<Status> hedge = null;
+    try {
+      Future<Status> first = completions.poll(delayNs(), TimeUnit.NANOSECONDS);
+      HashMap<String, ByteIterator> hedgeResult = null;
+      if (first == null) {
+        if (acquireBudget()) {
+          measurements.count("HEDGE", "Hedges", 1);
+          hedgeResult = new HashMap<String, ByteIterator>();
+          hedgeRead = new ReplicaRead(table, key, fields, hedgeResult);
+          hedge = completions.submit(hedgeRead);
+        }
+        first = completions.take();
+      }
+      Status status = outcome(first);
+      if (hedge != null && failed(status)) {
+        // The other request may still succeed, so it decides unless it fails too.
+        final Future<Status> second = completions.take();
+        final Status other = outcome(second);
+        if (!failed(other)) {
+          first = second;
+          status = other;
+        }
+      }
+      final boolean hedgeWon = first == hedge;
+      result.putAll(hedgeWon ? hedgeResult : primaryResult);
+      final long en = System.nanoTime();
+      final long latency = en - st;
+      if (hedge != null) {
+        if (hedgeWon) {
+          measurements.count("HEDGE", "HedgeWins", 1);
+          primaryRead.lost(en);
+        } else {
+          hedgeRead.lost(0);
+        }
+        measurements.measureNanos("READ-HEDGED", latency);
+      }
+      recordLatency(latency);
+      return status;
+    } catch (InterruptedException e) {
+      primaryRead.lost(0);
+      if (hedgeRead != null) {
+        hedgeRead.lost(0);
+      }
+      Thread.currentThread().interrupt();
+      return Status.ERROR;
+    }
+  }
+
+  /** The status of a finished read, ERROR if it threw. */
+  private static Status outcome(final Future<Status> read) throws InterruptedException {
+    try {
+      return read.get();
+    } catch (ExecutionException e) {
+      return Status.ERROR;
+    }
+  }
+
+  /** Whether a read failed, as opposed to finding or not finding the record. */
+  private static boolean failed(final Status status) {
+    return !status.isOk() && status != Status.NOT_FOUND;
+  }
+
+  /**
+   * A read on the calling worker's own instance of the binding, which keeps
+   * track of a read that lost to the other one until it returns.
+   */
+  private final class ReplicaRead implements Callable<Status> {
+    private final String table;
+    private final String key;
+    private final Set<String> fields;
+    private final Map<String, ByteIterator> result;
+    // Guarded by this.
+    private boolean finished;
+    private boolean lost;
+    private long wonAtNs;
+
+    ReplicaRead(final String table, final String key, final Set<String> fields,
+                final Map<String, ByteIterator> result) {
+      this.table = table;
+      this.key = key;
+      this.fields = fields;
+      this.result = result;
+    }
+
+    @Override
+    public Status call() throws DBException {
+      try {
+        return replica().read(table, key, fields, result);
+      } finally {
+        finished(System.nanoTime());
+      }
+    }
+
+    private synchronized void finished(final long endNs) {
+      finished = true;
+      if (lost) {
+        LOSERS_IN_FLIGHT.decrementAndGet();
+        if (wonAtNs != 0) {
+          measurements.measureNanos("READ-HEDGE-SAVED", endNs - wonAtNs);
+        }
+      }
+    }
+
+    /**
+     * Marks this read as having lost to the other one. It counts against the
+     * budget until it returns.
+     *
+     * @param winnerEndNs When the hedge that replaced this read returned, to
+     * record the time it saved, or 0.
+     */
+    synchronized void lost(final long winnerEndNs) {
+      if (finished) {
+        return;
+      }
+      lost = true;
+      wonAtNs = winnerEndNs;
+      LOSERS_IN_FLIGHT.incrementAndGet();
+    }
+  }
+
+  private DB replica() throws DBException {
+    DB db = replica.get();
+    if (db == null) {
+      db = replicate(this.db);
+      db.init();
+      replicas.add(db);
+      replica.set(db);
+    }
+    return db;
+  }
+
+  /**
+   * Takes one hedge or retry from the shared budget if it has any left,
+   * counting reads that lost and are still running against it.
+   */
+  private boolean acquireBudget() {
+    final long allowed = (long) (budget * READS.get()) + BUDGET_BURST;
+    if (EXTRA_REQUESTS.incrementAndGet() + LOSERS_IN_FLIGHT.get() <= allowed) {
+      return true;
+    }
+    EXTRA_REQUESTS.decrementAndGet();
+    measurements.count("HEDGE", "OverBudget", 1);
+    return false;
+  }
+
+  /**
+   * Creates daemon worker threads, so a read stuck in a binding cannot keep the JVM alive.
+   */
+  private static final class WorkerFactory implements ThreadFactory {
+    @Override
+    public Thread newThread(final Runnable r) {
+      final Thread thread = new Thread(r, "HedgingDB worker");
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  private long delayNs() {
+    return percentile > 0 ? adaptiveDelayNs : fixedDelayNs;
+  }
+
+  private void recordLatency(final long latencyNs) {
+    if (percentile <= 0) {
+      return;
+    }
+    LATENCIES.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNs));
+    if (System.nanoTime() >= nextDelayUpdateNs && UPDATING.compareAndSet(false, true)) {
+      try {
+        final Histogram interval = LATENCIES.getIntervalHistogram();
+        if (interval.getTotalCount() >= MIN_SAMPLES) {
+          adaptiveDelayNs = TimeUnit.MICROSECONDS.toNanos(interval.getValueAtPercentile(percentile));
+        }
+        nextDelayUpdateNs = System.nanoTime() + DELAY_UPDATE_INTERVAL_NS;
+      } finally {
+        UPDATING.set(false);
+      }
+    }
+  }
+}
@@ -18,6 +18,7 @@ package site.ycsb;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  *  A ByteIterator that iterates through an inputstream of bytes.
@@ -58,6 +59,31 @@ public class InputStreamByteIterator extends ByteIterator {
     return (byte) ret;
   }
 
+  @Override
+  public int nextBuf(ByteBuffer buf) {
+    if (!buf.hasArray()) {
+      return super.nextBuf(buf);
+    }
+    int size = (int) Math.min(len - off, buf.remaining());
+    byte[] array = buf.array();
+    int base = buf.arrayOffset() + buf.position();
+    int read = 0;
+    try {
+      while (read < size) {
+        int n = ins.read(array, base + read, size - read);
+        if (n == -1) {
+          throw new IllegalStateException("Past EOF!");
+        }
+        read += n;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    buf.position(buf.position() + size);
+    off += size;
+    return size;
+  }
+
   @Override
   public long bytesLeft() {
     return len - off;
@@ -0,0 +1,470 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An in-process reference store. Records live in a set of concurrent sorted
+ * maps, sharded by key hash and shared by all client threads, so reads,
+ * updates, ordered scans, conditional writes and increments do real work
+ * without any external service. Use it to measure the ceiling of the client
+ * itself or to check {@code dataintegrity} end to end.
+ * <p>
+ * Values are copied on write, as the workloads may reuse the iterators they
+ * pass in, and can be kept off the Java heap with {@code memorydb.offheap}.
+ * The store only lives as long as the JVM; set {@code memorydb.snapshot} to a
+ * file to carry the data from a load phase over to a separate run phase.
+ */
+public class MemoryDB extends DB {
+  /** The number of shards each table is split into. */
+  public static final String SHARDS_PROPERTY = "memorydb.shards";
+  public static final String SHARDS_PROPERTY_DEFAULT = 
+      Integer.toString(Runtime.getRuntime().availableProcessors());
+
+  /** Whether to keep field values in direct buffers outside the Java heap. */
+  public static final String OFF_HEAP_PROPERTY = "memorydb.offheap";
+  public static final String OFF_HEAP_PROPERTY_DEFAULT = "false";
+
+  /** A file the store is restored from on startup and saved to on shutdown. */
+  public static final String SNAPSHOT_PROPERTY = "memorydb.snapshot";
+
+  private static final ConcurrentMap<String, Table> TABLES = new ConcurrentHashMap<String, Table>();
+  private static final Object MUTEX = new Object();
+  private static int counter = 0;
+  private static int shards;
+
+  private boolean offHeap;
+  private String snapshot;
+
+  @Override
+  public void init() throws DBException {
+    offHeap = Boolean.parseBoolean(getProperties().getProperty(OFF_HEAP_PROPERTY, OFF_HEAP_PROPERTY_DEFAULT));
+    snapshot = getProperties().getProperty(SNAPSHOT_PROPERTY);
+    synchronized (MUTEX) {
+      if (counter == 0) {
+        shards = Integer.parseInt(getProperties().getProperty(SHARDS_PROPERTY, SHARDS_PROPERTY_DEFAULT));
+        if (shards < 1) {
+          throw new DBException("'" + SHARDS_PROPERTY + "' must be 1 or more.");
+        }
+        if (snapshot != null && new File(snapshot).exists()) {
+          restore(new File(snapshot));
+        }
+      }
+      counter++;
+    }
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    synchronized (MUTEX) {
+      if (--counter == 0 && snapshot != null) {
+        save(new File(snapshot));
+      }
+    }
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    final Record record = table(table).shard(key).get(key);
+    if (record == null) {
+      return Status.NOT_FOUND;
+    }
+    record.copyTo(fields, result);
+    return Status.OK;
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    final Table t = table(table);
+    // Each shard is sorted on its own, so merge their tails by key.
+    final PriorityQueue<Cursor> cursors = new PriorityQueue<Cursor>(t.shards.length);
+    for (final ConcurrentSkipListMap<String, Record> shard : t.shards) {
+      final Cursor cursor = new Cursor(shard.tailMap(startkey, true).entrySet().iterator());
+      if (cursor.advance()) {
+        cursors.add(cursor);
+      }
+    }
+    for (int i = 0; i < recordcount && !cursors.isEmpty(); i++) {
+      final Cursor cursor = cursors.poll();
+      final HashMap<String, ByteIterator> row = new HashMap<String, ByteIterator>();
+      cursor.current.getValue().copyTo(fields, row);
+      result.add(row);
+      if (cursor.advance()) {
+        cursors.add(cursor);
+      }
+    }
+    return Status.OK;
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    // Copy the values before merging, the merge may be retried under contention.
+    final Record update = Record.of(values, false);
+    final ConcurrentSkipListMap<String, Record> shard = table(table).shard(key);
+    Record stored = null;
+    while (true) {
+      final Record old = shard.get(key);
+      if (old == null) {
+        return Status.NOT_FOUND;
+      }
+      stored = store(old.merge(update), stored);
+      if (shard.replace(key, old, stored)) {
+        return Status.OK;
+      }
+    }
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    table(table).shard(key).put(key, Record.of(values, offHeap));
+    return Status.OK;
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    return table(table).shard(key).remove(key) == null ? Status.NOT_FOUND : Status.OK;
+  }
+
+  @Override
+  public Status compareAndSet(String table, String key, String field, ByteIterator expected, ByteIterator value) {
+    final byte[] expectedBytes = expected.toArray();
+    final Record update = Record.of(Collections.singletonMap(field, value), false);
+    final ConcurrentSkipListMap<String, Record> shard = table(table).shard(key);
+    Record stored = null;
+    while (true) {
+      final Record old = shard.get(key);
+      if (old == null) {
+        return Status.NOT_FOUND;
+      }
+      if (!Arrays.equals(old.field(field), expectedBytes)) {
+        return Status.CONFLICT;
+      }
+      stored = store(old.merge(update), stored);
+      if (shard.replace(key, old, stored)) {
+        return Status.OK;
+      }
+    }
+  }
+
+  /**
+   * Counters are stored as decimal text.
+   */
+  @Override
+  public Status increment(String table, String key, String field, long delta) {
+    final ConcurrentSkipListMap<String, Record> shard = table(table).shard(key);
+    Record stored = null;
+    while (true) {
+      final Record old = shard.get(key);
+      if (old == null) {
+        return Status.NOT_FOUND;
+      }
+      final byte[] current = old.field(field);
+      final long total;
+      try {
+        total = current == null ? 0 : Long.parseLong(new String(current, StandardCharsets.US_ASCII));
+      } catch (NumberFormatException e) {
+        return Status.BAD_REQUEST;
+      }
+      final Record update = Record.of(Collections.<String, ByteIterator>singletonMap(field,
+          new StringByteIterator(Long.toString(total + delta))), false);
+      stored = store(old.merge(update), stored);
+      if (shard.replace(key, old, stored)) {
+        return Status.OK;
+      }
+    }
+  }
+
+  /**
+   * Returns a record merged on the heap as it is to be stored. Off the heap
+   * it is copied into a direct buffer, reusing the one of an earlier attempt
+   * that lost its race, so retries do not allocate direct memory again.
+   *
+   * @param merged The record to store.
+   * @param lost The record of an earlier attempt that was not stored, or null.
+   */
+  private Record store(final Record merged, final Record lost) {
+    return offHeap ? merged.offHeap(lost) : merged;
+  }
+
+  private static Table table(final String name) {
+    Table table = TABLES.get(name);
+    if (table == null) {
+      table = TABLES.computeIfAbsent(name, n -> new Table(shards));
+    }
+    return table;
+  }
+
+  private static void save(final File file) throws DBException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(TABLES.size());
+      for (final Map.Entry<String, Table> table : TABLES.entrySet()) {
+        out.writeUTF(table.getKey());
+        for (final ConcurrentSkipListMap<String, Record> shard : table.getValue().shards) {
+          for (final Map.Entry<String, Record> record : shard.entrySet()) {
+            out.writeBoolean(true);
+            out.writeUTF(record.getKey());
+            record.getValue().write(out);
+          }
+        }
+        out.writeBoolean(false);
+      }
+    } catch (IOException e) {
+      throw new DBException("Unable to save the store to " + file, e);
+    }
+  }
+
+  private void restore(final File file) throws DBException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      for (int tables = in.readInt(); tables > 0; tables--) {
+        final Table table = table(in.readUTF());
+        while (in.readBoolean()) {
+          final String key = in.readUTF();
+          table.shard(key).put(key, Record.read(in, offHeap));
+        }
+      }
+    } catch (IOException e) {
+      throw new DBException("Unable to restore the store from " + file, e);
+    }
+  }
+
+  /** Removes all tables and forgets any open instances. Only meant for tests. */
+  static void clear() {
+    synchronized (MUTEX) {
+      TABLES.clear();
+      counter = 0;
+    }
+  }
+
+  /**
+   * A table: its records spread over independently sorted shards.
+   */
+  private static final class Table {
+    private final ConcurrentSkipListMap<String, Record>[] shards;
+
+    @SuppressWarnings("unchecked")
+    Table(final int count) {
+      shards = new ConcurrentSkipListMap[count];
+      for (int i = 0; i < count; i++) {
+        shards[i] = new ConcurrentSkipListMap<String, Record>();
+      }
+    }
+
+    ConcurrentSkipListMap<String, Record> shard(final String key) {
+      return shards[(key.hashCode() & Integer.MAX_VALUE) % shards.length];
+    }
+  }
+
+  /**
+   * The position of a scan within one shard.
+   */
+  private static final class Cursor implements Comparable<Cursor> {
+    private final Iterator<Map.Entry<String, Record>> iterator;
+    private Map.Entry<String, Record> current;
+
+    Cursor(final Iterator<Map.Entry<String, Record>> iterator) {
+      this.iterator = iterator;
+    }
+
+    boolean advance() {
+      current = iterator.hasNext() ? iterator.next() : null;
+      return current != null;
+    }
+
+    @Override
+    public int compareTo(final Cursor other) {
+      return current.getKey().compareTo(other.current.getKey());
+    }
+  }
+
+  /**
+   * An immutable record. All field values are packed into one buffer, on or
+   * off the heap, and handed out as views or copies of it.
+   */
+  private static final class Record {
+    private final String[] names;
+    private final int[] offsets;
+    private final ByteBuffer data;
+
+    private Record(final String[] names, final int[] offsets, final ByteBuffer data) {
+      this.names = names;
+      this.offsets = offsets;
+      this.data = data;
+    }
+
+    static Record of(final Map<String, ByteIterator> values, final boolean offHeap) {
+      final String[] names = new String[values.size()];
+      final ByteIterator[] iterators = new ByteIterator[names.length];
+      final int[] offsets = new int[names.length + 1];
+      int i = 0;
+      for (final Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+        names[i] = entry.getKey();
+        iterators[i] = entry.getValue();
+        offsets[i + 1] = offsets[i] + (int) iterators[i].bytesLeft();
+        i++;
+      }
+      final ByteBuffer data = allocate(offsets[names.length], offHeap);
+      for (i = 0; i < names.length; i++) {
+        data.limit(offsets[i + 1]).position(offsets[i]);
+        while (data.hasRemaining() && iterators[i].hasNext()) {
+          iterators[i].nextBuf(data);
+        }
+      }
+      data.clear();
+      return new Record(names, offsets, data);
+    }
+
+    static Record read(final DataInputStream in, final boolean offHeap) throws IOException {
+      final int count = in.readInt();
+      final String[] names = new String[count];
+      final int[] offsets = new int[count + 1];
+      for (int i = 0; i < count; i++) {
+        names[i] = in.readUTF();
+        offsets[i + 1] = offsets[i] + in.readInt();
+      }
+      final byte[] bytes = new byte[offsets[count]];
+      in.readFully(bytes);
+      final ByteBuffer data = allocate(bytes.length, offHeap);
+      data.put(bytes).clear();
+      return new Record(names, offsets, data);
+    }
+
+    void write(final DataOutputStream out) throws IOException {
+      out.writeInt(names.length);
+      for (int i = 0; i < names.length; i++) {
+        out.writeUTF(names[i]);
+        out.writeInt(offsets[i + 1] - offsets[i]);
+      }
+      out.write(bytes(0, offsets[names.length]));
+    }
+
+    /** Returns a new record on the heap with the fields of this one replaced or extended by the update. */
+    Record merge(final Record update) {
+      final String[] mergedNames = Arrays.copyOf(names, names.length + update.names.length);
+      final int[] source = new int[mergedNames.length];
+      int count = names.length;
+      for (int i = 0; i < names.length; i++) {
+        source[i] = i;
+      }
+      for (int i = 0; i < update.names.length; i++) {
+        final int existing = indexOf(update.names[i]);
+        if (existing >= 0) {
+          source[existing] = -1 - i;
+        } else {
+          mergedNames[count] = update.names[i];
+          source[count++] = -1 - i;
+        }
+      }
+      final int[] mergedOffsets = new int[count + 1];
+      for (int i = 0; i < count; i++) {
+        mergedOffsets[i + 1] = mergedOffsets[i] + (source[i] >= 0 ? length(source[i]) : update.length(-1 - source[i]));
+      }
+      final ByteBuffer merged = ByteBuffer.allocate(mergedOffsets[count]);
+      for (int i = 0; i < count; i++) {
+        final Record from = source[i] >= 0 ? this : update;
+        final int field = source[i] >= 0 ? source[i] : -1 - source[i];
+        final ByteBuffer view = from.data.duplicate();
+        view.limit(from.offsets[field + 1]).position(from.offsets[field]);
+        merged.put(view);
+      }
+      merged.clear();
+      return new Record(Arrays.copyOf(mergedNames, count), mergedOffsets, merged);
+    }
+
+    /**
+     * Returns a copy of this record in a direct buffer, the one of another
+     * copy if it is large enough and no longer used.
+     */
+    Record offHeap(final Record unused) {
+      final int size = offsets[names.length];
+      final ByteBuffer buffer = unused != null && unused.data.capacity() >= size
+          ? unused.data : ByteBuffer.allocateDirect(size);
+      buffer.clear();
+      buffer.put(data.duplicate()).clear();
+      return new Record(names, offsets, buffer);
+    }
+
+    /** Returns a copy of the value of a field, or null if the record does not have it. */
+    byte[] field(final String name) {
+      final int field = indexOf(name);
+      return field < 0 ? null : bytes(offsets[field], length(field));
+    }
+
+    void copyTo(final Set<String> fields, final Map<String, ByteIterator> result) {
+      for (int i = 0; i < names.length; i++) {
+        if (fields == null || fields.contains(names[i])) {
+          result.put(names[i], value(i));
+        }
+      }
+    }
+
+    private ByteIterator value(final int field) {
+      if (data.hasArray()) {
+        // Records are never modified in place, so heap values can be shared.
+        return new ByteArrayByteIterator(data.array(), data.arrayOffset() + offsets[field], length(field));
+      }
+      return new ByteArrayByteIterator(bytes(offsets[field], length(field)));
+    }
+
+    private byte[] bytes(final int offset, final int length) {
+      final byte[] bytes = new byte[length];
+      final ByteBuffer view = data.duplicate();
+      view.position(offset);
+      view.get(bytes);
+      return bytes;
+    }
+
+    private int length(final int field) {
+      return offsets[field + 1] - offsets[field];
+    }
+
+    private int indexOf(final String name) {
+      for (int i = 0; i < names.length; i++) {
+        if (names[i].equals(name)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private static ByteBuffer allocate(final int size, final boolean offHeap) {
+      return offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+  }
+}
@@ -16,12 +16,25 @@
  */
 package site.ycsb;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
 
 /**
  *  A ByteIterator that generates a random sequence of bytes.
+ *  <p>
+ *  Each random 64-bit word yields eight printable ASCII characters (' ' to
+ *  '_'), and bulk reads fill the destination in a single pass of 8-byte
+ *  stores rather than byte by byte.
+ *  </p>
  */
 public class RandomByteIterator extends ByteIterator {
+  private static final long LANE_MASK = 0x3F3F3F3F3F3F3F3FL;
+  private static final long LANE_BASE = 0x2020202020202020L;
+
+  /** Below this many bytes wrapping the array costs more than it saves. */
+  private static final int BULK_THRESHOLD = 64;
+
   private final long len;
   private long off;
   private int bufOff;
@@ -29,76 +42,113 @@ public class RandomByteIterator extends ByteIterator {
 
   @Override
   public boolean hasNext() {
-    return (off + bufOff) < len;
+    return off < len;
   }
 
-  private void fillBytesImpl(byte[] buffer, int base) {
-    int bytes = ThreadLocalRandom.current().nextInt();
-
-    switch (buffer.length - base) {
-    default:
-      buffer[base + 5] = (byte) (((bytes >> 25) & 95) + ' ');
-    case 5:
-      buffer[base + 4] = (byte) (((bytes >> 20) & 63) + ' ');
-    case 4:
-      buffer[base + 3] = (byte) (((bytes >> 15) & 31) + ' ');
-    case 3:
-      buffer[base + 2] = (byte) (((bytes >> 10) & 95) + ' ');
-    case 2:
-      buffer[base + 1] = (byte) (((bytes >> 5) & 63) + ' ');
-    case 1:
-      buffer[base + 0] = (byte) (((bytes) & 31) + ' ');
-    case 0:
-      break;
+  /**
+   * Fills a region of an array with random printable ASCII bytes, the same
+   * alphabet this iterator produces. Useful for callers that keep their own
+   * value buffers.
+   *
+   * @param buffer The array to fill.
+   * @param offset The first index to write.
+   * @param length The number of bytes to write.
+   */
+  public static void fill(byte[] buffer, int offset, int length) {
+    Random random = Utils.random();
+    int i = offset;
+    int end = offset + length;
+    if (length >= BULK_THRESHOLD) {
+      // Masking every byte of a random word to 6 bits and adding ' ' to each
+      // lane cannot carry between bytes, so one long store emits 8 characters.
+      ByteBuffer words = ByteBuffer.wrap(buffer, offset, length).order(ByteOrder.nativeOrder());
+      for (; end - i >= Long.BYTES; i += Long.BYTES) {
+        words.putLong(i, (random.nextLong() & LANE_MASK) + LANE_BASE);
+      }
     }
-  }
-
-  private void fillBytes() {
-    if (bufOff == buf.length) {
-      fillBytesImpl(buf, 0);
-      bufOff = 0;
-      off += buf.length;
+    while (i < end) {
+      long bits = random.nextLong();
+      for (int n = Math.min(end - i, Long.BYTES); n > 0; n--, i++, bits >>>= 8) {
+        buffer[i] = (byte) ((bits & 63) + ' ');
+      }
     }
   }
 
   public RandomByteIterator(long len) {
     this.len = len;
-    this.buf = new byte[6];
+    this.buf = new byte[Long.BYTES];
     this.bufOff = buf.length;
-    fillBytes();
     this.off = 0;
   }
 
   public byte nextByte() {
-    fillBytes();
-    bufOff++;
-    return buf[bufOff - 1];
+    if (bufOff == buf.length) {
+      fill(buf, 0, buf.length);
+      bufOff = 0;
+    }
+    off++;
+    return buf[bufOff++];
+  }
+
+  /**
+   * Writes the next n bytes into the array, first handing out whatever is
+   * left over from the last word generated for nextByte().
+   */
+  private void copyTo(byte[] buffer, int bufOffset, int n) {
+    int pending = Math.min(n, buf.length - bufOff);
+    System.arraycopy(buf, bufOff, buffer, bufOffset, pending);
+    bufOff += pending;
+    fill(buffer, bufOffset + pending, n - pending);
+    off += n;
   }
 
   @Override
   public int nextBuf(byte[] buffer, int bufOffset) {
-    int ret;
-    if (len - off < buffer.length - bufOffset) {
-      ret = (int) (len - off);
-    } else {
-      ret = buffer.length - bufOffset;
+    int ret = (int) Math.min(len - off, buffer.length - bufOffset);
+    copyTo(buffer, bufOffset, ret);
+    return ret + bufOffset;
+  }
+
+  @Override
+  public int nextBuf(ByteBuffer buffer) {
+    int ret = (int) Math.min(len - off, buffer.remaining());
+    if (buffer.hasArray()) {
+      copyTo(buffer.array(), buffer.arrayOffset() + buffer.position(), ret);
+      buffer.position(buffer.position() + ret);
+      return ret;
+    }
+    int left = ret;
+    int pending = Math.min(left, buf.length - bufOff);
+    buffer.put(buf, bufOff, pending);
+    bufOff += pending;
+    left -= pending;
+    Random random = Utils.random();
+    for (; left >= Long.BYTES; left -= Long.BYTES) {
+      buffer.putLong((random.nextLong() & LANE_MASK) + LANE_BASE);
     }
-    int i;
-    for (i = 0; i < ret; i += 6) {
-      fillBytesImpl(buffer, i + bufOffset);
+    while (left > 0) {
+      if (bufOff == buf.length) {
+        fill(buf, 0, buf.length);
+        bufOff = 0;
+      }
+      int n = Math.min(left, buf.length - bufOff);
+      buffer.put(buf, bufOff, n);
+      bufOff += n;
+      left -= n;
     }
     off += ret;
-    return ret + bufOffset;
+    return ret;
   }
 
   @Override
   public long bytesLeft() {
-    return len - off - bufOff;
+    return len - off;
   }
 
   @Override
   public void reset() {
     off = 0;
+    bufOff = buf.length;
   }
 
   /** Consumes remaining contents of this object, and returns them as a byte array. */
@@ -108,10 +158,7 @@ public class RandomByteIterator extends ByteIterator {
       throw new ArrayIndexOutOfBoundsException("Too much data to fit in one array!");
     }
     byte[] ret = new byte[(int) left];
-    int bufOffset = 0;
-    while (bufOffset < ret.length) {
-      bufOffset = nextBuf(ret, bufOffset);
-    }
+    copyTo(ret, 0, ret.length);
     return ret;
   }
 
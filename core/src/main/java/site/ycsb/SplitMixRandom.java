@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import java.util.Random;
+
+/**
+ * A fast, unsynchronized SplitMix64 generator for the seeded random streams
+ * of {@link Utils#random()}. Not thread safe, every thread has its own.
+ */
+final class SplitMixRandom extends Random {
+  private static final long serialVersionUID = 1L;
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private long state;
+
+  /**
+   * @param seed The seed shared by all streams.
+   * @param stream The stream, e.g. the client thread id.
+   */
+  SplitMixRandom(final long seed, final long stream) {
+    super(0);
+    state = mix(seed + mix(stream * GOLDEN_GAMMA + GOLDEN_GAMMA));
+  }
+
+  @Override
+  public void setSeed(final long seed) {
+    // Also called by the Random constructor, before the state is set.
+    state = seed;
+  }
+
+  @Override
+  protected int next(final int bits) {
+    return (int) (nextLong() >>> (64 - bits));
+  }
+
+  @Override
+  public long nextLong() {
+    state += GOLDEN_GAMMA;
+    return mix(state);
+  }
+
+  @Override
+  public int nextInt() {
+    return (int) nextLong();
+  }
+
+  @Override
+  public double nextDouble() {
+    return (nextLong() >>> 11) * 0x1.0p-53;
+  }
+
+  @Override
+  public boolean nextBoolean() {
+    return nextLong() < 0;
+  }
+
+  private static long mix(final long z) {
+    long x = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+    return x ^ (x >>> 31);
+  }
+}
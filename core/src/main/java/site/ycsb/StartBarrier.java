@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import java.util.concurrent.Phaser;
+
+import site.ycsb.measurements.Measurements;
+
+/**
+ * Holds the client threads back until all of them have initialized their DB
+ * and warmed up, so the measured part of the run starts at the same instant
+ * for every thread. Clients that fail to initialize leave the barrier instead
+ * of arriving at it.
+ */
+class StartBarrier extends Phaser {
+  private volatile long startTimeMs;
+
+  StartBarrier(int clients) {
+    super(clients);
+  }
+
+  @Override
+  protected boolean onAdvance(int phase, int registeredParties) {
+    startTimeMs = System.currentTimeMillis();
+    Measurements.getMeasurements().setWarmingUp(false);
+    // The barrier is only passed once.
+    return true;
+  }
+
+  /**
+   * Waits until every other client has arrived or left.
+   */
+  void await() throws InterruptedException {
+    awaitAdvanceInterruptibly(arrive());
+  }
+
+  /**
+   * Stops waiting for a client that will not start.
+   */
+  void leave() {
+    arriveAndDeregister();
+  }
+
+  /**
+   * @return When the clients were released in milliseconds since the epoch,
+   * or 0 if they have not been yet.
+   */
+  long getStartTimeMs() {
+    return startTimeMs;
+  }
+}
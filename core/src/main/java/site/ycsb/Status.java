@@ -106,5 +106,8 @@ public class Status {
       "service for the current binding is not available.");
   public static final Status BATCHED_OK = new Status("BATCHED_OK", "The operation has been batched by " +
       "the binding to be executed later.");
+  public static final Status TIMEOUT = new Status("TIMEOUT", "The operation did not complete in time.");
+  public static final Status CONFLICT = new Status("CONFLICT", "The record did not hold the expected " +
+      "value, so the conditional operation was not applied.");
 }
 
@@ -57,6 +57,39 @@ public class StatusThread extends Thread {
   private long lastGCCount = 0;
   private long lastGCTime = 0;
 
+  // Client thread CPU and allocation tracking
+  private final boolean trackClientCpu;
+  private long[] lastClientCpuNs;
+  private long[] lastClientAllocBytes;
+  private long[] lastClientOps;
+  private long lastClientSampleNs;
+  private int clientCpuSaturatedIntervals;
+  private int clientIntervals;
+  private double maxClientCpuPerOpUs;
+  private double minClientCpuPerOpUs = Double.MAX_VALUE;
+  private double maxClientAllocPerOp;
+  private double minClientAllocPerOp = Double.MAX_VALUE;
+  private String clientSummary = "";
+
+  /**
+   * The fraction of the CPU available to the client threads above which the
+   * load generator itself is reported as the bottleneck.
+   */
+  public static final double CLIENT_CPU_SATURATION_THRESHOLD = 0.9;
+
+  /**
+   * How many times its operation deadline a client has to be stuck in one
+   * operation to be reported.
+   */
+  public static final String STUCK_THREAD_FACTOR_PROPERTY = "stuckthreadfactor";
+  public static final String STUCK_THREAD_FACTOR_PROPERTY_DEFAULT = "10";
+
+  private double stuckThreadFactor = Double.parseDouble(STUCK_THREAD_FACTOR_PROPERTY_DEFAULT);
+
+  // Byte totals at the end of the last interval
+  private long lastTotalBytesRead = 0;
+  private long lastTotalBytesWritten = 0;
+
   /**
    * Creates a new StatusThread without JVM stat tracking.
    *
@@ -93,6 +126,11 @@ public class StatusThread extends Thread {
     sleeptimeNs = TimeUnit.SECONDS.toNanos(statusIntervalSeconds);
     measurements = Measurements.getMeasurements();
     this.trackJVMStats = trackJVMStats;
+    // Cheap enough to always sample where the JVM supports it, unlike the other JVM stats.
+    trackClientCpu = Utils.enableThreadCpuTracking();
+    lastClientCpuNs = new long[clients.size()];
+    lastClientAllocBytes = new long[clients.size()];
+    lastClientOps = new long[clients.size()];
   }
 
   /**
@@ -105,12 +143,16 @@ public class StatusThread extends Thread {
     long deadline = startTimeNanos + sleeptimeNs;
     long startIntervalMs = startTimeMs;
     long lastTotalOps = 0;
+    lastClientSampleNs = startTimeNanos;
 
     boolean alldone;
 
     do {
       long nowMs = System.currentTimeMillis();
 
+      if (trackClientCpu) {
+        measureClientThreads();
+      }
       lastTotalOps = computeStats(startTimeMs, startIntervalMs, nowMs, lastTotalOps);
 
       if (trackJVMStats) {
@@ -127,6 +169,9 @@ public class StatusThread extends Thread {
     if (trackJVMStats) {
       measureJVM();
     }
+    if (trackClientCpu) {
+      measureClientThreads();
+    }
     // Print the final stats.
     computeStats(startTimeMs, startIntervalMs, System.currentTimeMillis(), lastTotalOps);
   }
@@ -170,11 +215,24 @@ public class StatusThread extends Thread {
     if (totalops != 0) {
       msg.append(d.format(curthroughput)).append(" current ops/sec; ");
     }
+    if (measurements.isTrackingBytes() && endIntervalMs > startIntervalMs) {
+      long totalBytesRead = measurements.getTotalBytesRead();
+      long totalBytesWritten = measurements.getTotalBytesWritten();
+      double intervalSecs = (endIntervalMs - startIntervalMs) / 1000.0;
+      msg.append(d.format((totalBytesRead - lastTotalBytesRead) / intervalSecs))
+          .append(" current read bytes/sec; ");
+      msg.append(d.format((totalBytesWritten - lastTotalBytesWritten) / intervalSecs))
+          .append(" current write bytes/sec; ");
+      lastTotalBytesRead = totalBytesRead;
+      lastTotalBytesWritten = totalBytesWritten;
+    }
     if (todoops != 0) {
       msg.append("est completion in ").append(RemainingFormatter.format(estremaining));
     }
 
-    msg.append(Measurements.getMeasurements().getSummary());
+    msg.append(clientSummary);
+    msg.append(getStuckClientSummary());
+    msg.append(measurements.getSummary());
 
     System.err.println(msg);
 
@@ -184,6 +242,50 @@ public class StatusThread extends Thread {
     return totalops;
   }
 
+  /**
+   * Sets how many times the operation deadline a client has to be stuck in
+   * one operation before it is reported.
+   */
+  public void setStuckThreadFactor(double factor) {
+    stuckThreadFactor = factor;
+  }
+
+  /**
+   * Finds the clients with an operation, current or abandoned at the
+   * deadline, that has been running for longer than the stuck thread factor
+   * times the operation deadline. Abandoned operations still hold a
+   * connection and a thread of the client, if they ever return.
+   *
+   * @return A summary of the stuck clients, or an empty string if there are none.
+   */
+  String getStuckClientSummary() {
+    int stuck = 0;
+    long longestNs = 0;
+    String longestOperation = null;
+    int longestClient = -1;
+    for (int i = 0; i < clients.size(); i++) {
+      final DBWrapper db = clients.get(i).getDBWrapper();
+      if (db == null || db.getOperationDeadlineNs() == 0) {
+        continue;
+      }
+      final long inFlightNs = db.getInFlightNs();
+      if (inFlightNs > db.getOperationDeadlineNs() * stuckThreadFactor) {
+        stuck++;
+        if (inFlightNs > longestNs) {
+          longestNs = inFlightNs;
+          longestOperation = db.getInFlightOperation();
+          longestClient = i;
+        }
+      }
+    }
+    if (stuck == 0) {
+      return "";
+    }
+    return new StringBuilder(" [STUCK: Threads=").append(stuck)
+        .append(", Longest=client ").append(longestClient).append(" in ").append(longestOperation)
+        .append(" for ").append(new DecimalFormat("#.##").format(longestNs / 1e9)).append(" sec]").toString();
+  }
+
   /**
    * Waits for all of the client to finish or the deadline to expire.
    *
@@ -257,6 +359,131 @@ public class StatusThread extends Thread {
     lastGCTime = gcTime;
   }
 
+  /**
+   * Samples the CPU time and heap allocations of the client threads and
+   * derives the client side cost per operation for the last interval. The
+   * client is flagged as saturated when its threads used more than
+   * {@link #CLIENT_CPU_SATURATION_THRESHOLD} of the cores they could run on,
+   * i.e. the numbers describe YCSB rather than the database.
+   */
+  private void measureClientThreads() {
+    final long now = System.nanoTime();
+    long cpuNs = 0;
+    long allocBytes = 0;
+    long ops = 0;
+    for (int i = 0; i < clients.size(); i++) {
+      final ClientThread client = clients.get(i);
+      final long cpu = client.getCpuTimeNs();
+      final long alloc = client.getAllocatedBytes();
+      final long done = client.getOpsDone();
+      cpuNs += cpu - lastClientCpuNs[i];
+      allocBytes += alloc - lastClientAllocBytes[i];
+      ops += done - lastClientOps[i];
+      lastClientCpuNs[i] = cpu;
+      lastClientAllocBytes[i] = alloc;
+      lastClientOps[i] = done;
+    }
+    final long wallNs = now - lastClientSampleNs;
+    lastClientSampleNs = now;
+    if (ops <= 0 || wallNs <= 0) {
+      clientSummary = "";
+      return;
+    }
+
+    final double cpuPerOpUs = cpuNs / 1000.0 / ops;
+    final double allocPerOp = (double) allocBytes / ops;
+    final long usableCores = Math.max(1, Math.min(completeLatch.getCount(),
+        Runtime.getRuntime().availableProcessors()));
+    final double utilization = cpuNs / ((double) wallNs * usableCores);
+
+    clientIntervals++;
+    maxClientCpuPerOpUs = Math.max(maxClientCpuPerOpUs, cpuPerOpUs);
+    minClientCpuPerOpUs = Math.min(minClientCpuPerOpUs, cpuPerOpUs);
+    maxClientAllocPerOp = Math.max(maxClientAllocPerOp, allocPerOp);
+    minClientAllocPerOp = Math.min(minClientAllocPerOp, allocPerOp);
+
+    DecimalFormat d = new DecimalFormat("#.##");
+    StringBuilder summary = new StringBuilder("[CLIENT: CpuPerOp(us)=").append(d.format(cpuPerOpUs))
+        .append(", AllocPerOp(bytes)=").append(d.format(allocPerOp))
+        .append(", CpuUtilization(%)=").append(d.format(utilization * 100)).append("] ");
+    if (utilization >= CLIENT_CPU_SATURATION_THRESHOLD) {
+      clientCpuSaturatedIntervals++;
+      summary.append("[CLIENT-CPU-SATURATED] ");
+    }
+    clientSummary = summary.toString();
+  }
+
+  /**
+   * @return The total CPU time, in nanoseconds, used by the client threads.
+   */
+  public long getClientCpuTimeNs() {
+    long total = 0;
+    for (ClientThread client : clients) {
+      total += client.getCpuTimeNs();
+    }
+    return total;
+  }
+
+  /**
+   * @return The total heap bytes allocated by the client threads.
+   */
+  public long getClientAllocatedBytes() {
+    long total = 0;
+    for (ClientThread client : clients) {
+      total += client.getAllocatedBytes();
+    }
+    return total;
+  }
+
+  /**
+   * @return The number of status intervals in which the client threads completed operations.
+   */
+  public int getClientIntervals() {
+    return clientIntervals;
+  }
+
+  /**
+   * @return The highest client CPU time per operation, in microseconds, seen in a status interval.
+   */
+  public double getMaxClientCpuPerOpUs() {
+    return maxClientCpuPerOpUs;
+  }
+
+  /**
+   * @return The lowest client CPU time per operation, in microseconds, seen in a status interval.
+   */
+  public double getMinClientCpuPerOpUs() {
+    return minClientCpuPerOpUs;
+  }
+
+  /**
+   * @return The most heap bytes allocated by the client per operation in a status interval.
+   */
+  public double getMaxClientAllocPerOp() {
+    return maxClientAllocPerOp;
+  }
+
+  /**
+   * @return The fewest heap bytes allocated by the client per operation in a status interval.
+   */
+  public double getMinClientAllocPerOp() {
+    return minClientAllocPerOp;
+  }
+
+  /**
+   * @return The number of status intervals in which the client threads were CPU saturated.
+   */
+  public int getClientCpuSaturatedIntervals() {
+    return clientCpuSaturatedIntervals;
+  }
+
+  /**
+   * @return Whether or not the thread is tracking client thread CPU and allocations.
+   */
+  public boolean trackClientCpu() {
+    return trackClientCpu;
+  }
+
   /**
    * @return The maximum threads running during the test.
    */
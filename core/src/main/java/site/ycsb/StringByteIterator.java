@@ -17,6 +17,7 @@
 
 package site.ycsb;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -91,6 +92,35 @@ public class StringByteIterator extends ByteIterator {
     return ret;
   }
 
+  @Override
+  public int nextBuf(byte[] buf, int bufOff) {
+    int size = Math.min(str.length() - off, buf.length - bufOff);
+    for (int i = 0; i < size; i++) {
+      buf[bufOff + i] = (byte) str.charAt(off + i);
+    }
+    off += size;
+    return bufOff + size;
+  }
+
+  @Override
+  public int nextBuf(ByteBuffer buf) {
+    int size = Math.min(str.length() - off, buf.remaining());
+    if (buf.hasArray()) {
+      byte[] array = buf.array();
+      int base = buf.arrayOffset() + buf.position();
+      for (int i = 0; i < size; i++) {
+        array[base + i] = (byte) str.charAt(off + i);
+      }
+      buf.position(buf.position() + size);
+    } else {
+      for (int i = 0; i < size; i++) {
+        buf.put((byte) str.charAt(off + i));
+      }
+    }
+    off += size;
+    return size;
+  }
+
   @Override
   public long bytesLeft() {
     return str.length() - off;
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import java.util.Arrays;
+
+/**
+ * A reusable, column oriented batch of time series points. Metrics and tag
+ * values are stored as int ids into dictionaries shared by the whole workload,
+ * so filling a batch copies no strings. Each point has every tag key, in the
+ * order of {@link #getTagKeys()}.
+ */
+public final class TimeseriesBatch {
+  private final String[] metrics;
+  private final String[] tagKeys;
+  private final String[] tagValues;
+  private final int capacity;
+
+  private final int[] metricIds;
+  private final long[] timestamps;
+  private final long[] longValues;
+  private final double[] doubleValues;
+  private final boolean[] floatingPoint;
+  private final int[] tagValueIds;
+  private int size;
+
+  /**
+   * @param capacity The maximum number of points in the batch.
+   * @param metrics The metric dictionary metric ids refer to.
+   * @param tagKeys The tag keys every point carries.
+   * @param tagValues The tag value dictionary tag value ids refer to.
+   */
+  public TimeseriesBatch(int capacity, String[] metrics, String[] tagKeys, String[] tagValues) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Batch capacity must be at least 1");
+    }
+    this.capacity = capacity;
+    this.metrics = metrics;
+    this.tagKeys = tagKeys;
+    this.tagValues = tagValues;
+    metricIds = new int[capacity];
+    timestamps = new long[capacity];
+    longValues = new long[capacity];
+    doubleValues = new double[capacity];
+    floatingPoint = new boolean[capacity];
+    tagValueIds = new int[capacity * tagKeys.length];
+  }
+
+  /**
+   * Appends an integer point.
+   * @param tagIds The tag value id for each tag key.
+   */
+  public void add(int metricId, long timestamp, int[] tagIds, long value) {
+    append(metricId, timestamp, tagIds);
+    longValues[size] = value;
+    floatingPoint[size] = false;
+    size++;
+  }
+
+  /**
+   * Appends a floating point point.
+   * @param tagIds The tag value id for each tag key.
+   */
+  public void add(int metricId, long timestamp, int[] tagIds, double value) {
+    append(metricId, timestamp, tagIds);
+    doubleValues[size] = value;
+    floatingPoint[size] = true;
+    size++;
+  }
+
+  private void append(int metricId, long timestamp, int[] tagIds) {
+    if (size == capacity) {
+      throw new IllegalStateException("Batch is full");
+    }
+    metricIds[size] = metricId;
+    timestamps[size] = timestamp;
+    System.arraycopy(tagIds, 0, tagValueIds, size * tagKeys.length, tagKeys.length);
+  }
+
+  /** Empties the batch so it can be refilled. */
+  public void clear() {
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  public String[] getTagKeys() {
+    return Arrays.copyOf(tagKeys, tagKeys.length);
+  }
+
+  public int getTagCount() {
+    return tagKeys.length;
+  }
+
+  public String getTagKey(int tag) {
+    return tagKeys[tag];
+  }
+
+  public int getMetricId(int point) {
+    return metricIds[point];
+  }
+
+  public String getMetric(int point) {
+    return metrics[metricIds[point]];
+  }
+
+  public long getTimestamp(int point) {
+    return timestamps[point];
+  }
+
+  public boolean isFloatingPoint(int point) {
+    return floatingPoint[point];
+  }
+
+  public long getLongValue(int point) {
+    return longValues[point];
+  }
+
+  public double getDoubleValue(int point) {
+    return doubleValues[point];
+  }
+
+  public int getTagValueId(int point, int tag) {
+    return tagValueIds[point * tagKeys.length + tag];
+  }
+
+  public String getTagValue(int point, int tag) {
+    return tagValues[getTagValueId(point, tag)];
+  }
+}
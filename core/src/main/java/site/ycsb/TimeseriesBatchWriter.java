@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+/**
+ * Implemented by DBs that can write a whole {@link TimeseriesBatch} of points
+ * in one call, the way time series databases ingest line protocol or bulk
+ * write requests. {@link TimeseriesDB} provides a default that writes the
+ * points one at a time.
+ */
+public interface TimeseriesBatchWriter {
+  /**
+   * Writes every point of the batch. The batch is reused by the caller once
+   * this returns, so implementations must not keep a reference to it.
+   *
+   * @param table The name of the table.
+   * @param batch The points to write.
+   * @return A {@link Status} for the batch as a whole.
+   */
+  Status insertBatch(String table, TimeseriesBatch batch);
+}
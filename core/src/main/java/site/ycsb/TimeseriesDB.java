@@ -36,7 +36,7 @@ import java.util.concurrent.TimeUnit;
  * @implSpec It's vital to call <tt>super.init()</tt> when overwriting the init method
  * to correctly initialize the workload-parsing.
  */
-public abstract class TimeseriesDB extends DB {
+public abstract class TimeseriesDB extends DB implements TimeseriesBatchWriter {
 
   // defaults for downsampling. Basically we ignore it
   private static final String DOWNSAMPLING_FUNCTION_PROPERTY_DEFAULT = "NONE";
@@ -59,6 +59,8 @@ public abstract class TimeseriesDB extends DB {
   protected TimeUnit timestampUnit;
   protected String groupByKey;
   protected String downsamplingKey;
+  protected String topNKey;
+  protected String rateKey;
   protected Integer downsamplingInterval;
   protected AggregationOperation downsamplingFunction;
 
@@ -97,6 +99,12 @@ public abstract class TimeseriesDB extends DB {
     downsamplingKey = getProperties().getProperty(
         TimeSeriesWorkload.DOWNSAMPLING_KEY_PROPERTY,
         TimeSeriesWorkload.DOWNSAMPLING_KEY_PROPERTY_DEFAULT);
+    topNKey = getProperties().getProperty(
+        TimeSeriesWorkload.TOPN_KEY_PROPERTY,
+        TimeSeriesWorkload.TOPN_KEY_PROPERTY_DEFAULT);
+    rateKey = getProperties().getProperty(
+        TimeSeriesWorkload.RATE_KEY_PROPERTY,
+        TimeSeriesWorkload.RATE_KEY_PROPERTY_DEFAULT);
     downsamplingFunction = TimeseriesDB.AggregationOperation.valueOf(getProperties()
         .getProperty(TimeSeriesWorkload.DOWNSAMPLING_FUNCTION_PROPERTY, DOWNSAMPLING_FUNCTION_PROPERTY_DEFAULT));
     downsamplingInterval = Integer.valueOf(getProperties()
@@ -156,6 +164,8 @@ public abstract class TimeseriesDB extends DB {
     boolean rangeSet = false;
     long start = 0;
     long end = 0;
+    int topN = 0;
+    RateFunction rate = null;
     for (String field : fields) {
       if (field.startsWith(timestampKey)) {
         String[] timestampParts = field.split(tagPairDelimiter);
@@ -172,6 +182,10 @@ public abstract class TimeseriesDB extends DB {
       } else if (field.startsWith(groupByKey)) {
         String groupBySpecifier = field.split(tagPairDelimiter)[1];
         aggregationOperation = TimeseriesDB.AggregationOperation.valueOf(groupBySpecifier);
+      } else if (field.startsWith(topNKey)) {
+        topN = Integer.parseInt(field.split(tagPairDelimiter)[1]);
+      } else if (field.startsWith(rateKey)) {
+        rate = RateFunction.valueOf(field.split(tagPairDelimiter)[1].toUpperCase());
       } else if (field.startsWith(downsamplingKey)) {
         String downsamplingSpec = field.split(tagPairDelimiter)[1];
         // apparently that needs to always hold true:
@@ -193,6 +207,9 @@ public abstract class TimeseriesDB extends DB {
     if (!rangeSet) {
       return Status.BAD_REQUEST;
     }
+    if (topN > 0 || rate != null) {
+      return analyticScan(table, start, end, tagQueries, aggregationOperation, topN, rate);
+    }
     return scan(table, start, end, tagQueries, downsamplingFunction, downsamplingInterval, timestampUnit);
   }
 
@@ -212,6 +229,27 @@ public abstract class TimeseriesDB extends DB {
   protected abstract Status scan(String metric, long startTs, long endTs, Map<String, List<String>> tags,
                                  AggregationOperation aggreg, int timeValue, TimeUnit timeUnit);
 
+  /**
+   * Perform a dashboard style analytic query: a range scan whose aggregated
+   * series are optionally turned into a rate or derivative and/or cut down to
+   * the N largest. The default ignores the post-processing and runs
+   * {@link #scan(String, long, long, Map, AggregationOperation, int, TimeUnit)} so
+   * databases without support still do the underlying read work.
+   *
+   * @param metric    The name of the metric
+   * @param startTs   The timestamp of the first record to read.
+   * @param endTs     The timestamp of the last record to read.
+   * @param tags      actual tags that were want to receive (can be empty).
+   * @param aggreg    The group-by aggregation requested by the query.
+   * @param topN      Only return the N series with the largest values, 0 for all.
+   * @param rate      The rate function to apply to each series, or null for none.
+   * @return A {@link Status} detailing the outcome of the query.
+   */
+  protected Status analyticScan(String metric, long startTs, long endTs, Map<String, List<String>> tags,
+                                AggregationOperation aggreg, int topN, RateFunction rate) {
+    return scan(metric, startTs, endTs, tags, downsamplingFunction, downsamplingInterval, timestampUnit);
+  }
+
   @Override
   public Status update(String table, String key, Map<String, ByteIterator> values) {
     return Status.NOT_IMPLEMENTED;
@@ -230,6 +268,36 @@ public abstract class TimeseriesDB extends DB {
     }
   }
 
+  /**
+   * Writes a batch of points. This default decomposes the batch into one
+   * {@link #insert(String, long, long, Map)} or {@link #insert(String, long, double, Map)}
+   * call per point; databases with a bulk write API should override it.
+   *
+   * @param table The name of the table (unused, points carry their metric)
+   * @param batch The points to write
+   * @return {@link Status#OK} or the first failure, in which case the rest of the batch is skipped
+   */
+  @Override
+  public Status insertBatch(String table, TimeseriesBatch batch) {
+    final Map<String, ByteIterator> tags = new HashMap<>();
+    for (int i = 0; i < batch.size(); i++) {
+      tags.clear();
+      for (int t = 0; t < batch.getTagCount(); t++) {
+        tags.put(batch.getTagKey(t), new StringByteIterator(batch.getTagValue(i, t)));
+      }
+      final Status status;
+      if (batch.isFloatingPoint(i)) {
+        status = insert(batch.getMetric(i), batch.getTimestamp(i), batch.getDoubleValue(i), tags);
+      } else {
+        status = insert(batch.getMetric(i), batch.getTimestamp(i), batch.getLongValue(i), tags);
+      }
+      if (!status.isOk()) {
+        return status;
+      }
+    }
+    return Status.OK;
+  }
+
   /**
    * Insert a record into the database. Any tags/tagvalue pairs in the specified tagmap and the given value will be
    * written into the record with the specified timestamp.
@@ -294,6 +362,20 @@ public abstract class TimeseriesDB extends DB {
   }
 
 
+  /**
+   * An enum containing the possible post-aggregation rate functions of analytic queries.
+   */
+  public enum RateFunction {
+    /**
+     * The per-second rate of increase of a counter, treating decreases as counter resets.
+     */
+    RATE,
+    /**
+     * The per-second difference between consecutive values.
+     */
+    DERIVATIVE;
+  }
+
   /**
    * An enum containing the possible aggregation operations.
    * Not all of these operations are required to be supported by implementing classes.
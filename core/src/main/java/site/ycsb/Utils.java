@@ -20,9 +20,11 @@ package site.ycsb;
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -33,6 +35,71 @@ public final class Utils {
     // not used
   }
 
+  /** The seed of the random streams, only read while {@link #seeded}. */
+  private static volatile long randomSeed;
+  private static volatile boolean seeded;
+  /** Bumped on every new seed so threads replace streams from the old one. */
+  private static volatile int randomSeedVersion;
+
+  private static final ThreadLocal<RandomStream> RANDOM_STREAM = new ThreadLocal<>();
+
+  /**
+   * The random number generator every generator and value filler draws from.
+   * Unseeded this is {@link ThreadLocalRandom}. Once {@link #setRandomSeed}
+   * is called, every thread gets its own seeded stream, picked with
+   * {@link #setRandomStream} or else by the name of the thread, so a thread
+   * doing the same work draws the same numbers in every run.
+   *
+   * @return The generator of the calling thread, only to be used by it.
+   */
+  public static Random random() {
+    if (!seeded) {
+      return ThreadLocalRandom.current();
+    }
+    RandomStream stream = RANDOM_STREAM.get();
+    if (stream == null || stream.version != randomSeedVersion) {
+      stream = new RandomStream(stream == null ? Thread.currentThread().getName().hashCode() : stream.id);
+      RANDOM_STREAM.set(stream);
+    }
+    return stream.random;
+  }
+
+  /**
+   * Seeds the random streams of all threads.
+   *
+   * @param seed The seed, or null to go back to unseeded random numbers.
+   */
+  public static void setRandomSeed(Long seed) {
+    if (seed != null) {
+      randomSeed = seed;
+    }
+    randomSeedVersion++;
+    seeded = seed != null;
+  }
+
+  /**
+   * Picks the seeded random stream of the calling thread, restarting it.
+   *
+   * @param id The stream, e.g. the id of a client thread.
+   */
+  public static void setRandomStream(long id) {
+    RANDOM_STREAM.set(new RandomStream(id));
+  }
+
+  /**
+   * A seeded random stream of one thread.
+   */
+  private static final class RandomStream {
+    private final long id;
+    private final int version = randomSeedVersion;
+    private final Random random;
+
+    RandomStream(final long id) {
+      this.id = id;
+      random = new SplitMixRandom(randomSeed, id);
+    }
+  }
+
   /**
    * Hash an integer value.
    */
@@ -187,6 +254,57 @@ public final class Utils {
     return time;
   }
 
+  /**
+   * Enables per thread CPU time and allocation tracking when the JVM supports it.
+   * @return True if per thread CPU time can be measured.
+   */
+  public static boolean enableThreadCpuTracking() {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!bean.isThreadCpuTimeSupported()) {
+      return false;
+    }
+    try {
+      if (!bean.isThreadCpuTimeEnabled()) {
+        bean.setThreadCpuTimeEnabled(true);
+      }
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (sunBean.isThreadAllocatedMemorySupported() && !sunBean.isThreadAllocatedMemoryEnabled()) {
+          sunBean.setThreadAllocatedMemoryEnabled(true);
+        }
+      }
+    } catch (SecurityException e) {
+      // Not allowed to turn it on, so only usable if it already was.
+      return bean.isThreadCpuTimeEnabled();
+    }
+    return true;
+  }
+
+  /**
+   * @param threadId The ID of a live thread.
+   * @return The CPU time, in nanoseconds, used by the thread or -1 if the
+   * thread is not alive or CPU time measurement is not supported.
+   */
+  public static long getThreadCpuTimeNs(long threadId) {
+    return ManagementFactory.getThreadMXBean().getThreadCpuTime(threadId);
+  }
+
+  /**
+   * @param threadId The ID of a live thread.
+   * @return The number of bytes allocated in the heap by the thread or -1 if
+   * the thread is not alive or the JVM does not support measuring it.
+   */
+  public static long getThreadAllocatedBytes(long threadId) {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+      if (sunBean.isThreadAllocatedMemoryEnabled()) {
+        return sunBean.getThreadAllocatedBytes(threadId);
+      }
+    }
+    return -1;
+  }
+
   /**
    * Returns a map of garbage collectors and their stats.
    * The first object in the array is the total count since JVM start and the
@@ -222,7 +340,7 @@ public final class Utils {
    */
   public static <T> T [] shuffleArray(final T[] array) {
     for (int i = array.length -1; i > 0; i--) {
-      final int idx = ThreadLocalRandom.current().nextInt(i + 1);
+      final int idx = random().nextInt(i + 1);
       final T temp = array[idx];
       array[idx] = array[i];
       array[i] = temp;
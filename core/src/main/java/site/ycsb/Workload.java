@@ -77,6 +77,13 @@ public abstract class Workload {
     return null;
   }
       
+  /**
+   * Cleanup any state for a particular client thread. Called once by each client thread after its last
+   * operation and before its DB is cleaned up, so workloads that buffer writes per thread can flush them.
+   */
+  public void cleanupThread(DB db, Object threadstate) {
+  }
+
   /**
    * Cleanup the scenario. Called once, in the main client thread, after all operations have completed.
    */
@@ -16,31 +16,41 @@
  */
 package site.ycsb.generator;
 
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * A CounterGenerator that reports generated integers via lastInt()
  * only after they have been acknowledged.
+ * <p>
+ * Acknowledged values above the limit are kept as bits in segments that are
+ * created when first needed and dropped once the limit has passed them, so
+ * any number of values may be outstanding. Acknowledging sets a bit and
+ * advances the limit over the run of set bits after it with compare-and-set,
+ * without locks.
  */
 public class AcknowledgedCounterGenerator extends CounterGenerator {
-  /** The size of the window of pending id ack's. 2^20 = {@value} */
-  static final int WINDOW_SIZE = Integer.rotateLeft(1, 20);
+  /** The number of values a segment tracks. 2^16 = {@value} */
+  static final int SEGMENT_SIZE = 1 << 16;
+
+  private static final int SEGMENT_SHIFT = 16;
+  private static final int WORD_SHIFT = 6;
+  private static final int WORD_MASK = 63;
 
-  /** The mask to use to turn an id into a slot in {@link #window}. */
-  private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+  /** The segments by value / {@link #SEGMENT_SIZE}. */
+  private final ConcurrentHashMap<Long, Segment> segments = new ConcurrentHashMap<>();
+  private final AtomicLong limit;
 
-  private final ReentrantLock lock;
-  private final boolean[] window;
-  private volatile long limit;
+  /** The segment used last, saving most map lookups. */
+  private volatile Segment recent;
 
   /**
    * Create a counter that starts at countstart.
    */
   public AcknowledgedCounterGenerator(long countstart) {
     super(countstart);
-    lock = new ReentrantLock();
-    window = new boolean[WINDOW_SIZE];
-    limit = countstart - 1;
+    limit = new AtomicLong(countstart - 1);
   }
 
   /**
@@ -49,40 +59,88 @@ public class AcknowledgedCounterGenerator extends CounterGenerator {
    */
   @Override
   public Long lastValue() {
-    return limit;
+    return limit.get();
   }
 
   /**
    * Make a generated counter value available via lastInt().
    */
   public void acknowledge(long value) {
-    final int currentSlot = (int)(value & WINDOW_MASK);
-    if (window[currentSlot]) {
-      throw new RuntimeException("Too many unacknowledged insertion keys.");
-    }
+    final AtomicLongArray segment = segment(value >>> SEGMENT_SHIFT, true);
+    final int word = (int) (value & (SEGMENT_SIZE - 1)) >>> WORD_SHIFT;
+    final long bit = 1L << (value & WORD_MASK);
+    long bits;
+    do {
+      bits = segment.get(word);
+    } while (!segment.compareAndSet(word, bits, bits | bit));
 
-    window[currentSlot] = true;
-
-    if (lock.tryLock()) {
-      // move a contiguous sequence from the window
-      // over to the "limit" variable
-      try {
-        // Only loop through the entire window at most once.
-        long beforeFirstSlot = (limit & WINDOW_MASK);
-        long index;
-        for (index = limit + 1; index != beforeFirstSlot; ++index) {
-          int slot = (int)(index & WINDOW_MASK);
-          if (!window[slot]) {
-            break;
-          }
+    advance();
+  }
 
-          window[slot] = false;
-        }
+  /**
+   * Moves the limit over the acknowledged values that directly follow it.
+   * Every caller reads the limit before the bit after it, so a value
+   * acknowledged while another thread gives up on it is always seen by the
+   * acknowledging thread itself.
+   */
+  private void advance() {
+    while (true) {
+      final long current = limit.get();
+      final long next = current + 1;
+      final AtomicLongArray segment = segment(next >>> SEGMENT_SHIFT, false);
+      if (segment == null) {
+        return;
+      }
+      final int offset = (int) (next & WORD_MASK);
+      final long bits = segment.get((int) (next & (SEGMENT_SIZE - 1)) >>> WORD_SHIFT) >>> offset;
+      // The run of set bits from next up to the end of its word.
+      final int run = Math.min(Long.numberOfTrailingZeros(~bits), 64 - offset);
+      if (run == 0) {
+        return;
+      }
+      final long last = current + run;
+      if (limit.compareAndSet(current, last)
+          && (last + 1) >>> SEGMENT_SHIFT != next >>> SEGMENT_SHIFT) {
+        // Nothing below the limit is acknowledged again, the segment is done.
+        segments.remove(next >>> SEGMENT_SHIFT);
+      }
+    }
+  }
 
-        limit = index - 1;
-      } finally {
-        lock.unlock();
+  /**
+   * @param number The value / {@link #SEGMENT_SIZE}.
+   * @param create Whether to create the segment if it does not exist.
+   * @return The bits of the segment, or null if it does not exist and is not created.
+   */
+  private AtomicLongArray segment(final long number, final boolean create) {
+    Segment segment = recent;
+    if (segment != null && segment.number == number) {
+      return segment.bits;
+    }
+    segment = segments.get(number);
+    if (segment == null) {
+      if (!create) {
+        return null;
+      }
+      final Segment created = new Segment(number);
+      segment = segments.putIfAbsent(number, created);
+      if (segment == null) {
+        segment = created;
       }
     }
+    recent = segment;
+    return segment.bits;
+  }
+
+  /**
+   * The acknowledged values of one range of {@link #SEGMENT_SIZE} values.
+   */
+  private static final class Segment {
+    private final long number;
+    private final AtomicLongArray bits = new AtomicLongArray(SEGMENT_SIZE >>> WORD_SHIFT);
+
+    Segment(final long number) {
+      this.number = number;
+    }
   }
 }
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.generator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import site.ycsb.Utils;
+
+/**
+ * Chooses from a discrete set of weighted values in constant time, using
+ * Vose's alias method: one random index into a table of equally likely
+ * columns and one coin flip between the column's own value and its alias.
+ * Unlike {@link DiscreteGenerator} the values and weights are fixed once built.
+ */
+public class AliasGenerator<V> extends Generator<V> {
+  private final List<V> values;
+  /** Per column, the probability of choosing its own value rather than its alias. */
+  private final double[] probability;
+  private final int[] alias;
+  private V lastvalue;
+
+  /**
+   * @param values The values to choose from.
+   * @param weights The weight of every value, not negative and not all 0.
+   */
+  public AliasGenerator(final List<V> values, final double[] weights) {
+    if (values.size() != weights.length || values.isEmpty()) {
+      throw new IllegalArgumentException("Need one weight per value and at least one value");
+    }
+    double sum = 0;
+    for (double weight : weights) {
+      if (weight < 0 || Double.isNaN(weight)) {
+        throw new IllegalArgumentException("Weights must not be negative: " + weight);
+      }
+      sum += weight;
+    }
+    if (sum <= 0) {
+      throw new IllegalArgumentException("At least one weight must be positive");
+    }
+
+    final int n = weights.length;
+    this.values = new ArrayList<>(values);
+    probability = new double[n];
+    alias = new int[n];
+
+    final double[] scaled = new double[n];
+    final Deque<Integer> small = new ArrayDeque<>();
+    final Deque<Integer> large = new ArrayDeque<>();
+    for (int i = 0; i < n; i++) {
+      scaled[i] = weights[i] * n / sum;
+      if (scaled[i] < 1) {
+        small.push(i);
+      } else {
+        large.push(i);
+      }
+    }
+    while (!small.isEmpty() && !large.isEmpty()) {
+      final int less = small.pop();
+      final int more = large.pop();
+      probability[less] = scaled[less];
+      alias[less] = more;
+      scaled[more] = scaled[more] + scaled[less] - 1;
+      if (scaled[more] < 1) {
+        small.push(more);
+      } else {
+        large.push(more);
+      }
+    }
+    // Whatever is left is 1 up to rounding errors.
+    while (!large.isEmpty()) {
+      probability[large.pop()] = 1;
+    }
+    while (!small.isEmpty()) {
+      probability[small.pop()] = 1;
+    }
+  }
+
+  /**
+   * @return The index of the next value chosen.
+   */
+  public int nextIndex() {
+    final double u = Utils.random().nextDouble() * probability.length;
+    final int column = Math.min((int) u, probability.length - 1);
+    return u - column < probability[column] ? column : alias[column];
+  }
+
+  @Override
+  public V nextValue() {
+    return values.get(nextIndex());
+  }
+
+  /**
+   * Like {@link DiscreteGenerator} this is not updated by every call to
+   * {@link #nextValue()}, which would make all threads write the same field.
+   */
+  @Override
+  public V lastValue() {
+    if (lastvalue == null) {
+      lastvalue = nextValue();
+    }
+    return lastvalue;
+  }
+}
@@ -216,6 +216,29 @@ public class IncrementingPrintableStringGenerator extends Generator<String> {
     return lastValue;
   }
 
+  /**
+   * Returns the string that the given call to {@link #nextValue()} would
+   * produce on a fresh generator, counting from zero, without touching this
+   * generator's state. Wraps around the same way the generator rolls over.
+   * Since it is stateless it may be called concurrently, e.g. to build large
+   * dictionaries in parallel.
+   * @param index The zero based position in the sequence.
+   * @return The string at that position.
+   */
+  public String valueAt(long index) {
+    final int[] digits = new int[length];
+    long remainder = index;
+    for (int i = length - 1; i >= 0 && remainder > 0; --i) {
+      digits[i] = (int) (remainder % characterSet.length);
+      remainder /= characterSet.length;
+    }
+    final StringBuilder buffer = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      buffer.appendCodePoint(characterSet[digits[i]]);
+    }
+    return buffer.toString();
+  }
+
   @Override
   public String lastValue() {
     return lastValue;
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2017 YCSB contributors All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.measurements;
+
+import site.ycsb.measurements.exporter.MeasurementsExporter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the bytes read and written by a single operation type, such as READ.
+ * Keeps both a running total for the final export and a window that is
+ * drained on every status report.
+ */
+class ByteCounter {
+  private final String name;
+
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+
+  //keep a windowed version of these stats for printing status
+  private final LongAdder windowBytesRead = new LongAdder();
+  private final LongAdder windowBytesWritten = new LongAdder();
+
+  ByteCounter(String name) {
+    this.name = name;
+  }
+
+  void add(long read, long written) {
+    if (read > 0) {
+      bytesRead.add(read);
+      windowBytesRead.add(read);
+    }
+    if (written > 0) {
+      bytesWritten.add(written);
+      windowBytesWritten.add(written);
+    }
+  }
+
+  long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  /**
+   * @return A one line summary of the bytes moved since the last call, or an
+   * empty string if nothing was transferred in the window.
+   */
+  String getSummary() {
+    long read = windowBytesRead.sumThenReset();
+    long written = windowBytesWritten.sumThenReset();
+    if (read == 0 && written == 0) {
+      return "";
+    }
+    return "[" + name + "-BYTES: Read=" + read + ", Written=" + written + "]";
+  }
+
+  void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    exporter.write(name, "BytesRead", bytesRead.sum());
+    exporter.write(name, "BytesWritten", bytesWritten.sum());
+  }
+}
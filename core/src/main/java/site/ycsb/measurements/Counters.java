@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2017 YCSB contributors All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.measurements;
+
+import site.ycsb.measurements.exporter.MeasurementsExporter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events of a single operation type that are not latencies, such as
+ * cache hits, along with the largest values seen and ratios between counts.
+ * Exported in the order the counts and maxima were first seen, followed by
+ * the ratios.
+ */
+class Counters {
+  private final String name;
+
+  private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+  private final Map<String, LongAccumulator> maxima = new ConcurrentHashMap<>();
+  private final List<String> names = new CopyOnWriteArrayList<>();
+  private final Map<String, String[]> ratios = new ConcurrentHashMap<>();
+  private final List<String> ratioNames = new CopyOnWriteArrayList<>();
+
+  Counters(String name) {
+    this.name = name;
+  }
+
+  void add(String counter, long delta) {
+    getCount(counter).add(delta);
+  }
+
+  private LongAdder getCount(String counter) {
+    LongAdder c = counts.get(counter);
+    if (c == null) {
+      c = new LongAdder();
+      LongAdder oldC = counts.putIfAbsent(counter, c);
+      if (oldC != null) {
+        c = oldC;
+      } else {
+        names.add(counter);
+      }
+    }
+    return c;
+  }
+
+  void max(String counter, long value) {
+    LongAccumulator m = maxima.get(counter);
+    if (m == null) {
+      m = new LongAccumulator(Math::max, 0);
+      LongAccumulator oldM = maxima.putIfAbsent(counter, m);
+      if (oldM != null) {
+        m = oldM;
+      } else {
+        names.add(counter);
+      }
+    }
+    m.accumulate(value);
+  }
+
+  long get(String counter) {
+    LongAdder c = counts.get(counter);
+    if (c != null) {
+      return c.sum();
+    }
+    LongAccumulator m = maxima.get(counter);
+    return m == null ? 0 : m.get();
+  }
+
+  /**
+   * Exports a ratio of counts, the numerator over the sum of the denominators.
+   * The counts it uses are exported as well, even while they are 0.
+   */
+  void addRatio(String ratio, String numerator, String... denominators) {
+    String[] terms = new String[denominators.length + 1];
+    terms[0] = numerator;
+    System.arraycopy(denominators, 0, terms, 1, denominators.length);
+    for (String term : terms) {
+      getCount(term);
+    }
+    if (ratios.putIfAbsent(ratio, terms) == null) {
+      ratioNames.add(ratio);
+    }
+  }
+
+  void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    for (String counter : names) {
+      exporter.write(name, counter, get(counter));
+    }
+    for (String ratio : ratioNames) {
+      String[] terms = ratios.get(ratio);
+      long denominator = 0;
+      for (int i = 1; i < terms.length; i++) {
+        denominator += get(terms[i]);
+      }
+      exporter.write(name, ratio, denominator == 0 ? 0.0 : (double) get(terms[0]) / denominator);
+    }
+  }
+}
@@ -43,12 +43,27 @@ public class Measurements {
   public static final String MEASUREMENT_TYPE_PROPERTY = "measurementtype";
   private static final String MEASUREMENT_TYPE_PROPERTY_DEFAULT = "hdrhistogram";
 
+  /**
+   * Which latencies to record: "op" for the service time, "intended" for the latency from the intended start,
+   * "both" for the two of them and "all" to also record the queueing delay between the intended and the actual
+   * start. The intended start is only meaningful for throttled runs.
+   */
   public static final String MEASUREMENT_INTERVAL = "measurement.interval";
   private static final String MEASUREMENT_INTERVAL_DEFAULT = "op";
 
   public static final String MEASUREMENT_TRACK_JVM_PROPERTY = "measurement.trackjvm";
   public static final String MEASUREMENT_TRACK_JVM_PROPERTY_DEFAULT = "false";
 
+  /**
+   * The fraction of failed operations of one type in a status interval above which the interval is reported
+   * as a failure burst.
+   */
+  public static final String FAILURE_BURST_THRESHOLD_PROPERTY = "measurement.failureburst.threshold";
+  public static final String FAILURE_BURST_THRESHOLD_PROPERTY_DEFAULT = "0.01";
+
+  public static final String MEASUREMENT_TRACK_BYTES_PROPERTY = "measurement.trackbytes";
+  public static final String MEASUREMENT_TRACK_BYTES_PROPERTY_DEFAULT = "false";
+
   private static Measurements singleton = null;
   private static Properties measurementproperties = null;
 
@@ -68,19 +83,35 @@ public class Measurements {
 
   private final ConcurrentHashMap<String, OneMeasurement> opToMesurementMap;
   private final ConcurrentHashMap<String, OneMeasurement> opToIntendedMesurementMap;
+  private final ConcurrentHashMap<String, OneMeasurement> opToQueueMesurementMap;
+  private final ConcurrentHashMap<String, ByteCounter> opToByteCounterMap;
+  private final ConcurrentHashMap<String, Counters> opToCountersMap;
+  private final boolean trackBytes;
+  private final double failureBurstThreshold;
   private final MeasurementType measurementType;
   private final int measurementInterval;
   private final Properties props;
 
+  // Set while the clients warm up, nothing is recorded until it is cleared.
+  private volatile boolean warmingUp;
+
   /**
    * Create a new object with the specified properties.
    */
   public Measurements(Properties props) {
     opToMesurementMap = new ConcurrentHashMap<>();
     opToIntendedMesurementMap = new ConcurrentHashMap<>();
+    opToQueueMesurementMap = new ConcurrentHashMap<>();
+    opToByteCounterMap = new ConcurrentHashMap<>();
+    opToCountersMap = new ConcurrentHashMap<>();
 
     this.props = props;
 
+    trackBytes = Boolean.parseBoolean(this.props.getProperty(MEASUREMENT_TRACK_BYTES_PROPERTY,
+        MEASUREMENT_TRACK_BYTES_PROPERTY_DEFAULT));
+    failureBurstThreshold = Double.parseDouble(this.props.getProperty(FAILURE_BURST_THRESHOLD_PROPERTY,
+        FAILURE_BURST_THRESHOLD_PROPERTY_DEFAULT));
+
     String mTypeString = this.props.getProperty(MEASUREMENT_TYPE_PROPERTY, MEASUREMENT_TYPE_PROPERTY_DEFAULT);
     switch (mTypeString) {
     case "histogram":
@@ -116,6 +147,9 @@ public class Measurements {
     case "both":
       measurementInterval = 2;
       break;
+    case "all":
+      measurementInterval = 3;
+      break;
     default:
       throw new IllegalArgumentException("unknown " + MEASUREMENT_INTERVAL + "=" + mIntervalString);
     }
@@ -162,6 +196,18 @@ public class Measurements {
     }
   };
 
+  /**
+   * Stops or resumes recording, so operations issued while the clients warm
+   * up are left out of the results.
+   */
+  public void setWarmingUp(boolean warmup) {
+    warmingUp = warmup;
+  }
+
+  public boolean isWarmingUp() {
+    return warmingUp;
+  }
+
   public void setIntendedStartTimeNs(long time) {
     if (measurementInterval == 0) {
       return;
@@ -178,15 +224,47 @@ public class Measurements {
 
   /**
    * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured
-   * value.
+   * value in microseconds.
    */
   public void measure(String operation, int latency) {
-    if (measurementInterval == 1) {
+    measureNanos(operation, latency * 1000L);
+  }
+
+  /**
+   * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured
+   * value in microseconds.
+   */
+  public void measureIntended(String operation, int latency) {
+    measureIntendedNanos(operation, latency * 1000L);
+  }
+
+  /**
+   * Report the timing of a single operation. Depending on {@link #MEASUREMENT_INTERVAL} this records the service
+   * time (start to end), the latency from the intended start (intended start to end) and the queueing delay
+   * (intended start to start) as separate measurements.
+   *
+   * @param operation The name of the operation, e.g. "READ".
+   * @param intendedStartTimeNs The time the operation was scheduled to start, see
+   *                            {@link #getIntendedtartTimeNs()}.
+   * @param startTimeNs The time the operation actually started.
+   * @param endTimeNs The time the operation completed.
+   */
+  public void measure(String operation, long intendedStartTimeNs, long startTimeNs, long endTimeNs) {
+    measureNanos(operation, endTimeNs - startTimeNs);
+    measureIntendedNanos(operation, endTimeNs - intendedStartTimeNs);
+    measureQueueNanos(operation, startTimeNs - intendedStartTimeNs);
+  }
+
+  /**
+   * Report the service time of a single operation, in nanoseconds.
+   */
+  public void measureNanos(String operation, long latencyNs) {
+    if (measurementInterval == 1 || warmingUp) {
       return;
     }
     try {
       OneMeasurement m = getOpMeasurement(operation);
-      m.measure(latency);
+      m.measureNanos(latencyNs);
     } catch (java.lang.ArrayIndexOutOfBoundsException e) {
       // This seems like a terribly hacky way to cover up for a bug in the measurement code
       System.out.println("ERROR: java.lang.ArrayIndexOutOfBoundsException - ignoring and continuing");
@@ -196,16 +274,34 @@ public class Measurements {
   }
 
   /**
-   * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured
-   * value.
+   * Report the latency of a single operation measured from its intended start, in nanoseconds.
    */
-  public void measureIntended(String operation, int latency) {
-    if (measurementInterval == 0) {
+  public void measureIntendedNanos(String operation, long latencyNs) {
+    if (measurementInterval == 0 || warmingUp) {
       return;
     }
     try {
       OneMeasurement m = getOpIntendedMeasurement(operation);
-      m.measure(latency);
+      m.measureNanos(latencyNs);
+    } catch (java.lang.ArrayIndexOutOfBoundsException e) {
+      // This seems like a terribly hacky way to cover up for a bug in the measurement code
+      System.out.println("ERROR: java.lang.ArrayIndexOutOfBoundsException - ignoring and continuing");
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+    }
+  }
+
+  /**
+   * Report how long a single operation waited between its intended and actual start, in nanoseconds.
+   */
+  public void measureQueueNanos(String operation, long delayNs) {
+    if (measurementInterval != 3 || warmingUp) {
+      return;
+    }
+    try {
+      OneMeasurement m = getOpQueueMeasurement(operation);
+      // The intended start may be a few nanos late when the thread was not throttled.
+      m.measureNanos(Math.max(0, delayNs));
     } catch (java.lang.ArrayIndexOutOfBoundsException e) {
       // This seems like a terribly hacky way to cover up for a bug in the measurement code
       System.out.println("ERROR: java.lang.ArrayIndexOutOfBoundsException - ignoring and continuing");
@@ -239,10 +335,126 @@ public class Measurements {
     return m;
   }
 
+  private OneMeasurement getOpQueueMeasurement(String operation) {
+    OneMeasurement m = opToQueueMesurementMap.get(operation);
+    if (m == null) {
+      m = constructOneMeasurement("Queue-" + operation);
+      OneMeasurement oldM = opToQueueMesurementMap.putIfAbsent(operation, m);
+      if (oldM != null) {
+        m = oldM;
+      }
+    }
+    return m;
+  }
+
+  /**
+   * @return Whether or not the bytes moved by each operation should be reported.
+   */
+  public boolean isTrackingBytes() {
+    return trackBytes;
+  }
+
+  /**
+   * Report the number of value bytes read and written by a single DB operation.
+   */
+  public void measureBytes(String operation, long bytesRead, long bytesWritten) {
+    if (!trackBytes || warmingUp) {
+      return;
+    }
+    getOpByteCounter(operation).add(bytesRead, bytesWritten);
+  }
+
+  private ByteCounter getOpByteCounter(String operation) {
+    ByteCounter c = opToByteCounterMap.get(operation);
+    if (c == null) {
+      c = new ByteCounter(operation);
+      ByteCounter oldC = opToByteCounterMap.putIfAbsent(operation, c);
+      if (oldC != null) {
+        c = oldC;
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Adds to a count of an operation that is not a latency, such as cache
+   * hits, exported as {@code [operation], name, total}.
+   */
+  public void count(String operation, String name, long delta) {
+    if (warmingUp) {
+      return;
+    }
+    getOpCounters(operation).add(name, delta);
+  }
+
+  /**
+   * Keeps the largest of a non-negative value of an operation that is not a
+   * latency, such as a queue length, exported as {@code [operation], name, max}.
+   */
+  public void countMax(String operation, String name, long value) {
+    if (warmingUp) {
+      return;
+    }
+    getOpCounters(operation).max(name, value);
+  }
+
+  /**
+   * Exports a ratio of counts of an operation along with them, such as a hit
+   * ratio: the numerator over the sum of the denominators, 0 while they are 0.
+   */
+  public void countRatio(String operation, String name, String numerator, String... denominators) {
+    getOpCounters(operation).addRatio(name, numerator, denominators);
+  }
+
+  /**
+   * @return A count or maximum of an operation so far, 0 if nothing was counted.
+   */
+  public long getCount(String operation, String name) {
+    Counters c = opToCountersMap.get(operation);
+    return c == null ? 0 : c.get(name);
+  }
+
+  private Counters getOpCounters(String operation) {
+    Counters c = opToCountersMap.get(operation);
+    if (c == null) {
+      c = new Counters(operation);
+      Counters oldC = opToCountersMap.putIfAbsent(operation, c);
+      if (oldC != null) {
+        c = oldC;
+      }
+    }
+    return c;
+  }
+
+  /**
+   * @return The total number of value bytes read by all operations so far.
+   */
+  public long getTotalBytesRead() {
+    long total = 0;
+    for (ByteCounter c : opToByteCounterMap.values()) {
+      total += c.getBytesRead();
+    }
+    return total;
+  }
+
+  /**
+   * @return The total number of value bytes written by all operations so far.
+   */
+  public long getTotalBytesWritten() {
+    long total = 0;
+    for (ByteCounter c : opToByteCounterMap.values()) {
+      total += c.getBytesWritten();
+    }
+    return total;
+  }
+
   /**
    * Report a return code for a single DB operation.
    */
   public void reportStatus(final String operation, final Status status) {
+    if (warmingUp) {
+      return;
+    }
     OneMeasurement m = measurementInterval == 1 ?
         getOpIntendedMeasurement(operation) :
         getOpMeasurement(operation);
@@ -262,6 +474,15 @@ public class Measurements {
     for (OneMeasurement measurement : opToIntendedMesurementMap.values()) {
       measurement.exportMeasurements(exporter);
     }
+    for (OneMeasurement measurement : opToQueueMesurementMap.values()) {
+      measurement.exportMeasurements(exporter);
+    }
+    for (ByteCounter counter : opToByteCounterMap.values()) {
+      counter.exportMeasurements(exporter);
+    }
+    for (Counters counters : opToCountersMap.values()) {
+      counters.exportMeasurements(exporter);
+    }
   }
 
   /**
@@ -275,6 +496,19 @@ public class Measurements {
     for (OneMeasurement m : opToIntendedMesurementMap.values()) {
       ret += m.getSummary() + " ";
     }
+    for (OneMeasurement m : opToQueueMesurementMap.values()) {
+      ret += m.getSummary() + " ";
+    }
+    for (ByteCounter c : opToByteCounterMap.values()) {
+      ret += c.getSummary() + " ";
+    }
+    // return codes are reported to the intended measurements when those are the only ones
+    for (OneMeasurement m : (measurementInterval == 1 ? opToIntendedMesurementMap : opToMesurementMap).values()) {
+      String status = m.getStatusSummary(failureBurstThreshold);
+      if (!status.isEmpty()) {
+        ret += status + " ";
+      }
+    }
     return ret;
   }
 
@@ -21,6 +21,8 @@ import site.ycsb.Status;
 import site.ycsb.measurements.exporter.MeasurementsExporter;
 
 import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -33,6 +35,11 @@ public abstract class OneMeasurement {
   private final String name;
   private final ConcurrentHashMap<Status, AtomicInteger> returncodes;
 
+  // Return code counts as of the previous status summary, only touched by the status thread.
+  private final Map<Status, Integer> lastReturncodes = new HashMap<>();
+  private int failureBursts;
+  private double maxIntervalErrorRate;
+
   public String getName() {
     return name;
   }
@@ -45,7 +52,29 @@ public abstract class OneMeasurement {
     this.returncodes = new ConcurrentHashMap<>();
   }
 
-  public abstract void measure(int latency);
+  /**
+   * Record a single value, such as a latency, in nanoseconds. Values are
+   * kept at full precision and converted to microseconds when reported.
+   *
+   * @param latencyNs The value to record, in nanoseconds.
+   */
+  public abstract void measureNanos(long latencyNs);
+
+  /**
+   * Record a single value, such as a latency, in microseconds.
+   *
+   * @param latencyInMicros The value to record, in microseconds.
+   */
+  public void measure(int latencyInMicros) {
+    measureNanos(latencyInMicros * 1000L);
+  }
+
+  /**
+   * @return The given number of nanoseconds as fractional microseconds.
+   */
+  protected static double toMicros(double nanos) {
+    return nanos / 1000.0;
+  }
 
   public abstract String getSummary();
 
@@ -74,9 +103,51 @@ public abstract class OneMeasurement {
    */
   public abstract void exportMeasurements(MeasurementsExporter exporter) throws IOException;
 
+  /**
+   * Summarises the return codes reported since the previous call. This is called periodically from the
+   * StatusThread. Nothing is reported for intervals in which every operation succeeded.
+   *
+   * @param burstThreshold The fraction of failed operations in an interval above which the interval is
+   *                       reported as a failure burst.
+   * @return A one line summary of the failed operations in the interval, or an empty string.
+   */
+  public String getStatusSummary(double burstThreshold) {
+    long total = 0;
+    long errors = 0;
+    StringBuilder counts = new StringBuilder();
+    for (Map.Entry<Status, AtomicInteger> entry : returncodes.entrySet()) {
+      int current = entry.getValue().get();
+      Integer last = lastReturncodes.put(entry.getKey(), current);
+      int delta = last == null ? current : current - last;
+      total += delta;
+      if (delta > 0 && !entry.getKey().isOk()) {
+        errors += delta;
+        counts.append(entry.getKey().getName()).append('=').append(delta).append(", ");
+      }
+    }
+    if (errors == 0) {
+      return "";
+    }
+
+    double errorRate = (double) errors / total;
+    maxIntervalErrorRate = Math.max(maxIntervalErrorRate, errorRate);
+    DecimalFormat d = new DecimalFormat("#.##");
+    counts.insert(0, "[" + getName() + "-STATUS: ").append("ErrorRate(%)=").append(d.format(errorRate * 100))
+        .append(']');
+    if (errorRate > burstThreshold) {
+      failureBursts++;
+      counts.append(" [").append(getName()).append("-FAILURE-BURST]");
+    }
+    return counts.toString();
+  }
+
   protected final void exportStatusCounts(MeasurementsExporter exporter) throws IOException {
     for (Map.Entry<Status, AtomicInteger> entry : returncodes.entrySet()) {
       exporter.write(getName(), "Return=" + entry.getKey().getName(), entry.getValue().get());
     }
+    if (maxIntervalErrorRate > 0) {
+      exporter.write(getName(), "MaxIntervalErrorRate(%)", maxIntervalErrorRate * 100);
+      exporter.write(getName(), "FailureBursts", failureBursts);
+    }
   }
 }
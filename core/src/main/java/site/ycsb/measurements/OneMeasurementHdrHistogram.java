@@ -27,10 +27,11 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Take measurements and maintain a HdrHistogram of a given metric, such as READ LATENCY.
@@ -43,7 +44,7 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
   private final HistogramLogWriter histogramLogWriter;
 
   private final Recorder histogram;
-  private Histogram totalHistogram;
+  private final Histogram totalHistogram;
 
   /**
    * The name of the property for deciding what percentile values to output.
@@ -54,6 +55,22 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
    * The default value for the hdrhistogram.percentiles property.
    */
   public static final String PERCENTILES_PROPERTY_DEFAULT = "95,99";
+
+  /**
+   * The name of the property for deciding what percentile values to show in the status output.
+   */
+  public static final String STATUS_PERCENTILES_PROPERTY = "hdrhistogram.status.percentiles";
+
+  /**
+   * The default value for the hdrhistogram.status.percentiles property.
+   */
+  public static final String STATUS_PERCENTILES_PROPERTY_DEFAULT = "90,99,99.9,99.99";
+
+  /**
+   * The name of the property listing the sliding windows, in seconds, to show in the status output next
+   * to the interval snapshot, e.g. "10,60". Empty by default.
+   */
+  public static final String STATUS_WINDOWS_PROPERTY = "hdrhistogram.status.windows";
   
   /**
    * The name of the property for determining if we should print out the buckets.
@@ -67,9 +84,43 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
   
   private final List<Double> percentiles;
 
+  // Status output, built into a reused buffer from precomputed labels.
+  private final double[] statusPercentiles;
+  private final String[] statusPercentileLabels;
+  private final String intervalLabel;
+  private final StringBuilder summary = new StringBuilder();
+
+  // Sliding windows over the most recent interval histograms, oldest first.
+  private final long[] windowsMs;
+  private final String[] windowLabels;
+  private final ArrayDeque<Histogram> ring = new ArrayDeque<>();
+  private final Histogram windowHistogram = new Histogram(3);
+  private Histogram recycledHistogram;
+
   public OneMeasurementHdrHistogram(String name, Properties props) {
     super(name);
-    percentiles = getPercentileValues(props.getProperty(PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT));
+    percentiles = getPercentileValues(props.getProperty(PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT),
+        PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT);
+    List<Double> statusPercentileValues = getPercentileValues(
+        props.getProperty(STATUS_PERCENTILES_PROPERTY, STATUS_PERCENTILES_PROPERTY_DEFAULT),
+        STATUS_PERCENTILES_PROPERTY, STATUS_PERCENTILES_PROPERTY_DEFAULT);
+    statusPercentiles = new double[statusPercentileValues.size()];
+    statusPercentileLabels = new String[statusPercentileValues.size()];
+    for (int i = 0; i < statusPercentiles.length; i++) {
+      Double percentile = statusPercentileValues.get(i);
+      statusPercentiles[i] = percentile;
+      statusPercentileLabels[i] = ", " + (percentile % 1 == 0 ? Integer.toString(percentile.intValue())
+          : percentile.toString()) + "=";
+    }
+    intervalLabel = "[" + name + ": Count=";
+    List<Long> windowValues = getWindowValues(props.getProperty(STATUS_WINDOWS_PROPERTY, "").trim());
+    windowsMs = new long[windowValues.size()];
+    windowLabels = new String[windowValues.size()];
+    for (int i = 0; i < windowsMs.length; i++) {
+      long seconds = windowValues.get(i);
+      windowsMs[i] = TimeUnit.SECONDS.toMillis(seconds);
+      windowLabels[i] = " [" + name + " " + seconds + "s: Count=";
+    }
     verbose = Boolean.valueOf(props.getProperty(VERBOSE_PROPERTY, String.valueOf(false)));
     boolean shouldLog = Boolean.parseBoolean(props.getProperty("hdrhistogram.fileoutput", "false"));
     if (!shouldLog) {
@@ -91,14 +142,16 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
       histogramLogWriter.outputLegend();
     }
     histogram = new Recorder(3);
+    totalHistogram = new Histogram(3);
   }
 
   /**
-   * It appears latency is reported in micros.
+   * Latency is recorded in nanos and reported in micros.
    * Using {@link Recorder} to support concurrent updates to histogram.
    */
-  public void measure(int latencyInMicros) {
-    histogram.recordValue(latencyInMicros);
+  @Override
+  public void measureNanos(long latencyNs) {
+    histogram.recordValue(latencyNs);
   }
 
   /**
@@ -109,18 +162,18 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
     // accumulate the last interval which was not caught by status thread
     Histogram intervalHistogram = getIntervalHistogramAndAccumulate();
     if (histogramLogWriter != null) {
-      histogramLogWriter.outputIntervalHistogram(intervalHistogram);
+      logIntervalHistogram(intervalHistogram);
       // we can close now
       log.close();
     }
     exporter.write(getName(), "Operations", totalHistogram.getTotalCount());
-    exporter.write(getName(), "AverageLatency(us)", totalHistogram.getMean());
-    exporter.write(getName(), "MinLatency(us)", totalHistogram.getMinValue());
-    exporter.write(getName(), "MaxLatency(us)", totalHistogram.getMaxValue());
+    exporter.write(getName(), "AverageLatency(us)", toMicros(totalHistogram.getMean()));
+    exporter.write(getName(), "MinLatency(us)", toMicros(totalHistogram.getMinValue()));
+    exporter.write(getName(), "MaxLatency(us)", toMicros(totalHistogram.getMaxValue()));
 
     for (Double percentile : percentiles) {
       exporter.write(getName(), ordinal(percentile) + "PercentileLatency(us)",
-          totalHistogram.getValueAtPercentile(percentile));
+          toMicros(totalHistogram.getValueAtPercentile(percentile)));
     }
 
     exportStatusCounts(exporter);
@@ -129,10 +182,11 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
     if (verbose) {
       for (HistogramIterationValue v : totalHistogram.recordedValues()) {
         int value;
-        if (v.getValueIteratedTo() > (long)Integer.MAX_VALUE) {
+        long valueInMicros = v.getValueIteratedTo() / 1000;
+        if (valueInMicros > (long)Integer.MAX_VALUE) {
           value = Integer.MAX_VALUE;
         } else {
-          value = (int)v.getValueIteratedTo();
+          value = (int)valueInMicros;
         }
   
         exporter.write(getName(), Integer.toString(value), (double)v.getCountAtValueIteratedTo());
@@ -152,26 +206,101 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
     Histogram intervalHistogram = getIntervalHistogramAndAccumulate();
     // we use the summary interval as the histogram file interval.
     if (histogramLogWriter != null) {
-      histogramLogWriter.outputIntervalHistogram(intervalHistogram);
+      logIntervalHistogram(intervalHistogram);
     }
 
-    DecimalFormat d = new DecimalFormat("#.##");
-    return "[" + getName() + ": Count=" + intervalHistogram.getTotalCount() + ", Max="
-        + intervalHistogram.getMaxValue() + ", Min=" + intervalHistogram.getMinValue() + ", Avg="
-        + d.format(intervalHistogram.getMean()) + ", 90=" + d.format(intervalHistogram.getValueAtPercentile(90))
-        + ", 99=" + d.format(intervalHistogram.getValueAtPercentile(99)) + ", 99.9="
-        + d.format(intervalHistogram.getValueAtPercentile(99.9)) + ", 99.99="
-        + d.format(intervalHistogram.getValueAtPercentile(99.99)) + "]";
+    summary.setLength(0);
+    appendStats(intervalLabel, intervalHistogram);
+
+    if (windowsMs.length == 0) {
+      recycledHistogram = intervalHistogram;
+    } else {
+      long now = System.currentTimeMillis();
+      long maxWindowMs = 0;
+      for (long windowMs : windowsMs) {
+        maxWindowMs = Math.max(maxWindowMs, windowMs);
+      }
+      ring.addLast(intervalHistogram);
+      while (!ring.isEmpty() && ring.peekFirst().getEndTimeStamp() <= now - maxWindowMs) {
+        recycledHistogram = ring.removeFirst();
+      }
+      for (int i = 0; i < windowsMs.length; i++) {
+        windowHistogram.reset();
+        for (Histogram h : ring) {
+          if (h.getEndTimeStamp() > now - windowsMs[i]) {
+            windowHistogram.add(h);
+          }
+        }
+        appendStats(windowLabels[i], windowHistogram);
+      }
+    }
+    return summary.toString();
+  }
+
+  /**
+   * Appends the count, max, min, average and status percentiles of the histogram to the summary.
+   */
+  private void appendStats(String label, Histogram h) {
+    summary.append(label).append(h.getTotalCount());
+    summary.append(", Max=");
+    appendMicros(h.getMaxValue());
+    summary.append(", Min=");
+    appendMicros(h.getMinValue());
+    summary.append(", Avg=");
+    appendMicros(h.getMean());
+    for (int i = 0; i < statusPercentiles.length; i++) {
+      summary.append(statusPercentileLabels[i]);
+      appendMicros(h.getValueAtPercentile(statusPercentiles[i]));
+    }
+    summary.append(']');
+  }
+
+  /**
+   * Appends the nanos as micros with at most two decimals, like a "#.##" DecimalFormat but without
+   * allocating.
+   */
+  private void appendMicros(double nanos) {
+    double micros = toMicros(nanos);
+    if (Double.isNaN(micros) || Double.isInfinite(micros)) {
+      summary.append(micros);
+      return;
+    }
+    long hundredths = Math.round(micros * 100);
+    if (hundredths < 0) {
+      summary.append('-');
+      hundredths = -hundredths;
+    }
+    summary.append(hundredths / 100);
+    int fraction = (int) (hundredths % 100);
+    if (fraction != 0) {
+      summary.append('.');
+      if (fraction % 10 == 0) {
+        summary.append(fraction / 10);
+      } else {
+        if (fraction < 10) {
+          summary.append('0');
+        }
+        summary.append(fraction);
+      }
+    }
+  }
+
+  /**
+   * Writes the interval to the histogram log. Values are recorded in nanos, so
+   * the max column is scaled by 10^9 to keep it in seconds.
+   */
+  private void logIntervalHistogram(Histogram intervalHistogram) {
+    final long baseTime = histogramLogWriter.getBaseTime();
+    histogramLogWriter.outputIntervalHistogram((intervalHistogram.getStartTimeStamp() - baseTime) / 1000.0,
+        (intervalHistogram.getEndTimeStamp() - baseTime) / 1000.0, intervalHistogram, 1000000000.0);
   }
 
   private Histogram getIntervalHistogramAndAccumulate() {
-    Histogram intervalHistogram = histogram.getIntervalHistogram();
+    Histogram intervalHistogram = recycledHistogram == null ? histogram.getIntervalHistogram()
+        : histogram.getIntervalHistogram(recycledHistogram);
+    recycledHistogram = null;
     // add this to the total time histogram.
-    if (totalHistogram == null) {
-      totalHistogram = intervalHistogram;
-    } else {
-      totalHistogram.add(intervalHistogram);
-    }
+    totalHistogram.add(intervalHistogram);
     return intervalHistogram;
   }
 
@@ -179,9 +308,11 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
    * Helper method to parse the given percentile value string.
    *
    * @param percentileString - comma delimited string of Integer values
+   * @param property - the property the value was read from
+   * @param defaultValue - the value to fall back on if the string can't be parsed
    * @return An Integer List of percentile values
    */
-  private List<Double> getPercentileValues(String percentileString) {
+  private List<Double> getPercentileValues(String percentileString, String property, String defaultValue) {
     List<Double> percentileValues = new ArrayList<>();
 
     try {
@@ -191,15 +322,42 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
     } catch (Exception e) {
       // If the given hdrhistogram.percentiles value is unreadable for whatever reason,
       // then calculate and return the default set.
-      System.err.println("[WARN] Couldn't read " + PERCENTILES_PROPERTY + " value: '" + percentileString +
-          "', the default of '" + PERCENTILES_PROPERTY_DEFAULT + "' will be used.");
+      System.err.println("[WARN] Couldn't read " + property + " value: '" + percentileString +
+          "', the default of '" + defaultValue + "' will be used.");
       e.printStackTrace();
-      return getPercentileValues(PERCENTILES_PROPERTY_DEFAULT);
+      return getPercentileValues(defaultValue, property, defaultValue);
     }
 
     return percentileValues;
   }
 
+  /**
+   * Helper method to parse the status window lengths. Values that are not
+   * whole numbers of seconds above 0 are skipped with a warning.
+   * @param windowString The comma separated window lengths in seconds.
+   * @return The window lengths in seconds.
+   */
+  private List<Long> getWindowValues(String windowString) {
+    List<Long> windowValues = new ArrayList<>();
+    if (windowString.isEmpty()) {
+      return windowValues;
+    }
+    for (String rawWindow : windowString.split(",")) {
+      try {
+        long seconds = Long.parseLong(rawWindow.trim());
+        if (seconds > 0) {
+          windowValues.add(seconds);
+          continue;
+        }
+      } catch (NumberFormatException e) {
+        // Reported below.
+      }
+      System.err.println("[WARN] Ignoring " + STATUS_WINDOWS_PROPERTY + " value: '" + rawWindow +
+          "', windows must be a positive number of seconds.");
+    }
+    return windowValues;
+  }
+
   /**
    * Helper method to find the ordinal of any number. eg 1 -> 1st
    * @param i number
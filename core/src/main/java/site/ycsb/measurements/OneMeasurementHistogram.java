@@ -54,14 +54,14 @@ public class OneMeasurementHistogram extends OneMeasurement {
 
   /**
    * The sum of each latency measurement over all operations.
-   * Calculated in ms.
+   * Calculated in ns.
    */
   private long totallatency;
 
   /**
    * The sum of each latency measurement squared over all operations. 
    * Used to calculate variance of latency.
-   * Calculated in ms. 
+   * Calculated in us. 
    */
   private double totalsquaredlatency;
 
@@ -74,8 +74,8 @@ public class OneMeasurementHistogram extends OneMeasurement {
   private long windowoperations;
   private long windowtotallatency;
 
-  private int min;
-  private int max;
+  private long min;
+  private long max;
 
   public OneMeasurementHistogram(String name, Properties props) {
     super(name);
@@ -93,18 +93,21 @@ public class OneMeasurementHistogram extends OneMeasurement {
   }
 
   /* (non-Javadoc)
-   * @see site.ycsb.OneMeasurement#measure(int)
+   * @see site.ycsb.OneMeasurement#measureNanos(long)
    */
-  public synchronized void measure(int latency) {
-    //latency reported in us and collected in bucket by ms.
-    if (latency / 1000 >= buckets) {
+  @Override
+  public synchronized void measureNanos(long latency) {
+    //latency reported in ns and collected in bucket by ms.
+    long bucket = latency / 1000000;
+    if (bucket >= buckets) {
       histogramoverflow++;
     } else {
-      histogram[latency / 1000]++;
+      histogram[(int) bucket]++;
     }
     operations++;
     totallatency += latency;
-    totalsquaredlatency += ((double) latency) * ((double) latency);
+    double latencyInMicros = toMicros(latency);
+    totalsquaredlatency += latencyInMicros * latencyInMicros;
     windowoperations++;
     windowtotallatency += latency;
 
@@ -119,13 +122,13 @@ public class OneMeasurementHistogram extends OneMeasurement {
 
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
-    double mean = totallatency / ((double) operations);
+    double mean = toMicros(totallatency) / ((double) operations);
     double variance = totalsquaredlatency / ((double) operations) - (mean * mean);
     exporter.write(getName(), "Operations", operations);
     exporter.write(getName(), "AverageLatency(us)", mean);
     exporter.write(getName(), "LatencyVariance(us)", variance);
-    exporter.write(getName(), "MinLatency(us)", min);
-    exporter.write(getName(), "MaxLatency(us)", max);
+    exporter.write(getName(), "MinLatency(us)", toMicros(min));
+    exporter.write(getName(), "MaxLatency(us)", toMicros(max));
 
     long opcounter=0;
     boolean done95th = false;
@@ -158,7 +161,7 @@ public class OneMeasurementHistogram extends OneMeasurement {
       return "";
     }
     DecimalFormat d = new DecimalFormat("#.##");
-    double report = ((double) windowtotallatency) / ((double) windowoperations);
+    double report = toMicros(windowtotallatency) / ((double) windowoperations);
     windowtotallatency = 0;
     windowoperations = 0;
     return "[" + getName() + " AverageLatency(us)=" + d.format(report) + "]";
@@ -40,9 +40,9 @@ public class OneMeasurementRaw extends OneMeasurement {
    */
   class RawDataPoint {
     private final long timestamp;
-    private final int value;
+    private final long value;
 
-    public RawDataPoint(int value) {
+    public RawDataPoint(long value) {
       this.timestamp = System.currentTimeMillis();
       this.value = value;
     }
@@ -51,7 +51,7 @@ public class OneMeasurementRaw extends OneMeasurement {
       return timestamp;
     }
 
-    public int value() {
+    public long value() {
       return value;
     }
   }
@@ -130,7 +130,7 @@ public class OneMeasurementRaw extends OneMeasurement {
   }
 
   @Override
-  public synchronized void measure(int latency) {
+  public synchronized void measureNanos(long latency) {
     totalLatency += latency;
     windowTotalLatency += latency;
     windowOperations++;
@@ -148,8 +148,8 @@ public class OneMeasurementRaw extends OneMeasurement {
         " latency raw data: op, timestamp(ms), latency(us)");
     for (RawDataPoint point : measurements) {
       outputStream.println(
-          String.format("%s,%d,%d", getName(), point.timeStamp(),
-              point.value()));
+          String.format("%s,%d,%.3f", getName(), point.timeStamp(),
+              toMicros(point.value())));
     }
     if (outputStream != System.out) {
       outputStream.close();
@@ -161,29 +161,29 @@ public class OneMeasurementRaw extends OneMeasurement {
       exporter.write(getName(),
           "Below is a summary of latency in microseconds:", -1);
       exporter.write(getName(), "Average",
-          (double) totalLatency / (double) totalOps);
+          toMicros(totalLatency) / (double) totalOps);
 
       Collections.sort(measurements, new RawDataPointComparator());
 
-      exporter.write(getName(), "Min", measurements.get(0).value());
+      exporter.write(getName(), "Min", toMicros(measurements.get(0).value()));
       exporter.write(
-          getName(), "Max", measurements.get(totalOps - 1).value());
+          getName(), "Max", toMicros(measurements.get(totalOps - 1).value()));
       exporter.write(
-          getName(), "p1", measurements.get((int) (totalOps * 0.01)).value());
+          getName(), "p1", toMicros(measurements.get((int) (totalOps * 0.01)).value()));
       exporter.write(
-          getName(), "p5", measurements.get((int) (totalOps * 0.05)).value());
+          getName(), "p5", toMicros(measurements.get((int) (totalOps * 0.05)).value()));
       exporter.write(
-          getName(), "p50", measurements.get((int) (totalOps * 0.5)).value());
+          getName(), "p50", toMicros(measurements.get((int) (totalOps * 0.5)).value()));
       exporter.write(
-          getName(), "p90", measurements.get((int) (totalOps * 0.9)).value());
+          getName(), "p90", toMicros(measurements.get((int) (totalOps * 0.9)).value()));
       exporter.write(
-          getName(), "p95", measurements.get((int) (totalOps * 0.95)).value());
+          getName(), "p95", toMicros(measurements.get((int) (totalOps * 0.95)).value()));
       exporter.write(
-          getName(), "p99", measurements.get((int) (totalOps * 0.99)).value());
+          getName(), "p99", toMicros(measurements.get((int) (totalOps * 0.99)).value()));
       exporter.write(getName(), "p99.9",
-          measurements.get((int) (totalOps * 0.999)).value());
+          toMicros(measurements.get((int) (totalOps * 0.999)).value()));
       exporter.write(getName(), "p99.99",
-          measurements.get((int) (totalOps * 0.9999)).value());
+          toMicros(measurements.get((int) (totalOps * 0.9999)).value()));
     }
 
     exportStatusCounts(exporter);
@@ -197,7 +197,7 @@ public class OneMeasurementRaw extends OneMeasurement {
 
     String toReturn = String.format("%s count: %d, average latency(us): %.2f",
         getName(), windowOperations,
-        (double) windowTotalLatency / (double) windowOperations);
+        toMicros(windowTotalLatency) / (double) windowOperations);
 
     windowTotalLatency = 0;
     windowOperations = 0;
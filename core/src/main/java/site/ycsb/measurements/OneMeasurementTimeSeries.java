@@ -60,11 +60,12 @@ public class OneMeasurementTimeSeries extends OneMeasurement {
   private long totallatency = 0;
 
   //keep a windowed version of these stats for printing status
-  private int windowoperations = 0;
+  private long windowoperations = 0;
   private long windowtotallatency = 0;
 
-  private int min = -1;
-  private int max = -1;
+  // latencies are kept in ns and reported in us
+  private long min = -1;
+  private long max = -1;
 
   public OneMeasurementTimeSeries(String name, Properties props) {
     super(name);
@@ -83,7 +84,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement {
     long unit = ((now - start) / granularity) * granularity;
 
     if ((unit > currentunit) || (forceend)) {
-      double avg = ((double) sum) / ((double) count);
+      double avg = toMicros(sum) / ((double) count);
       measurements.add(new SeriesUnit(currentunit, avg));
 
       currentunit = unit;
@@ -94,7 +95,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement {
   }
 
   @Override
-  public void measure(int latency) {
+  public void measureNanos(long latency) {
     checkEndOfUnit(false);
 
     count++;
@@ -119,9 +120,9 @@ public class OneMeasurementTimeSeries extends OneMeasurement {
     checkEndOfUnit(true);
 
     exporter.write(getName(), "Operations", operations);
-    exporter.write(getName(), "AverageLatency(us)", (((double) totallatency) / ((double) operations)));
-    exporter.write(getName(), "MinLatency(us)", min);
-    exporter.write(getName(), "MaxLatency(us)", max);
+    exporter.write(getName(), "AverageLatency(us)", toMicros(totallatency) / ((double) operations));
+    exporter.write(getName(), "MinLatency(us)", toMicros(min));
+    exporter.write(getName(), "MaxLatency(us)", toMicros(max));
 
     // TODO: 95th and 99th percentile latency
 
@@ -137,7 +138,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement {
       return "";
     }
     DecimalFormat d = new DecimalFormat("#.##");
-    double report = ((double) windowtotallatency) / ((double) windowoperations);
+    double report = toMicros(windowtotallatency) / ((double) windowoperations);
     windowtotallatency = 0;
     windowoperations = 0;
     return "[" + getName() + " AverageLatency(us)=" + d.format(report) + "]";
@@ -43,14 +43,19 @@ public class TwoInOneMeasurement extends OneMeasurement {
     thing1.reportStatus(status);
   }
 
+  @Override
+  public String getStatusSummary(double burstThreshold) {
+    return thing1.getStatusSummary(burstThreshold);
+  }
+
   /**
-   * It appears latency is reported in micros.
+   * Latency is reported in nanos.
    * Using {@link org.HdrHistogram.Recorder} to support concurrent updates to histogram.
    */
   @Override
-  public void measure(int latencyInMicros) {
-    thing1.measure(latencyInMicros);
-    thing2.measure(latencyInMicros);
+  public void measureNanos(long latencyNs) {
+    thing1.measureNanos(latencyNs);
+    thing2.measureNanos(latencyNs);
   }
 
   /**
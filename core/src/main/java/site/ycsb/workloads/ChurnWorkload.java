@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.workloads;
+
+import site.ycsb.DB;
+import site.ycsb.Utils;
+import site.ycsb.WorkloadException;
+import site.ycsb.generator.ExponentialGenerator;
+import site.ycsb.generator.SkewedLatestGenerator;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A workload that keeps replacing records while holding the data set at a
+ * fixed size, e.g. to measure how log-structured stores cope with the
+ * tombstones and compactions deletes cause.
+ * <p>
+ * Every CHURN operation inserts a record with a new key and then deletes a
+ * live one, the oldest or a random one, so inserts and deletes run at the
+ * same rate for as long as the run lasts. Reads, updates, scans and
+ * read-modify-writes choose among the live keys only. The live keys are
+ * tracked without locks: the oldest order as a sliding window of key numbers,
+ * the random order as a table of the live key of every slot, 8 bytes per record.
+ * <p>
+ * With the oldest order the window holds the newest keys whose inserts and
+ * all inserts before them were acknowledged, so while an insert is slow the
+ * data set grows by the inserts that overtake it. With the random order a
+ * failed insert deletes nothing.
+ * <p>
+ * Properties to control the client, next to those of {@link CoreWorkload}:
+ * <UL>
+ * <LI><b>churnproportion</b>: what proportion of operations replace a record
+ * (default: 0.1)
+ * <LI><b>churnorder</b>: which record is deleted, the oldest or a random one
+ * (default: oldest)
+ * </ul>
+ * The insertproportion should stay 0, as plain inserts grow the data set.
+ * The latest and exponential request distributions choose keys by their
+ * distance from the newest key, so with the random order they may choose
+ * deleted ones.
+ */
+public class ChurnWorkload extends CoreWorkload {
+  /**
+   * The name of the property for the proportion of operations that replace a record.
+   */
+  public static final String CHURN_PROPORTION_PROPERTY = "churnproportion";
+
+  /**
+   * The default proportion of operations that replace a record.
+   */
+  public static final String CHURN_PROPORTION_PROPERTY_DEFAULT = "0.1";
+
+  /**
+   * The name of the property for which record is deleted. Options are "oldest" and "random".
+   */
+  public static final String CHURN_ORDER_PROPERTY = "churnorder";
+
+  /**
+   * The default record to delete.
+   */
+  public static final String CHURN_ORDER_PROPERTY_DEFAULT = "oldest";
+
+  /**
+   * The first key loaded, and the number of keys kept live.
+   */
+  private long insertstart;
+  private long livecount;
+
+  /**
+   * The index of the oldest live key in the order keys were created, for the oldest order.
+   */
+  private final AtomicLong oldest = new AtomicLong();
+
+  /**
+   * The live key of every slot, for the random order.
+   */
+  private AtomicLongArray slots;
+
+  @Override
+  public void init(Properties p) throws WorkloadException {
+    registerOperation("CHURN", (workload, db) -> doTransactionChurn(db), CHURN_PROPORTION_PROPERTY_DEFAULT);
+    super.init(p);
+
+    insertstart = Long.parseLong(p.getProperty(INSERT_START_PROPERTY, INSERT_START_PROPERTY_DEFAULT));
+    livecount = Integer.parseInt(p.getProperty(INSERT_COUNT_PROPERTY,
+        String.valueOf(recordcount - insertstart)));
+    if (livecount <= 0) {
+      throw new WorkloadException("Churn needs records to replace, insertcount is " + livecount);
+    }
+
+    String order = p.getProperty(CHURN_ORDER_PROPERTY, CHURN_ORDER_PROPERTY_DEFAULT);
+    if (order.equals("random")) {
+      slots = new AtomicLongArray((int) livecount);
+      for (int i = 0; i < livecount; i++) {
+        slots.set(i, keyAt(i));
+      }
+    } else if (!order.equals("oldest")) {
+      throw new WorkloadException("Unknown " + CHURN_ORDER_PROPERTY + " \"" + order + "\"");
+    }
+  }
+
+  /**
+   * Inserts a record with a new key, then deletes the oldest or a random live one.
+   */
+  public void doTransactionChurn(DB db) {
+    long inserted = insertNextKey(db);
+    if (slots == null) {
+      deleteOldest(db);
+    } else if (inserted >= 0) {
+      long deleted = slots.getAndSet(Utils.random().nextInt(slots.length()), inserted);
+      db.delete(table, buildKeyName(deleted));
+    }
+  }
+
+  /**
+   * Deletes the oldest keys as long as more than the live count of acknowledged
+   * keys follow them. Every churn checks after its insert is acknowledged, so
+   * the one acknowledging last does the deletes held up by slower inserts.
+   */
+  private void deleteOldest(DB db) {
+    while (true) {
+      long index = oldest.get();
+      long acknowledged = transactioninsertkeysequence.lastValue();
+      long newest = acknowledged < recordcount ? livecount - 1 : livecount + (acknowledged - recordcount);
+      if (newest - index < livecount) {
+        return;
+      }
+      if (oldest.compareAndSet(index, index + 1)) {
+        db.delete(table, buildKeyName(keyAt(index)));
+      }
+    }
+  }
+
+  @Override
+  long nextKeynum() {
+    if (keychooser instanceof ExponentialGenerator || keychooser instanceof SkewedLatestGenerator) {
+      long keynum = super.nextKeynum();
+      return slots == null ? Math.max(keynum, keyAt(oldest.get())) : keynum;
+    }
+
+    // The chosen key is an offset into the live keys.
+    long offset = Math.floorMod(keychooser.nextValue().longValue() - insertstart, livecount);
+    if (slots != null) {
+      return slots.get((int) offset);
+    }
+    return keyAt(oldest.get() + offset);
+  }
+
+  /**
+   * @return The key number created index-th: the loaded keys followed by the transaction inserts.
+   */
+  private long keyAt(long index) {
+    return index < livecount ? insertstart + index : recordcount + (index - livecount);
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.workloads;
+
+import java.util.Properties;
+
+import site.ycsb.DB;
+import site.ycsb.WorkloadException;
+
+/**
+ * One kind of transaction of the {@link CoreWorkload}, chosen in proportion
+ * to its "&lt;name&gt;proportion" property. Besides the built-in operations,
+ * implementations with a no-argument constructor can be added with the
+ * "operations" property, e.g. "operations=MULTIGET:com.example.MultiGet",
+ * or registered by subclasses with {@link CoreWorkload#registerOperation}.
+ * A single instance is shared by all client threads.
+ */
+@FunctionalInterface
+public interface CoreOperation {
+  /**
+   * Called once when the workload is initialized, before any operation runs.
+   *
+   * @param workload The workload the operation belongs to.
+   * @param p The workload properties.
+   * @throws WorkloadException if the operation cannot run with these properties.
+   */
+  default void init(CoreWorkload workload, Properties p) throws WorkloadException {
+  }
+
+  /**
+   * Performs one operation. Must be thread safe.
+   *
+   * @param workload The workload the operation belongs to.
+   * @param db The database of the calling client thread.
+   */
+  void execute(CoreWorkload workload, DB db);
+}
@@ -23,7 +23,13 @@ import site.ycsb.generator.UniformLongGenerator;
 import site.ycsb.measurements.Measurements;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The core benchmark scenario. Represents a set of clients doing simple CRUD operations. The
@@ -38,6 +44,9 @@ import java.util.*;
  * <LI><b>readallfields</b>: should reads read all fields (true) or just one (false) (default: true)
  * <LI><b>writeallfields</b>: should updates and read/modify/writes update all fields (true) or just
  * one (false) (default: false)
+ * <LI><b>pooledvalues</b>: reuse one per-thread field map and value buffers for every insert and
+ * update instead of allocating new ones; bindings must not keep references to the values after the
+ * call returns (default: false)
  * <LI><b>readproportion</b>: what proportion of operations should be reads (default: 0.95)
  * <LI><b>updateproportion</b>: what proportion of operations should be updates (default: 0.05)
  * <LI><b>insertproportion</b>: what proportion of operations should be inserts (default: 0)
@@ -185,6 +194,98 @@ public class CoreWorkload extends Workload {
    */
   private boolean dataintegrity;
 
+  /**
+   * The name of the property for how values are checked when dataintegrity is on.
+   * "deterministic" rebuilds every value from its key and field name, and
+   * requires a constant field length. "checksum" embeds a header with a hash
+   * of the key, the field, the write version and a checksum in every value,
+   * checks values in a single pass, and also reports reads returning a version
+   * superseded by a write acknowledged before the read was sent as STALE_READ,
+   * or as LOST_UPDATE when that write was acknowledged more than the staleness
+   * bound before the read.
+   */
+  public static final String DATA_INTEGRITY_MODE_PROPERTY = "dataintegritymode";
+
+  /**
+   * The default value for the dataintegritymode property.
+   */
+  public static final String DATA_INTEGRITY_MODE_PROPERTY_DEFAULT = "deterministic";
+
+  /**
+   * The name of the property for how long in milliseconds after a write is
+   * acknowledged reads returning an older version are still reported as
+   * stale rather than as a lost update. Writes that failed are also assumed
+   * to have been lost once this long has passed.
+   */
+  public static final String DATA_INTEGRITY_STALENESS_BOUND_PROPERTY = "dataintegritystalenessbound";
+
+  /**
+   * The default value for the dataintegritystalenessbound property.
+   */
+  public static final String DATA_INTEGRITY_STALENESS_BOUND_PROPERTY_DEFAULT = "1000";
+
+  /**
+   * The name of the property for a file carrying the next write version from
+   * one phase to the next in the checksum data integrity mode. Versions
+   * continue from the one it holds, if it exists, and the next version is
+   * written back to it when the workload is cleaned up. Without it, versions
+   * start from the clock, which only keeps the load phase's versions older if
+   * it wrote fewer than 100 records per millisecond.
+   */
+  public static final String DATA_INTEGRITY_VERSION_FILE_PROPERTY = "dataintegrityversionfile";
+
+  /**
+   * A read returned an older version of a field than one acknowledged before the read.
+   */
+  public static final Status STALE_READ = new Status("STALE_READ",
+      "A read returned an older version than one already acknowledged.");
+
+  /**
+   * A read returned an older version of a field than one acknowledged more
+   * than the staleness bound before the read.
+   */
+  public static final Status LOST_UPDATE = new Status("LOST_UPDATE",
+      "A read returned an older version than one acknowledged more than the staleness bound before.");
+
+  /** Values are written and checked in the checksum data integrity mode. */
+  private boolean checksums;
+  private IntegrityValue integrityvalue;
+  private VersionTracker versiontracker;
+  private Map<String, Integer> fieldindexes;
+  private long stalenessboundns;
+  private Path versionfile;
+
+  /**
+   * Write versions, unique within a process. They continue from the version
+   * file if there is one and are raised past any version read, so versions
+   * written before are older than any written later.
+   */
+  private final AtomicLong versions = new AtomicLong(
+      ((System.currentTimeMillis() - VERSION_EPOCH_MS) * 100) & IntegrityValue.MAX_VERSION);
+
+  /** 2017-01-01 UTC, the start of write versions. */
+  private static final long VERSION_EPOCH_MS = 1483228800000L;
+
+  /** Seeds the hashes of the checksum data integrity mode, the same for every run. */
+  private static final long INTEGRITY_SEED = 0x5943534232303137L;
+
+  /**
+   * The name of the property for reusing a per-thread field map and value
+   * buffers for inserts and updates. Only safe with bindings that do not keep
+   * references to the values map or its ByteIterators once insert() or
+   * update() has returned.
+   */
+  public static final String POOLED_VALUES_PROPERTY = "pooledvalues";
+
+  /**
+   * The default value for the pooledvalues property.
+   */
+  public static final String POOLED_VALUES_PROPERTY_DEFAULT = "false";
+
+  private boolean pooledvalues;
+
+  private ThreadLocal<PooledRecord> pooledrecords;
+
   /**
    * The name of the property for the proportion of transactions that are reads.
    */
@@ -235,6 +336,73 @@ public class CoreWorkload extends Workload {
    */
   public static final String READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT = "0.0";
 
+  /**
+   * The name of the property for the proportion of transactions that read a field and then
+   * replace it only if it still holds the value read.
+   */
+  public static final String COMPARE_AND_SET_PROPORTION_PROPERTY = "compareandsetproportion";
+
+  /**
+   * The default proportion of transactions that are compare-and-sets.
+   */
+  public static final String COMPARE_AND_SET_PROPORTION_PROPERTY_DEFAULT = "0.0";
+
+  /**
+   * The name of the property for the proportion of transactions that increment a counter.
+   */
+  public static final String INCREMENT_PROPORTION_PROPERTY = "incrementproportion";
+
+  /**
+   * The default proportion of transactions that are increments.
+   */
+  public static final String INCREMENT_PROPORTION_PROPERTY_DEFAULT = "0.0";
+
+  /**
+   * The name of the property for the field holding the counter increments add to.
+   */
+  public static final String INCREMENT_FIELD_PROPERTY = "incrementfield";
+
+  /**
+   * The default counter field.
+   */
+  public static final String INCREMENT_FIELD_PROPERTY_DEFAULT = "counter";
+
+  /**
+   * The name of the property for how many client threads direct their compare-and-sets and
+   * increments at the same key. Threads are grouped by thread id, every group sharing one
+   * key. 0 chooses keys by the request distribution instead.
+   */
+  public static final String CONTENTION_THREADS_PROPERTY = "contentionthreads";
+
+  /**
+   * The default is to not group threads.
+   */
+  public static final String CONTENTION_THREADS_PROPERTY_DEFAULT = "0";
+
+  private String incrementfield;
+  private int contentionthreads;
+  private long contendedkeystart;
+  private long contendedkeycount;
+
+  /**
+   * The key of the thread's group, if threads contend.
+   */
+  private ThreadLocal<String> contendedkey;
+
+  /**
+   * The name of the property for additional operations, a comma separated
+   * list of NAME:class pairs naming {@link CoreOperation} implementations.
+   * Every operation is chosen in proportion to its "&lt;name&gt;proportion"
+   * property, e.g. "multigetproportion" for MULTIGET, which defaults to 0.
+   */
+  public static final String OPERATIONS_PROPERTY = "operations";
+
+  /**
+   * The operations by name and the default of their proportion property.
+   */
+  private final Map<String, CoreOperation> operations = new LinkedHashMap<>();
+  private final Map<String, String> operationproportiondefaults = new HashMap<>();
+
   /**
    * The name of the property for the the distribution of requests across the keyspace. Options are
    * "uniform", "zipfian" and "latest"
@@ -342,7 +510,7 @@ public class CoreWorkload extends Workload {
   public static final String FIELD_NAME_PREFIX_DEFAULT = "field";
 
   protected NumberGenerator keysequence;
-  protected DiscreteGenerator operationchooser;
+  protected AliasGenerator<CoreOperation> operationchooser;
   protected NumberGenerator keychooser;
   protected NumberGenerator fieldchooser;
   protected AcknowledgedCounterGenerator transactioninsertkeysequence;
@@ -437,9 +605,33 @@ public class CoreWorkload extends Workload {
 
     dataintegrity = Boolean.parseBoolean(
         p.getProperty(DATA_INTEGRITY_PROPERTY, DATA_INTEGRITY_PROPERTY_DEFAULT));
-    // Confirm that fieldlengthgenerator returns a constant if data
-    // integrity check requested.
-    if (dataintegrity && !(p.getProperty(
+    pooledvalues = Boolean.parseBoolean(
+        p.getProperty(POOLED_VALUES_PROPERTY, POOLED_VALUES_PROPERTY_DEFAULT));
+    if (pooledvalues) {
+      final List<String> names = fieldnames;
+      pooledrecords = ThreadLocal.withInitial(() -> new PooledRecord(names));
+    }
+    final String integritymode =
+        p.getProperty(DATA_INTEGRITY_MODE_PROPERTY, DATA_INTEGRITY_MODE_PROPERTY_DEFAULT);
+    if ("checksum".equals(integritymode)) {
+      checksums = dataintegrity;
+    } else if (!"deterministic".equals(integritymode)) {
+      throw new WorkloadException("Unknown " + DATA_INTEGRITY_MODE_PROPERTY + ": " + integritymode);
+    }
+    if (checksums) {
+      integrityvalue = new IntegrityValue(INTEGRITY_SEED);
+      stalenessboundns = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(p.getProperty(
+          DATA_INTEGRITY_STALENESS_BOUND_PROPERTY, DATA_INTEGRITY_STALENESS_BOUND_PROPERTY_DEFAULT)));
+      versiontracker = new VersionTracker(versions, fieldnames.size(), stalenessboundns);
+      readVersionFile(p);
+      fieldindexes = new HashMap<>();
+      for (int i = 0; i < fieldnames.size(); i++) {
+        fieldindexes.put(fieldnames.get(i), i);
+      }
+    }
+    // Confirm that fieldlengthgenerator returns a constant if deterministic
+    // data integrity check requested.
+    if (dataintegrity && !checksums && !(p.getProperty(
         FIELD_LENGTH_DISTRIBUTION_PROPERTY,
         FIELD_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT)).equals("constant")) {
       System.err.println("Must have constant field size to check data integrity.");
@@ -452,8 +644,9 @@ public class CoreWorkload extends Workload {
       orderedinserts = true;
     }
 
+    initContention(p, insertstart, insertcount);
     keysequence = new CounterGenerator(insertstart);
-    operationchooser = createOperationGenerator(p);
+    operationchooser = createOperationChooser(p);
 
     transactioninsertkeysequence = new AcknowledgedCounterGenerator(recordcount);
     if (requestdistrib.compareTo("uniform") == 0) {
@@ -528,14 +721,20 @@ public class CoreWorkload extends Workload {
   }
 
   /**
-   * Builds a value for a randomly chosen field.
+   * Builds a value for a field.
    */
-  private HashMap<String, ByteIterator> buildSingleValue(String key) {
+  private HashMap<String, ByteIterator> buildSingleValue(String key, int field, long version) {
+    if (pooledvalues && !dataintegrity) {
+      return pooledrecords.get().fillOne(field, fieldlengthgenerator);
+    }
     HashMap<String, ByteIterator> value = new HashMap<>();
 
-    String fieldkey = fieldnames.get(fieldchooser.nextValue().intValue());
+    String fieldkey = fieldnames.get(field);
     ByteIterator data;
-    if (dataintegrity) {
+    if (checksums) {
+      data = new ByteArrayByteIterator(integrityvalue.encode(integrityvalue.keyHash(key), field, version,
+          fieldlengthgenerator.nextValue().intValue()));
+    } else if (dataintegrity) {
       data = new StringByteIterator(buildDeterministicValue(key, fieldkey));
     } else {
       // fill with random data
@@ -549,12 +748,20 @@ public class CoreWorkload extends Workload {
   /**
    * Builds values for all fields.
    */
-  private HashMap<String, ByteIterator> buildValues(String key) {
+  private HashMap<String, ByteIterator> buildValues(String key, long version) {
+    if (pooledvalues && !dataintegrity) {
+      return pooledrecords.get().fillAll(fieldlengthgenerator);
+    }
     HashMap<String, ByteIterator> values = new HashMap<>();
+    int keyhash = checksums ? integrityvalue.keyHash(key) : 0;
 
-    for (String fieldkey : fieldnames) {
+    for (int i = 0; i < fieldnames.size(); i++) {
+      String fieldkey = fieldnames.get(i);
       ByteIterator data;
-      if (dataintegrity) {
+      if (checksums) {
+        data = new ByteArrayByteIterator(integrityvalue.encode(keyhash, i, version,
+            fieldlengthgenerator.nextValue().intValue()));
+      } else if (dataintegrity) {
         data = new StringByteIterator(buildDeterministicValue(key, fieldkey));
       } else {
         // fill with random data
@@ -583,6 +790,38 @@ public class CoreWorkload extends Workload {
     return sb.toString();
   }
 
+  /**
+   * Reads the settings of increments and contention. Contending threads share
+   * the keys from the first one this client loaded.
+   */
+  private void initContention(Properties p, long firstkey, long keycount) throws WorkloadException {
+    if (dataintegrity && Double.parseDouble(
+        p.getProperty(INCREMENT_PROPORTION_PROPERTY, INCREMENT_PROPORTION_PROPERTY_DEFAULT)) > 0) {
+      // Counters are not values the workload generated, so reads returning them would fail verification.
+      throw new WorkloadException("Data integrity was enabled. '" + INCREMENT_PROPORTION_PROPERTY
+          + "' must be 0.");
+    }
+    incrementfield = p.getProperty(INCREMENT_FIELD_PROPERTY, INCREMENT_FIELD_PROPERTY_DEFAULT);
+    contentionthreads = Integer.parseInt(
+        p.getProperty(CONTENTION_THREADS_PROPERTY, CONTENTION_THREADS_PROPERTY_DEFAULT));
+    if (contentionthreads > 0) {
+      contendedkeystart = firstkey;
+      contendedkeycount = keycount;
+      contendedkey = ThreadLocal.withInitial(() -> buildKeyName(contendedkeystart));
+    }
+  }
+
+  /**
+   * Assigns the thread the key its group shares, if threads contend.
+   */
+  @Override
+  public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException {
+    if (contendedkey != null) {
+      contendedkey.set(buildKeyName(contendedkeystart + (mythreadid / contentionthreads) % contendedkeycount));
+    }
+    return null;
+  }
+
   /**
    * Do one insert operation. Because it will be called concurrently from multiple client threads,
    * this function must be thread safe. However, avoid synchronized, or the threads will block waiting
@@ -593,7 +832,8 @@ public class CoreWorkload extends Workload {
   public boolean doInsert(DB db, Object threadstate) {
     int keynum = keysequence.nextValue().intValue();
     String dbkey = buildKeyName(keynum);
-    HashMap<String, ByteIterator> values = buildValues(dbkey);
+    long version = checksums ? versions.getAndIncrement() & IntegrityValue.MAX_VERSION : 0;
+    HashMap<String, ByteIterator> values = buildValues(dbkey, version);
 
     Status status;
     int numOfRetries = 0;
@@ -634,29 +874,104 @@ public class CoreWorkload extends Workload {
    */
   @Override
   public boolean doTransaction(DB db, Object threadstate) {
-    String operation = operationchooser.nextString();
-    if(operation == null) {
+    if (operationchooser == null) {
       return false;
     }
+    operationchooser.nextValue().execute(this, db);
+    return true;
+  }
 
-    switch (operation) {
-    case "READ":
-      doTransactionRead(db);
-      break;
-    case "UPDATE":
-      doTransactionUpdate(db);
-      break;
-    case "INSERT":
-      doTransactionInsert(db);
-      break;
-    case "SCAN":
-      doTransactionScan(db);
-      break;
-    default:
-      doTransactionReadModifyWrite(db);
+  /**
+   * Adds an operation, unless one with the same name was registered before.
+   * Subclasses register theirs before calling {@link #init}, which registers
+   * the built-in operations and then chooses among all of them.
+   *
+   * @param name The name of the operation, whose proportion is set by the
+   *             property of the lower case name followed by "proportion".
+   * @param operation The operation.
+   * @param defaultproportion The proportion if the property is not set.
+   */
+  protected void registerOperation(String name, CoreOperation operation, String defaultproportion) {
+    if (!operations.containsKey(name)) {
+      operations.put(name, operation);
+      operationproportiondefaults.put(name, defaultproportion);
     }
+  }
 
-    return true;
+  /**
+   * @return The name of the property setting the proportion of an operation.
+   */
+  public static String proportionProperty(String name) {
+    return name.toLowerCase(Locale.ROOT) + "proportion";
+  }
+
+  /**
+   * Registers the built-in operations and those of the operations property,
+   * and creates the chooser among those with a positive proportion.
+   *
+   * @return The chooser, or null if no operation has a positive proportion.
+   */
+  private AliasGenerator<CoreOperation> createOperationChooser(Properties p) throws WorkloadException {
+    registerOperation("READ", CoreWorkload::doTransactionRead, READ_PROPORTION_PROPERTY_DEFAULT);
+    registerOperation("UPDATE", CoreWorkload::doTransactionUpdate, UPDATE_PROPORTION_PROPERTY_DEFAULT);
+    registerOperation("INSERT", CoreWorkload::doTransactionInsert, INSERT_PROPORTION_PROPERTY_DEFAULT);
+    registerOperation("SCAN", CoreWorkload::doTransactionScan, SCAN_PROPORTION_PROPERTY_DEFAULT);
+    registerOperation("READMODIFYWRITE", CoreWorkload::doTransactionReadModifyWrite,
+        READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT);
+    registerOperation("COMPAREANDSET", CoreWorkload::doTransactionCompareAndSet,
+        COMPARE_AND_SET_PROPORTION_PROPERTY_DEFAULT);
+    registerOperation("INCREMENT", CoreWorkload::doTransactionIncrement, INCREMENT_PROPORTION_PROPERTY_DEFAULT);
+
+    String custom = p.getProperty(OPERATIONS_PROPERTY, "").trim();
+    if (!custom.isEmpty()) {
+      for (String entry : custom.split(",")) {
+        String[] parts = entry.trim().split(":");
+        if (parts.length != 2) {
+          throw new WorkloadException("Expected NAME:class in " + OPERATIONS_PROPERTY + ": " + entry);
+        }
+        try {
+          Class<?> operationclass = Class.forName(parts[1].trim());
+          registerOperation(parts[0].trim(),
+              (CoreOperation) operationclass.getConstructor().newInstance(), "0");
+        } catch (ReflectiveOperationException | ClassCastException e) {
+          throw new WorkloadException("Cannot create operation " + entry, e);
+        }
+      }
+    }
+
+    List<CoreOperation> chosen = new ArrayList<>();
+    List<Double> weights = new ArrayList<>();
+    for (Map.Entry<String, CoreOperation> operation : operations.entrySet()) {
+      double proportion = Double.parseDouble(p.getProperty(proportionProperty(operation.getKey()),
+          operationproportiondefaults.get(operation.getKey())));
+      if (proportion > 0) {
+        operation.getValue().init(this, p);
+        chosen.add(operation.getValue());
+        weights.add(proportion);
+      }
+    }
+    if (chosen.isEmpty()) {
+      return null;
+    }
+    double[] weightarray = new double[weights.size()];
+    for (int i = 0; i < weightarray.length; i++) {
+      weightarray[i] = weights.get(i);
+    }
+    return new AliasGenerator<>(chosen, weightarray);
+  }
+
+  /**
+   * @return The table operations run against.
+   */
+  public String getTable() {
+    return table;
+  }
+
+  /**
+   * @return The key of an existing record, chosen by the request distribution.
+   */
+  public String nextKeyName() {
+    return buildKeyName(nextKeynum());
   }
 
   /**
@@ -667,6 +982,10 @@ public class CoreWorkload extends Workload {
    * Bucket 2 means null data was returned when some data was expected.
    */
   protected void verifyRow(String key, HashMap<String, ByteIterator> cells) {
+    if (checksums) {
+      verifyChecksummedRow(key, cells, false, 0);
+      return;
+    }
     Status verifyStatus = Status.OK;
     long startTime = System.nanoTime();
     if (!cells.isEmpty()) {
@@ -681,10 +1000,116 @@ public class CoreWorkload extends Workload {
       verifyStatus = Status.ERROR;
     }
     long endTime = System.nanoTime();
-    measurements.measure("VERIFY", (int) (endTime - startTime) / 1000);
+    measurements.measureNanos("VERIFY", endTime - startTime);
+    measurements.reportStatus("VERIFY", verifyStatus);
+  }
+
+  /**
+   * Verifies a row read in the checksum data integrity mode, in a single pass
+   * over the values. Reports the same results as {@link #verifyRow}, and
+   * STALE_READ or LOST_UPDATE for a field superseded by a write acknowledged
+   * before the read was sent.
+   *
+   * @param key The key read.
+   * @param cells The fields read.
+   * @param checkVersions Whether to check the versions read against acknowledged writes.
+   * @param readStartNs When the read was sent, in {@link System#nanoTime()}.
+   */
+  protected void verifyChecksummedRow(String key, HashMap<String, ByteIterator> cells,
+                                      boolean checkVersions, long readStartNs) {
+    Status verifyStatus = Status.OK;
+    long startTime = System.nanoTime();
+    if (!cells.isEmpty()) {
+      int keyhash = integrityvalue.keyHash(key);
+      long stalest = VersionTracker.CURRENT;
+      for (Map.Entry<String, ByteIterator> entry : cells.entrySet()) {
+        Integer field = fieldindexes.get(entry.getKey());
+        long version = field == null ? IntegrityValue.INVALID
+            : integrityvalue.verify(entry.getValue(), keyhash, field);
+        if (version == IntegrityValue.INVALID) {
+          verifyStatus = Status.UNEXPECTED_STATE;
+          break;
+        }
+        // Versions written later have to be newer than any already in the store.
+        if (version >= versions.get()) {
+          versions.accumulateAndGet(version + 1, Math::max);
+        }
+        if (checkVersions) {
+          stalest = Math.max(stalest, versiontracker.staleness(key, field, version, readStartNs));
+        }
+      }
+      if (verifyStatus.isOk() && stalest != VersionTracker.CURRENT) {
+        verifyStatus = stalest > stalenessboundns ? LOST_UPDATE : STALE_READ;
+      }
+    } else {
+      // This assumes that null data is never valid
+      verifyStatus = Status.ERROR;
+    }
+    long endTime = System.nanoTime();
+    measurements.measureNanos("VERIFY", endTime - startTime);
     measurements.reportStatus("VERIFY", verifyStatus);
   }
 
+  /**
+   * @param key The key to write.
+   * @param field The index of the field to write, or -1 for all fields.
+   * @return The version of a write that is about to be sent, tracked in the
+   * checksum data integrity mode.
+   */
+  private long beginWrite(String key, int field) {
+    return checksums ? versiontracker.begin(key, field < 0 ? VersionTracker.ALL_FIELDS : field) : 0;
+  }
+
+  /**
+   * Records the outcome of a write started with {@link #beginWrite}.
+   */
+  private void endWrite(String key, long version, Status status) {
+    if (checksums) {
+      if (status == Status.CONFLICT) {
+        versiontracker.discard(key, version);
+      } else {
+        versiontracker.end(key, version, status != null && status.isOk(), System.nanoTime());
+      }
+    }
+  }
+
+  /**
+   * Continues the write versions from the version file, if there is one and it exists.
+   */
+  private void readVersionFile(Properties p) throws WorkloadException {
+    final String versionfilename = p.getProperty(DATA_INTEGRITY_VERSION_FILE_PROPERTY);
+    if (versionfilename == null) {
+      return;
+    }
+    versionfile = Paths.get(versionfilename);
+    if (!Files.exists(versionfile)) {
+      return;
+    }
+    try {
+      final String next = new String(Files.readAllBytes(versionfile), StandardCharsets.UTF_8).trim();
+      versions.accumulateAndGet(Long.parseLong(next), Math::max);
+    } catch (IOException | NumberFormatException e) {
+      throw new WorkloadException("Unable to read the next version from " + DATA_INTEGRITY_VERSION_FILE_PROPERTY
+          + " " + versionfile, e);
+    }
+  }
+
+  /**
+   * Writes the next write version to the version file, if there is one, for the next phase to continue from.
+   */
+  @Override
+  public void cleanup() throws WorkloadException {
+    if (versionfile == null) {
+      return;
+    }
+    try {
+      Files.write(versionfile, Long.toString(versions.get()).getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new WorkloadException("Unable to write the next version to " + DATA_INTEGRITY_VERSION_FILE_PROPERTY
+          + " " + versionfile, e);
+    }
+  }
+
   long nextKeynum() {
     long keynum;
     if (keychooser instanceof ExponentialGenerator) {
@@ -719,9 +1144,12 @@ public class CoreWorkload extends Workload {
     }
 
     HashMap<String, ByteIterator> cells = new HashMap<String, ByteIterator>();
+    long readStartNs = System.nanoTime();
     db.read(table, keyname, fields, cells);
 
-    if (dataintegrity) {
+    if (checksums) {
+      verifyChecksummedRow(keyname, cells, true, readStartNs);
+    } else if (dataintegrity) {
       verifyRow(keyname, cells);
     }
   }
@@ -743,13 +1171,15 @@ public class CoreWorkload extends Workload {
     }
 
     HashMap<String, ByteIterator> values;
+    int field = writeallfields ? -1 : fieldchooser.nextValue().intValue();
+    long version = beginWrite(keyname, field);
 
     if (writeallfields) {
       // new data for all the fields
-      values = buildValues(keyname);
+      values = buildValues(keyname, version);
     } else {
       // update a random field
-      values = buildSingleValue(keyname);
+      values = buildSingleValue(keyname, field, version);
     }
 
     // do the transaction
@@ -761,16 +1191,18 @@ public class CoreWorkload extends Workload {
     long st = System.nanoTime();
     db.read(table, keyname, fields, cells);
 
-    db.update(table, keyname, values);
+    Status status = db.update(table, keyname, values);
 
     long en = System.nanoTime();
 
-    if (dataintegrity) {
+    endWrite(keyname, version, status);
+    if (checksums) {
+      verifyChecksummedRow(keyname, cells, true, st);
+    } else if (dataintegrity) {
       verifyRow(keyname, cells);
     }
 
-    measurements.measure("READ-MODIFY-WRITE", (int) ((en - st) / 1000));
-    measurements.measureIntended("READ-MODIFY-WRITE", (int) ((en - ist) / 1000));
+    measurements.measure("READ-MODIFY-WRITE", ist, st, en);
   }
 
   public void doTransactionScan(DB db) {
@@ -802,27 +1234,79 @@ public class CoreWorkload extends Workload {
     String keyname = buildKeyName(keynum);
 
     HashMap<String, ByteIterator> values;
+    int field = writeallfields ? -1 : fieldchooser.nextValue().intValue();
+    long version = beginWrite(keyname, field);
 
     if (writeallfields) {
       // new data for all the fields
-      values = buildValues(keyname);
+      values = buildValues(keyname, version);
     } else {
       // update a random field
-      values = buildSingleValue(keyname);
+      values = buildSingleValue(keyname, field, version);
+    }
+
+    Status status = db.update(table, keyname, values);
+    endWrite(keyname, version, status);
+  }
+
+  /**
+   * Reads a random field and replaces it, unless another write changed it in between.
+   */
+  public void doTransactionCompareAndSet(DB db) {
+    String keyname = nextContendedKeyName();
+    int field = fieldchooser.nextValue().intValue();
+    String fieldname = fieldnames.get(field);
+
+    HashSet<String> fields = new HashSet<String>();
+    fields.add(fieldname);
+    HashMap<String, ByteIterator> cells = new HashMap<String, ByteIterator>();
+    db.read(table, keyname, fields, cells);
+    ByteIterator current = cells.get(fieldname);
+    if (current == null) {
+      // Nothing to compare with, the read already reported why.
+      return;
     }
+    ByteIterator expected = new ByteArrayByteIterator(current.toArray());
+
+    long version = beginWrite(keyname, field);
+    ByteIterator value = buildSingleValue(keyname, field, version).get(fieldname);
+    Status status = db.compareAndSet(table, keyname, fieldname, expected, value);
+    endWrite(keyname, version, status);
+  }
 
-    db.update(table, keyname, values);
+  public void doTransactionIncrement(DB db) {
+    db.increment(table, nextContendedKeyName(), incrementfield, 1);
+  }
+
+  /**
+   * @return The key of the thread's group if threads contend, otherwise one chosen by the
+   * request distribution.
+   */
+  private String nextContendedKeyName() {
+    return contendedkey != null ? contendedkey.get() : nextKeyName();
   }
 
   public void doTransactionInsert(DB db) {
+    insertNextKey(db);
+  }
+
+  /**
+   * Inserts the record of the next transaction key.
+   *
+   * @return The number of the key inserted, or -1 if the insert failed.
+   */
+  long insertNextKey(DB db) {
     // choose the next key
     long keynum = transactioninsertkeysequence.nextValue();
 
     try {
       String dbkey = buildKeyName(keynum);
 
-      HashMap<String, ByteIterator> values = buildValues(dbkey);
-      db.insert(table, dbkey, values);
+      long version = beginWrite(dbkey, -1);
+      HashMap<String, ByteIterator> values = buildValues(dbkey, version);
+      Status status = db.insert(table, dbkey, values);
+      endWrite(dbkey, version, status);
+      return status != null && status.isOk() ? keynum : -1;
     } finally {
       transactioninsertkeysequence.acknowledge(keynum);
     }
@@ -830,6 +1314,8 @@ public class CoreWorkload extends Workload {
 
   /**
    * Creates a weighted discrete values with database operations for a workload to perform.
+   * Only the built-in operations are included; CoreWorkload itself chooses among all
+   * registered {@link CoreOperation}s instead.
    * Weights/proportions are read from the properties list and defaults are used
    * when values are not configured.
    * Current operations are "READ", "UPDATE", "INSERT", "SCAN" and "READMODIFYWRITE".
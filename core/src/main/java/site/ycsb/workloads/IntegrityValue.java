@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.workloads;
+
+import site.ycsb.ByteIterator;
+
+/**
+ * Self describing field values for the checksum data integrity mode.
+ * <p>
+ * A value starts with a header of hex digits holding the hash of its key,
+ * the index of its field, the version it was written with and a checksum
+ * over the rest of the value. The body is printable pseudo-random bytes
+ * derived from the header. Verifying a value takes one pass over its bytes
+ * and allocates nothing, whatever the field length.
+ */
+final class IntegrityValue {
+  /** The length of the header, and so the minimum length of a value. */
+  static final int HEADER_LENGTH = 32;
+
+  /** The largest version a header can hold. */
+  static final long MAX_VERSION = (1L << 48) - 1;
+
+  /** Returned by {@link #verify} for a value that is corrupt or belongs elsewhere. */
+  static final long INVALID = -1;
+
+  private static final int FIELD_OFFSET = 8;
+  private static final int VERSION_OFFSET = 12;
+  private static final int CHECKSUM_OFFSET = 24;
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private static final byte[] HEX_DIGITS = {
+      '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+  private final long seed;
+
+  IntegrityValue(final long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * @return The 32 bit hash of a key stored in the headers of its values.
+   */
+  int keyHash(final String key) {
+    long h = FNV_OFFSET_BASIS ^ seed;
+    for (int i = 0; i < key.length(); i++) {
+      h = (h ^ key.charAt(i)) * FNV_PRIME;
+    }
+    return fold(h);
+  }
+
+  /**
+   * Builds a value.
+   *
+   * @param keyHash The hash of the key, from {@link #keyHash}.
+   * @param field The index of the field.
+   * @param version The version being written, at most {@link #MAX_VERSION}.
+   * @param length The length of the value, raised to {@link #HEADER_LENGTH} if shorter.
+   * @return The value.
+   */
+  byte[] encode(final int keyHash, final int field, final long version, final int length) {
+    final byte[] value = new byte[Math.max(length, HEADER_LENGTH)];
+    putHex(value, 0, keyHash & 0xffffffffL, FIELD_OFFSET);
+    putHex(value, FIELD_OFFSET, field, VERSION_OFFSET - FIELD_OFFSET);
+    putHex(value, VERSION_OFFSET, version, CHECKSUM_OFFSET - VERSION_OFFSET);
+
+    long state = mix(seed ^ ((long) keyHash << 32 | field)) ^ version;
+    int i = HEADER_LENGTH;
+    while (i < value.length) {
+      state += GOLDEN_GAMMA;
+      long bits = mix(state);
+      for (int b = 0; b < 8 && i < value.length; b++, i++) {
+        value[i] = (byte) (' ' + (bits & 63));
+        bits >>>= 8;
+      }
+    }
+
+    long h = FNV_OFFSET_BASIS ^ seed;
+    for (int j = 0; j < CHECKSUM_OFFSET; j++) {
+      h = (h ^ (value[j] & 0xff)) * FNV_PRIME;
+    }
+    for (int j = HEADER_LENGTH; j < value.length; j++) {
+      h = (h ^ (value[j] & 0xff)) * FNV_PRIME;
+    }
+    putHex(value, CHECKSUM_OFFSET, fold(h) & 0xffffffffL, HEADER_LENGTH - CHECKSUM_OFFSET);
+    return value;
+  }
+
+  /**
+   * Checks a value read back, consuming it.
+   *
+   * @param value The value.
+   * @param keyHash The hash of the key it was read from, from {@link #keyHash}.
+   * @param field The index of the field it was read from.
+   * @return The version of the value, or {@link #INVALID} if it is truncated,
+   * fails its checksum or was written for another key or field.
+   */
+  long verify(final ByteIterator value, final int keyHash, final int field) {
+    long h = FNV_OFFSET_BASIS ^ seed;
+    long storedKeyHash = 0;
+    long storedField = 0;
+    long version = 0;
+    long checksum = 0;
+    for (int i = 0; i < HEADER_LENGTH; i++) {
+      if (!value.hasNext()) {
+        return INVALID;
+      }
+      final byte b = value.nextByte();
+      final int digit = hexValue(b);
+      if (digit < 0) {
+        return INVALID;
+      }
+      if (i < FIELD_OFFSET) {
+        storedKeyHash = storedKeyHash << 4 | digit;
+      } else if (i < VERSION_OFFSET) {
+        storedField = storedField << 4 | digit;
+      } else if (i < CHECKSUM_OFFSET) {
+        version = version << 4 | digit;
+      } else {
+        checksum = checksum << 4 | digit;
+        continue;
+      }
+      h = (h ^ (b & 0xff)) * FNV_PRIME;
+    }
+    while (value.hasNext()) {
+      h = (h ^ (value.nextByte() & 0xff)) * FNV_PRIME;
+    }
+    if (checksum != (fold(h) & 0xffffffffL)
+        || storedKeyHash != (keyHash & 0xffffffffL)
+        || storedField != field) {
+      return INVALID;
+    }
+    return version;
+  }
+
+  private static void putHex(final byte[] buf, final int offset, final long value, final int digits) {
+    long v = value;
+    for (int i = offset + digits - 1; i >= offset; i--) {
+      buf[i] = HEX_DIGITS[(int) (v & 0xf)];
+      v >>>= 4;
+    }
+  }
+
+  private static int hexValue(final byte b) {
+    if (b >= '0' && b <= '9') {
+      return b - '0';
+    }
+    if (b >= 'a' && b <= 'f') {
+      return b - 'a' + 10;
+    }
+    return -1;
+  }
+
+  private static int fold(final long h) {
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /** The SplitMix64 finalizer. */
+  private static long mix(final long z) {
+    long x = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+    return x ^ (x >>> 31);
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.workloads;
+
+import site.ycsb.ByteIterator;
+import site.ycsb.RandomByteIterator;
+import site.ycsb.generator.NumberGenerator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A per-thread record whose field map and value buffers are reused by every
+ * insert and update the thread issues, instead of allocating a fresh map and
+ * fresh iterators per operation. Values are refilled in bulk with random
+ * printable bytes.
+ * <p>
+ * Only used when {@link CoreWorkload#POOLED_VALUES_PROPERTY} is enabled, since
+ * it relies on bindings not holding on to the map or its iterators after
+ * insert() or update() returns.
+ * </p>
+ */
+final class PooledRecord {
+  private final List<String> fieldnames;
+  private final PooledByteIterator[] buffers;
+  private final HashMap<String, ByteIterator> values;
+  private final HashMap<String, ByteIterator> single = new HashMap<>(2);
+
+  PooledRecord(List<String> fieldnames) {
+    this.fieldnames = fieldnames;
+    this.buffers = new PooledByteIterator[fieldnames.size()];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = new PooledByteIterator();
+    }
+    // Sized so that filling every field never triggers a rehash.
+    this.values = new HashMap<>((int) (fieldnames.size() / 0.75f) + 1);
+  }
+
+  /**
+   * Refills every field with a new random value.
+   */
+  HashMap<String, ByteIterator> fillAll(NumberGenerator fieldlengthgenerator) {
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i].fill(fieldlengthgenerator.nextValue().intValue());
+      values.put(fieldnames.get(i), buffers[i]);
+    }
+    return values;
+  }
+
+  /**
+   * Refills a single field with a new random value.
+   */
+  HashMap<String, ByteIterator> fillOne(int field, NumberGenerator fieldlengthgenerator) {
+    single.clear();
+    buffers[field].fill(fieldlengthgenerator.nextValue().intValue());
+    single.put(fieldnames.get(field), buffers[field]);
+    return single;
+  }
+
+  /**
+   * A ByteIterator over a buffer that grows to the largest value seen and is
+   * then reused.
+   */
+  static final class PooledByteIterator extends ByteIterator {
+    private byte[] buf = new byte[0];
+    private int off;
+    private int len;
+
+    void fill(int length) {
+      if (buf.length < length) {
+        buf = new byte[length];
+      }
+      RandomByteIterator.fill(buf, 0, length);
+      len = length;
+      off = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return off < len;
+    }
+
+    @Override
+    public byte nextByte() {
+      return buf[off++];
+    }
+
+    @Override
+    public int nextBuf(byte[] buffer, int bufOff) {
+      int size = Math.min(len - off, buffer.length - bufOff);
+      System.arraycopy(buf, off, buffer, bufOff, size);
+      off += size;
+      return bufOff + size;
+    }
+
+    @Override
+    public int nextBuf(ByteBuffer buffer) {
+      int size = Math.min(len - off, buffer.remaining());
+      buffer.put(buf, off, size);
+      off += size;
+      return size;
+    }
+
+    @Override
+    public long bytesLeft() {
+      return len - off;
+    }
+
+    @Override
+    public void reset() {
+      off = 0;
+    }
+
+    @Override
+    public byte[] toArray() {
+      byte[] ret = Arrays.copyOfRange(buf, off, len);
+      off = len;
+      return ret;
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.workloads;
+
+import site.ycsb.ByteArrayByteIterator;
+import site.ycsb.ByteIterator;
+import site.ycsb.Client;
+import site.ycsb.DB;
+import site.ycsb.Status;
+import site.ycsb.Utils;
+import site.ycsb.Workload;
+import site.ycsb.WorkloadException;
+import site.ycsb.generator.CounterGenerator;
+import site.ycsb.generator.NumberGenerator;
+import site.ycsb.generator.ScrambledZipfianGenerator;
+import site.ycsb.generator.UniformLongGenerator;
+import site.ycsb.measurements.Measurements;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures how stale reads from a replicated database are, e.g. reads at a
+ * weak consistency level or from secondaries.
+ * <p>
+ * The first client threads only write and the others only read. Every key has
+ * a single writer that updates it with increasing versions, embedding the
+ * version and the time of the write in the value. Every read compares the
+ * version it returned with the latest version acknowledged before it was sent
+ * and records how far behind it was:
+ * <UL>
+ * <LI><b>READ-STALENESS</b>: how long before the read the first newer version
+ * was acknowledged, 0 for reads that returned the latest version. The
+ * return codes count fresh (OK) and stale (STALE_READ) reads.
+ * <LI><b>READ-VERSIONS-BEHIND</b>: how many newer versions had been
+ * acknowledged, counted as the Reads checked, the total Versions they were
+ * behind, the Max and the Average.
+ * </ul>
+ * Latencies of the reads and writes themselves are reported as usual, so
+ * runs at different consistency levels show what the staleness costs or saves.
+ * <p>
+ * Properties to control the client:
+ * <UL>
+ * <LI><b>recordcount</b>: the number of keys (default: 100)
+ * <LI><b>fieldlength</b>: the length of the single field of a record (default: 100)
+ * <LI><b>stalenesswriters</b>: the number of client threads that write, must be
+ * fewer than the number of threads (default: 1)
+ * <LI><b>stalenesshistory</b>: the number of versions per key whose acknowledgement
+ * time is kept. The time of reads further behind is reported as a lower bound (default: 64)
+ * <LI><b>requestdistribution</b>: how keys are chosen by readers and writers, uniform or
+ * zipfian (default: uniform)
+ * </ul>
+ */
+public class StalenessWorkload extends Workload {
+  /**
+   * The name of the property for the number of client threads that write.
+   */
+  public static final String WRITERS_PROPERTY = "stalenesswriters";
+
+  /**
+   * The default number of client threads that write.
+   */
+  public static final String WRITERS_PROPERTY_DEFAULT = "1";
+
+  /**
+   * The name of the property for the number of versions per key whose
+   * acknowledgement time is kept.
+   */
+  public static final String HISTORY_PROPERTY = "stalenesshistory";
+
+  /**
+   * The default number of versions per key whose acknowledgement time is kept.
+   */
+  public static final String HISTORY_PROPERTY_DEFAULT = "64";
+
+  /** The default number of keys. */
+  public static final String RECORD_COUNT_DEFAULT = "100";
+
+  /** The only field of a record. */
+  static final String FIELD = "field0";
+
+  private final Measurements measurements = Measurements.getMeasurements();
+
+  private String table;
+  private int fieldlength;
+  private int keycount;
+  private int writers;
+  private int history;
+  private boolean zipfian;
+  private NumberGenerator keysequence;
+
+  /** Identifies the values written by this run, older values count as version 0. */
+  private long runid;
+
+  /** Per key, the latest acknowledged version. */
+  private AtomicLongArray acked;
+
+  /** Per key, when each of the last {@link #history} versions was acknowledged. */
+  private AtomicLongArray ackNs;
+
+  @Override
+  public void init(Properties p) throws WorkloadException {
+    table = p.getProperty(CoreWorkload.TABLENAME_PROPERTY, CoreWorkload.TABLENAME_PROPERTY_DEFAULT);
+    fieldlength = Integer.parseInt(
+        p.getProperty(CoreWorkload.FIELD_LENGTH_PROPERTY, CoreWorkload.FIELD_LENGTH_PROPERTY_DEFAULT));
+    keycount = Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY, RECORD_COUNT_DEFAULT));
+    writers = Integer.parseInt(p.getProperty(WRITERS_PROPERTY, WRITERS_PROPERTY_DEFAULT));
+    history = Integer.parseInt(p.getProperty(HISTORY_PROPERTY, HISTORY_PROPERTY_DEFAULT));
+    if (keycount < 1 || writers < 1 || history < 1) {
+      throw new WorkloadException(Client.RECORD_COUNT_PROPERTY + ", " + WRITERS_PROPERTY + " and "
+          + HISTORY_PROPERTY + " must be positive");
+    }
+    final String distribution = p.getProperty(CoreWorkload.REQUEST_DISTRIBUTION_PROPERTY, "uniform");
+    if ("zipfian".equals(distribution)) {
+      zipfian = true;
+    } else if (!"uniform".equals(distribution)) {
+      throw new WorkloadException("Unknown request distribution for the staleness workload: " + distribution);
+    }
+    keysequence = new CounterGenerator(
+        Long.parseLong(p.getProperty(INSERT_START_PROPERTY, INSERT_START_PROPERTY_DEFAULT)));
+    runid = System.currentTimeMillis();
+    if ((long) keycount * history > Integer.MAX_VALUE) {
+      throw new WorkloadException(Client.RECORD_COUNT_PROPERTY + " times " + HISTORY_PROPERTY
+          + " must not exceed " + Integer.MAX_VALUE + ", lower " + HISTORY_PROPERTY);
+    }
+    acked = new AtomicLongArray(keycount);
+    ackNs = new AtomicLongArray(keycount * history);
+    measurements.countRatio("READ-VERSIONS-BEHIND", "Average", "Versions", "Reads");
+  }
+
+  @Override
+  public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException {
+    final boolean dotransactions = Boolean.parseBoolean(p.getProperty(Client.DO_TRANSACTIONS_PROPERTY, "true"));
+    if (dotransactions && threadcount <= writers) {
+      throw new WorkloadException("The staleness workload needs more threads than " + WRITERS_PROPERTY
+          + " (" + writers + ") to have readers");
+    }
+    if (mythreadid < writers) {
+      // Writer i owns the keys i, i + writers, i + 2 * writers...
+      final long owned = (keycount - mythreadid + writers - 1) / writers;
+      return new ThreadState(mythreadid, chooser(owned));
+    }
+    return new ThreadState(-1, chooser(keycount));
+  }
+
+  private NumberGenerator chooser(final long items) {
+    return zipfian ? new ScrambledZipfianGenerator(items) : new UniformLongGenerator(0, items - 1);
+  }
+
+  @Override
+  public boolean doInsert(DB db, Object threadstate) {
+    final long keynum = keysequence.nextValue().longValue();
+    final Status status = db.insert(table, buildKeyName(keynum), buildValue(0, 0));
+    return null != status && status.isOk();
+  }
+
+  @Override
+  public boolean doTransaction(DB db, Object threadstate) {
+    final ThreadState state = (ThreadState) threadstate;
+    if (state.writer >= 0) {
+      doTransactionWrite(db, state);
+    } else {
+      doTransactionRead(db, state);
+    }
+    return true;
+  }
+
+  /**
+   * Writes the next version of one of the keys owned by a writer.
+   */
+  void doTransactionWrite(DB db, ThreadState state) {
+    final int key = (int) (state.writer + state.keychooser.nextValue().longValue() * writers);
+    final long version = acked.get(key) + 1;
+    final Status status = db.update(table, buildKeyName(key), buildValue(runid, version));
+    if (status != null && status.isOk()) {
+      // The time first, so readers that see the version also see when it was acknowledged.
+      ackNs.set(key * history + (int) (version % history), System.nanoTime());
+      acked.set(key, version);
+    }
+  }
+
+  /**
+   * Reads a key and measures how far behind the version it returned was.
+   */
+  void doTransactionRead(DB db, ThreadState state) {
+    final int key = (int) state.keychooser.nextValue().longValue();
+    final long latest = acked.get(key);
+    final long readStartNs = System.nanoTime();
+    state.result.clear();
+    final Status status = db.read(table, buildKeyName(key), state.fields, state.result);
+    if (status == null || !status.isOk()) {
+      return;
+    }
+    final long version = parseVersion(state.result.get(FIELD));
+    if (version < 0) {
+      measurements.reportStatus("READ-STALENESS", Status.UNEXPECTED_STATE);
+      return;
+    }
+    final long behind = Math.max(0, latest - version);
+    long stalenessNs = 0;
+    if (behind > 0) {
+      // The first newer version, or the oldest one whose time is still kept.
+      final long newer = Math.max(version + 1, acked.get(key) - history + 1);
+      stalenessNs = Math.max(0, readStartNs - ackNs.get(key * history + (int) (newer % history)));
+    }
+    measurements.measureNanos("READ-STALENESS", stalenessNs);
+    measurements.count("READ-VERSIONS-BEHIND", "Reads", 1);
+    measurements.count("READ-VERSIONS-BEHIND", "Versions", behind);
+    measurements.countMax("READ-VERSIONS-BEHIND", "Max", behind);
+    measurements.reportStatus("READ-STALENESS", behind > 0 ? CoreWorkload.STALE_READ : Status.OK);
+  }
+
+  static String buildKeyName(long keynum) {
+    return "user" + keynum;
+  }
+
+  /**
+   * Builds a record whose value starts with "runid:version:timestamp:",
+   * the timestamp being the time of the write in milliseconds since the epoch.
+   */
+  private Map<String, ByteIterator> buildValue(long run, long version) {
+    final byte[] header = (run + ":" + version + ":" + System.currentTimeMillis() + ":")
+        .getBytes(StandardCharsets.US_ASCII);
+    final byte[] value = new byte[Math.max(fieldlength, header.length)];
+    System.arraycopy(header, 0, value, 0, header.length);
+    final Random random = Utils.random();
+    for (int i = header.length; i < value.length; i++) {
+      value[i] = (byte) (' ' + random.nextInt(64));
+    }
+    final Map<String, ByteIterator> values = new HashMap<>();
+    values.put(FIELD, new ByteArrayByteIterator(value));
+    return values;
+  }
+
+  /**
+   * @return The version of a value written by this run, 0 for values written
+   * before it or -1 if the value was not written by this workload.
+   */
+  long parseVersion(ByteIterator value) {
+    if (value == null) {
+      return -1;
+    }
+    long run = 0;
+    long version = 0;
+    int separators = 0;
+    while (value.hasNext() && separators < 2) {
+      final byte b = value.nextByte();
+      if (b == ':') {
+        separators++;
+      } else if (b >= '0' && b <= '9') {
+        if (separators == 0) {
+          run = run * 10 + (b - '0');
+        } else {
+          version = version * 10 + (b - '0');
+        }
+      } else {
+        return -1;
+      }
+    }
+    if (separators < 2) {
+      return -1;
+    }
+    return run == runid ? version : 0;
+  }
+
+  /**
+   * The role, key chooser and read buffers of a client thread.
+   */
+  static final class ThreadState {
+    /** The index of a writer, or -1 for a reader. */
+    private final int writer;
+    private final NumberGenerator keychooser;
+    private final Set<String> fields = Collections.singleton(FIELD);
+    private final Map<String, ByteIterator> result = new HashMap<>();
+
+    ThreadState(final int writer, final NumberGenerator keychooser) {
+      this.writer = writer;
+      this.keychooser = keychooser;
+    }
+  }
+}
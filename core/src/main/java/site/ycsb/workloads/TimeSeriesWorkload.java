@@ -16,16 +16,18 @@
  */
 package site.ycsb.workloads;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.Vector;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import site.ycsb.ByteIterator;
@@ -33,6 +35,9 @@ import site.ycsb.Client;
 import site.ycsb.DB;
 import site.ycsb.NumericByteIterator;
 import site.ycsb.Status;
+import site.ycsb.TimeseriesDB;
+import site.ycsb.TimeseriesBatch;
+import site.ycsb.TimeseriesBatchWriter;
 import site.ycsb.StringByteIterator;
 import site.ycsb.Utils;
 import site.ycsb.Workload;
@@ -160,6 +165,22 @@ import site.ycsb.measurements.Measurements;
  * 5% of the time series will be written with timestamps earlier than the timestamp
  * generator's current time.
  * </p>
+ * <p>
+ * Setting {@code ingestionmode} to {@code independent} replaces the lockstep order
+ * for inserts with a model where every series reports on its own schedule. Each 
+ * series gets a reporting interval of a random multiple (1 to 
+ * {@code seriesintervalmultiples}) of {@code timestampinterval}, each report is
+ * shifted by up to {@code seriesjitter} of that interval, a {@code latepoints} 
+ * fraction of points arrive late by an exponentially distributed number of
+ * intervals (mean {@code latedelaymean}) and with probability 
+ * {@code backfillprobability} a report starts an outage of the series: that
+ * report and the following ones, {@code backfillsize} in total, are held back and
+ * arrive as one burst of historic points along with the series' next report.
+ * Points are written in arrival order, which is
+ * tracked per thread with a priority queue, so out-of-order and backfill buffers
+ * in the database are exercised. {@code sparsity} and {@code delayedseries} do not
+ * apply in this mode.
+ * </p>
  * <b>Reads and Scans</b>
  * <p>
  * For benchmarking queries, some common tasks implemented by almost every time series
@@ -371,6 +392,89 @@ public class TimeSeriesWorkload extends Workload {
   public static final String DELAYED_INTERVALS_PROPERTY = "delayedintervals";
   public static final String DELAYED_INTERVALS_PROPERTY_DEFAULT = "5";
   
+  /** Name and default value for the ingestion mode property, either "lockstep"
+   * or "independent". */
+  public static final String INGESTION_MODE_PROPERTY = "ingestionmode";
+  public static final String INGESTION_MODE_PROPERTY_DEFAULT = "lockstep";
+  
+  /** Name and default value for the maximum per series interval multiple property. */
+  public static final String SERIES_INTERVAL_MULTIPLES_PROPERTY = "seriesintervalmultiples";
+  public static final String SERIES_INTERVAL_MULTIPLES_PROPERTY_DEFAULT = "1";
+  
+  /** Name and default value for the per series jitter property, as a fraction 
+   * of the series' interval. */
+  public static final String SERIES_JITTER_PROPERTY = "seriesjitter";
+  public static final String SERIES_JITTER_PROPERTY_DEFAULT = "0";
+  
+  /** Name and default value for the fraction of points arriving late. */
+  public static final String LATE_POINTS_PROPERTY = "latepoints";
+  public static final String LATE_POINTS_PROPERTY_DEFAULT = "0";
+  
+  /** Name and default value for the mean delay of late points in intervals. */
+  public static final String LATE_DELAY_MEAN_PROPERTY = "latedelaymean";
+  public static final String LATE_DELAY_MEAN_PROPERTY_DEFAULT = "5";
+  
+  /** Name and default value for the chance of a report triggering a backfill. */
+  public static final String BACKFILL_PROBABILITY_PROPERTY = "backfillprobability";
+  public static final String BACKFILL_PROBABILITY_PROPERTY_DEFAULT = "0";
+  
+  /** Name and default value for the number of reports held back and sent in a backfill burst. */
+  public static final String BACKFILL_SIZE_PROPERTY = "backfillsize";
+  public static final String BACKFILL_SIZE_PROPERTY_DEFAULT = "100";
+  
+  /** Name and default value for the number of points written per batch. 1 disables batching. */
+  public static final String BATCH_SIZE_PROPERTY = "batchsize";
+  public static final String BATCH_SIZE_PROPERTY_DEFAULT = "1";
+  
+  /** Name and default value for the longest time in milliseconds a point waits 
+   * in a partially filled batch. 0 only sends full batches. */
+  public static final String BATCH_LINGER_PROPERTY = "batchlingerms";
+  public static final String BATCH_LINGER_PROPERTY_DEFAULT = "0";
+  
+  /** Name and default value for the proportion of dashboard refresh operations. */
+  public static final String DASHBOARD_PROPORTION_PROPERTY = "dashboardproportion";
+  public static final String DASHBOARD_PROPORTION_PROPERTY_DEFAULT = "0";
+  
+  /** Name and default value for the number of distinct dashboards. */
+  public static final String DASHBOARD_COUNT_PROPERTY = "dashboards";
+  public static final String DASHBOARD_COUNT_PROPERTY_DEFAULT = "10";
+  
+  /** Name and default value for the number of panels (queries) per dashboard. */
+  public static final String DASHBOARD_PANELS_PROPERTY = "dashboardpanels";
+  public static final String DASHBOARD_PANELS_PROPERTY_DEFAULT = "8";
+  
+  /** Name and default value for the dashboard refresh period in seconds. */
+  public static final String DASHBOARD_REFRESH_PROPERTY = "dashboardrefresh";
+  public static final String DASHBOARD_REFRESH_PROPERTY_DEFAULT = "30";
+  
+  /** Name and default value for the time range a dashboard shows, in timestamp units. */
+  public static final String DASHBOARD_TIMESPAN_PROPERTY = "dashboardtimespan";
+  public static final String DASHBOARD_TIMESPAN_PROPERTY_DEFAULT = "86400";
+  
+  /** Name and default value for the aggregation functions dashboard panels use. */
+  public static final String DASHBOARD_FUNCTIONS_PROPERTY = "dashboardfunctions";
+  public static final String DASHBOARD_FUNCTIONS_PROPERTY_DEFAULT = "SUM,AVERAGE,MAX";
+  
+  /** Name and default value for the fraction of panels that are top-N queries. */
+  public static final String DASHBOARD_TOPN_PROPORTION_PROPERTY = "dashboardtopnproportion";
+  public static final String DASHBOARD_TOPN_PROPORTION_PROPERTY_DEFAULT = "0.2";
+  
+  /** Name and default value for N in top-N panels. */
+  public static final String DASHBOARD_TOPN_PROPERTY = "dashboardtopn";
+  public static final String DASHBOARD_TOPN_PROPERTY_DEFAULT = "10";
+  
+  /** Name and default value for the fraction of panels that are rate or derivative queries. */
+  public static final String DASHBOARD_RATE_PROPORTION_PROPERTY = "dashboardrateproportion";
+  public static final String DASHBOARD_RATE_PROPORTION_PROPERTY_DEFAULT = "0.2";
+  
+  /** Name and default value for the top-N field key. */
+  public static final String TOPN_KEY_PROPERTY = "topnkey";
+  public static final String TOPN_KEY_PROPERTY_DEFAULT = "YCSBTOPN";
+  
+  /** Name and default value for the rate function field key. */
+  public static final String RATE_KEY_PROPERTY = "ratekey";
+  public static final String RATE_KEY_PROPERTY_DEFAULT = "YCSBRATE";
+  
   /** Name and default value for the query time span property. */
   public static final String QUERY_TIMESPAN_PROPERTY = "querytimespan";
   public static final String QUERY_TIMESPAN_PROPERTY_DEFAULT = "0";
@@ -477,6 +581,10 @@ public class TimeSeriesWorkload extends Workload {
   /** The generated list of possible tag value values. */
   protected String[] tagValues;
   
+  /** Pre-joined tag key, pair delimiter and tag value strings used in queries, 
+   * indexed by tag key index then tag value index. */
+  protected String[][] tagPairStrings;
+  
   /** The cardinality for each tag key. */
   protected int[] tagCardinality;
   
@@ -492,6 +600,48 @@ public class TimeSeriesWorkload extends Workload {
   /** The maximum number of intervals to delay a series. */
   protected int delayedIntervals;
   
+  /** Whether each series reports on its own schedule instead of in lockstep. */
+  protected boolean independentIngestion;
+  
+  /** The maximum multiple of the timestamp interval a series reports at. */
+  protected int seriesIntervalMultiples;
+  
+  /** The maximum shift of a report as a fraction of the series interval. */
+  protected double seriesJitter;
+  
+  /** The fraction of points that arrive late. */
+  protected double latePoints;
+  
+  /** The mean delay of late points in series intervals. */
+  protected double lateDelayMean;
+  
+  /** The chance that a report triggers a backfill burst. */
+  protected double backfillProbability;
+  
+  /** The number of reports held back and sent in a backfill burst. */
+  protected int backfillSize;
+  
+  /** The number of points per batch, batching is off when 1. */
+  protected int batchSize;
+  
+  /** How long a partially filled batch may wait, in nanoseconds. 0 for no limit. */
+  protected long batchLingerNs;
+  
+  /** The panels of each dashboard, indexed by dashboard then panel. */
+  protected DashboardPanel[][] dashboards;
+  
+  /** The dashboard refresh period in nanoseconds, 0 to move the range with every query. */
+  protected long dashboardRefreshNs;
+  
+  /** The time range shown by dashboards in timestamp units. */
+  protected long dashboardTimeSpan;
+  
+  /** The newest timestamp dashboards show when the workload starts. */
+  protected long dashboardEndTimestamp;
+  
+  /** When the workload was initialized, the reference for dashboard refreshes. */
+  protected long dashboardEpochNs;
+  
   /** Optional query time interval during reads/scans. */
   protected int queryTimeSpan;
   
@@ -531,6 +681,12 @@ public class TimeSeriesWorkload extends Workload {
   
   /** The downsampling interval. */
   protected int downsampleInterval;
+  
+  /** Pre-built group-by and downsampling query fields, so reads and scans
+   * don't concatenate them on every call. */
+  protected String groupByField;
+  protected String readDownsampleField;
+  protected String scanDownsampleField;
 
   /**
    * Set to true if want to check correctness of reads. Must also
@@ -659,6 +815,7 @@ public class TimeSeriesWorkload extends Workload {
         groupBys[i] = Integer.parseInt(gbKeys[i].trim()) == 0 ? false : true;
       }
       groupBy = true;
+      groupByField = groupByKey + tagPairDelimiter + groupByFunction;
     }
     
     downsampleKey = p.getProperty(DOWNSAMPLING_KEY_PROPERTY, DOWNSAMPLING_KEY_PROPERTY_DEFAULT);
@@ -671,17 +828,130 @@ public class TimeSeriesWorkload extends Workload {
       }
       downsampleInterval = Integer.parseInt(interval);
       downsample = true;
+      readDownsampleField = downsampleKey + tagPairDelimiter + downsampleFunction + downsampleInterval;
+      scanDownsampleField = downsampleKey + tagPairDelimiter + downsampleFunction + tagPairDelimiter 
+          + downsampleInterval;
     }
     
     delayedSeries = Double.parseDouble(p.getProperty(DELAYED_SERIES_PROPERTY, DELAYED_SERIES_PROPERTY_DEFAULT));
     delayedIntervals = Integer.parseInt(p.getProperty(DELAYED_INTERVALS_PROPERTY, DELAYED_INTERVALS_PROPERTY_DEFAULT));
     
+    initIngestion(p);
+    
     valueType = ValueType.fromString(p.getProperty(VALUE_TYPE_PROPERTY, VALUE_TYPE_PROPERTY_DEFAULT));
     table = p.getProperty(CoreWorkload.TABLENAME_PROPERTY, CoreWorkload.TABLENAME_PROPERTY_DEFAULT);
     initKeysAndTags();
+    initDashboards(p);
     validateSettings();
   }
   
+  /**
+   * Builds the dashboards refreshed by DASHBOARD operations. Panels are drawn
+   * from a fixed seed so every client, and every refresh, issues the same
+   * queries, just like real dashboards.
+   * @param p The properties to pull settings from.
+   * @throws WorkloadException If a setting is invalid.
+   */
+  protected void initDashboards(final Properties p) throws WorkloadException {
+    final double proportion = Double.parseDouble(p.getProperty(DASHBOARD_PROPORTION_PROPERTY, 
+        DASHBOARD_PROPORTION_PROPERTY_DEFAULT));
+    if (proportion <= 0) {
+      return;
+    }
+    operationchooser.addValue(proportion, "DASHBOARD");
+    
+    final int count = Integer.parseInt(p.getProperty(DASHBOARD_COUNT_PROPERTY, DASHBOARD_COUNT_PROPERTY_DEFAULT));
+    final int panels = Integer.parseInt(p.getProperty(DASHBOARD_PANELS_PROPERTY, DASHBOARD_PANELS_PROPERTY_DEFAULT));
+    if (count < 1 || panels < 1) {
+      throw new WorkloadException("'" + DASHBOARD_COUNT_PROPERTY + "' and '" + DASHBOARD_PANELS_PROPERTY 
+          + "' must be 1 or more.");
+    }
+    dashboardRefreshNs = TimeUnit.SECONDS.toNanos(Long.parseLong(p.getProperty(DASHBOARD_REFRESH_PROPERTY, 
+        DASHBOARD_REFRESH_PROPERTY_DEFAULT)));
+    dashboardTimeSpan = Long.parseLong(p.getProperty(DASHBOARD_TIMESPAN_PROPERTY, 
+        DASHBOARD_TIMESPAN_PROPERTY_DEFAULT));
+    final String[] functions = p.getProperty(DASHBOARD_FUNCTIONS_PROPERTY, 
+        DASHBOARD_FUNCTIONS_PROPERTY_DEFAULT).split(",");
+    for (int i = 0; i < functions.length; i++) {
+      functions[i] = functions[i].trim();
+      try {
+        TimeseriesDB.AggregationOperation.valueOf(functions[i]);
+      } catch (IllegalArgumentException e) {
+        throw new WorkloadException("Unknown dashboard function '" + functions[i] + "' in '" 
+            + DASHBOARD_FUNCTIONS_PROPERTY + "'.");
+      }
+    }
+    final double topNProportion = Double.parseDouble(p.getProperty(DASHBOARD_TOPN_PROPORTION_PROPERTY, 
+        DASHBOARD_TOPN_PROPORTION_PROPERTY_DEFAULT));
+    final int topN = Integer.parseInt(p.getProperty(DASHBOARD_TOPN_PROPERTY, DASHBOARD_TOPN_PROPERTY_DEFAULT));
+    final double rateProportion = Double.parseDouble(p.getProperty(DASHBOARD_RATE_PROPORTION_PROPERTY, 
+        DASHBOARD_RATE_PROPORTION_PROPERTY_DEFAULT));
+    final String topNKey = p.getProperty(TOPN_KEY_PROPERTY, TOPN_KEY_PROPERTY_DEFAULT);
+    final String rateKey = p.getProperty(RATE_KEY_PROPERTY, RATE_KEY_PROPERTY_DEFAULT);
+    
+    final Random random = new Random(count * 31L + panels);
+    dashboards = new DashboardPanel[count][panels];
+    for (int d = 0; d < count; d++) {
+      for (int i = 0; i < panels; i++) {
+        final Set<String> fields = new HashSet<String>();
+        // Group by at least one tag, filter some of the others to a single value
+        // and leave the rest unconstrained so panels aggregate across many series.
+        final int grouped = random.nextInt(tagPairs);
+        for (int t = 0; t < tagPairs; t++) {
+          if (t == grouped) {
+            fields.add(tagKeys[t]);
+          } else if (random.nextInt(3) == 0) {
+            fields.add(tagPairStrings[t][random.nextInt(tagCardinality[t])]);
+          }
+        }
+        fields.add(groupByKey + tagPairDelimiter + functions[random.nextInt(functions.length)]);
+        if (downsample) {
+          fields.add(readDownsampleField);
+        }
+        final double kind = random.nextDouble();
+        if (kind < topNProportion) {
+          fields.add(topNKey + tagPairDelimiter + topN);
+        } else if (kind < topNProportion + rateProportion) {
+          fields.add(rateKey + tagPairDelimiter + (random.nextBoolean() ? "rate" : "derivative"));
+        }
+        dashboards[d][i] = new DashboardPanel(keys[random.nextInt(keys.length)], fields);
+      }
+    }
+    
+    final long start = Long.parseLong(p.getProperty(CoreWorkload.INSERT_START_PROPERTY, 
+        Long.toString(timeUnits.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS))));
+    dashboardEndTimestamp = start + (long) (maxOffsets - 1) * timestampInterval;
+    dashboardEpochNs = System.nanoTime();
+  }
+  
+  /**
+   * Parses the settings for the independent ingestion mode.
+   * @param p The properties to pull settings from.
+   * @throws WorkloadException If the ingestion mode is unknown.
+   */
+  protected void initIngestion(final Properties p) throws WorkloadException {
+    final String ingestionMode = p.getProperty(INGESTION_MODE_PROPERTY, INGESTION_MODE_PROPERTY_DEFAULT);
+    if (ingestionMode.equals("independent")) {
+      independentIngestion = true;
+    } else if (!ingestionMode.equals("lockstep")) {
+      throw new WorkloadException("Unknown ingestion mode \"" + ingestionMode + "\"");
+    }
+    seriesIntervalMultiples = Integer.parseInt(p.getProperty(SERIES_INTERVAL_MULTIPLES_PROPERTY, 
+        SERIES_INTERVAL_MULTIPLES_PROPERTY_DEFAULT));
+    seriesJitter = Double.parseDouble(p.getProperty(SERIES_JITTER_PROPERTY, SERIES_JITTER_PROPERTY_DEFAULT));
+    latePoints = Double.parseDouble(p.getProperty(LATE_POINTS_PROPERTY, LATE_POINTS_PROPERTY_DEFAULT));
+    lateDelayMean = Double.parseDouble(p.getProperty(LATE_DELAY_MEAN_PROPERTY, LATE_DELAY_MEAN_PROPERTY_DEFAULT));
+    backfillProbability = Double.parseDouble(p.getProperty(BACKFILL_PROBABILITY_PROPERTY, 
+        BACKFILL_PROBABILITY_PROPERTY_DEFAULT));
+    backfillSize = Integer.parseInt(p.getProperty(BACKFILL_SIZE_PROPERTY, BACKFILL_SIZE_PROPERTY_DEFAULT));
+    batchSize = Integer.parseInt(p.getProperty(BATCH_SIZE_PROPERTY, BATCH_SIZE_PROPERTY_DEFAULT));
+    batchLingerNs = TimeUnit.MILLISECONDS.toNanos(
+        Long.parseLong(p.getProperty(BATCH_LINGER_PROPERTY, BATCH_LINGER_PROPERTY_DEFAULT)));
+    if (batchSize < 1) {
+      throw new WorkloadException("'" + BATCH_SIZE_PROPERTY + "' must be 1 or more.");
+    }
+  }
+  
   @Override
   public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException {
     if (properties == null) {
@@ -695,19 +965,38 @@ public class TimeSeriesWorkload extends Workload {
     if (threadstate == null) {
       throw new IllegalStateException("Missing thread state.");
     }
+    final ThreadState state = (ThreadState) threadstate;
+    if (batchSize > 1 && !state.batchUnsupported && db instanceof TimeseriesBatchWriter) {
+      final boolean flushed = state.flushLingeringBatch(db);
+      return state.bufferDataPoint(db) && flushed;
+    }
     final Map<String, ByteIterator> tags = new TreeMap<String, ByteIterator>();
-    final String key = ((ThreadState)threadstate).nextDataPoint(tags, true);
+    final String key = independentIngestion ? 
+        state.nextArrivingDataPoint(tags) : state.nextDataPoint(tags, true);
     if (db.insert(table, key, tags) == Status.OK) {
       return true;
     }
     return false;
   }
 
+  /**
+   * Sends whatever is left in the thread's batch.
+   */
+  @Override
+  public void cleanupThread(DB db, Object threadstate) {
+    final ThreadState state = (ThreadState) threadstate;
+    if (state != null && state.batch != null) {
+      state.flushBatch(db);
+    }
+  }
+
   @Override
   public boolean doTransaction(DB db, Object threadstate) {
     if (threadstate == null) {
       throw new IllegalStateException("Missing thread state.");
     }
+    // Whatever the operation, do not let buffered points wait past the linger time.
+    ((ThreadState) threadstate).flushLingeringBatch(db);
     switch (operationchooser.nextString()) {
     case "READ":
       doTransactionRead(db, threadstate);
@@ -724,6 +1013,9 @@ public class TimeSeriesWorkload extends Workload {
     case "DELETE":
       doTransactionDelete(db, threadstate);
       break;
+    case "DASHBOARD":
+      doTransactionDashboard(db, threadstate);
+      break;
     default:
       return false;
     }
@@ -733,7 +1025,7 @@ public class TimeSeriesWorkload extends Workload {
   protected void doTransactionRead(final DB db, Object threadstate) {
     final ThreadState state = (ThreadState) threadstate;
     final String keyname = keys[keychooser.nextValue().intValue()];
-    final Random random = ThreadLocalRandom.current();
+    final Random random = Utils.random();
     int offsets = state.queryOffsetGenerator.nextValue().intValue();
     //int offsets = random.nextInt(maxOffsets - 1);
     final long startTimestamp;
@@ -743,34 +1035,7 @@ public class TimeSeriesWorkload extends Workload {
       startTimestamp = state.startTimestamp;
     }
     
-    // rando tags
-    Set<String> fields = new HashSet<String>();
-    for (int i = 0; i < tagPairs; ++i) {
-      if (groupBy && groupBys[i]) {
-        fields.add(tagKeys[i]);
-      } else {
-        fields.add(tagKeys[i] + tagPairDelimiter + 
-            tagValues[random.nextInt(tagCardinality[i])]);
-      }
-    }
-    
-    if (queryTimeSpan > 0) {
-      final long endTimestamp;
-      if (queryRandomTimeSpan) {
-        endTimestamp = startTimestamp + (timestampInterval * random.nextInt(queryTimeSpan / timestampInterval));
-      } else {
-        endTimestamp = startTimestamp + queryTimeSpan;
-      }
-      fields.add(timestampKey + tagPairDelimiter + startTimestamp + queryTimeSpanDelimiter + endTimestamp);
-    } else {
-      fields.add(timestampKey + tagPairDelimiter + startTimestamp);  
-    }
-    if (groupBy) {
-      fields.add(groupByKey + tagPairDelimiter + groupByFunction);
-    }
-    if (downsample) {
-      fields.add(downsampleKey + tagPairDelimiter + downsampleFunction + downsampleInterval);
-    }
+    final Set<String> fields = buildQueryFields(state, random, startTimestamp, readDownsampleField);
     
     final Map<String, ByteIterator> cells = new HashMap<String, ByteIterator>();
     final Status status = db.read(table, keyname, fields, cells);
@@ -795,7 +1060,7 @@ public class TimeSeriesWorkload extends Workload {
   
   protected void doTransactionScan(final DB db, Object threadstate) {
     final ThreadState state = (ThreadState) threadstate;
-    final Random random = ThreadLocalRandom.current();
+    final Random random = Utils.random();
     final String keyname = keys[random.nextInt(keys.length)];
     
     // choose a random scan length
@@ -809,43 +1074,57 @@ public class TimeSeriesWorkload extends Workload {
       startTimestamp = state.startTimestamp;
     }
     
-    // rando tags
-    Set<String> fields = new HashSet<String>();
-    for (int i = 0; i < tagPairs; ++i) {
-      if (groupBy && groupBys[i]) {
-        fields.add(tagKeys[i]);
-      } else {
-        fields.add(tagKeys[i] + tagPairDelimiter + 
-            tagValues[random.nextInt(tagCardinality[i])]);
-      }
+    final Set<String> fields = buildQueryFields(state, random, startTimestamp, scanDownsampleField);
+    
+    final Vector<HashMap<String, ByteIterator>> results = new Vector<HashMap<String, ByteIterator>>();
+    db.scan(table, keyname, len, fields, results);
+  }
+  
+  /**
+   * Refreshes one dashboard: issues a scan for each of its panels over the
+   * dashboard's time range. The range only advances once per refresh period,
+   * so all clients viewing a dashboard within a period send identical queries.
+   * The whole refresh is measured as DASHBOARD, each panel as a SCAN. The
+   * refresh is reported with the status of the first panel that failed.
+   */
+  protected void doTransactionDashboard(final DB db, Object threadstate) {
+    final ThreadState state = (ThreadState) threadstate;
+    final DashboardPanel[] panels = dashboards[Utils.random().nextInt(dashboards.length)];
+    
+    long elapsedNs = System.nanoTime() - dashboardEpochNs;
+    if (dashboardRefreshNs > 0) {
+      elapsedNs -= elapsedNs % dashboardRefreshNs;
     }
+    final long endTimestamp = dashboardEndTimestamp + timeUnits.convert(elapsedNs, TimeUnit.NANOSECONDS);
+    final StringBuilder buf = state.queryBuffer;
+    buf.setLength(0);
+    buf.append(timestampKey).append(tagPairDelimiter).append(endTimestamp - dashboardTimeSpan)
+       .append(queryTimeSpanDelimiter).append(endTimestamp);
+    final String timeRange = buf.toString();
     
-    if (queryTimeSpan > 0) {
-      final long endTimestamp;
-      if (queryRandomTimeSpan) {
-        endTimestamp = startTimestamp + (timestampInterval * random.nextInt(queryTimeSpan / timestampInterval));
-      } else {
-        endTimestamp = startTimestamp + queryTimeSpan;
+    long ist = measurements.getIntendedtartTimeNs();
+    long st = System.nanoTime();
+    Status status = Status.OK;
+    for (final DashboardPanel panel : panels) {
+      final Set<String> fields = new HashSet<String>(panel.fields);
+      fields.add(timeRange);
+      state.scanResults.clear();
+      final Status panelStatus = db.scan(table, panel.key, Integer.MAX_VALUE, fields, state.scanResults);
+      if (status.isOk() && !panelStatus.isOk()) {
+        status = panelStatus;
       }
-      fields.add(timestampKey + tagPairDelimiter + startTimestamp + queryTimeSpanDelimiter + endTimestamp);
-    } else {
-      fields.add(timestampKey + tagPairDelimiter + startTimestamp);  
-    }
-    if (groupBy) {
-      fields.add(groupByKey + tagPairDelimiter + groupByFunction);
-    }
-    if (downsample) {
-      fields.add(downsampleKey + tagPairDelimiter + downsampleFunction + tagPairDelimiter + downsampleInterval);
     }
-    
-    final Vector<HashMap<String, ByteIterator>> results = new Vector<HashMap<String, ByteIterator>>();
-    db.scan(table, keyname, len, fields, results);
+    long en = System.nanoTime();
+    measurements.measure("DASHBOARD", ist, st, en);
+    measurements.reportStatus("DASHBOARD", status);
   }
   
   protected void doTransactionDelete(final DB db, Object threadstate) {
     final ThreadState state = (ThreadState) threadstate;
-    final Random random = ThreadLocalRandom.current();
-    final StringBuilder buf = new StringBuilder().append(keys[random.nextInt(keys.length)]);
+    final Random random = Utils.random();
+    final StringBuilder buf = state.queryBuffer;
+    buf.setLength(0);
+    buf.append(keys[random.nextInt(keys.length)]);
     
     int offsets = random.nextInt(maxOffsets - 1);
     final long startTimestamp;
@@ -861,8 +1140,7 @@ public class TimeSeriesWorkload extends Workload {
         buf.append(deleteDelimiter)
            .append(tagKeys[i]);
       } else {
-        buf.append(deleteDelimiter).append(tagKeys[i] + tagPairDelimiter + 
-            tagValues[random.nextInt(tagCardinality[i])]);
+        buf.append(deleteDelimiter).append(tagPairStrings[i][random.nextInt(tagCardinality[i])]);
       }
     }
     
@@ -873,16 +1151,57 @@ public class TimeSeriesWorkload extends Workload {
       } else {
         endTimestamp = startTimestamp + queryTimeSpan;
       }
-      buf.append(deleteDelimiter)
-         .append(timestampKey + tagPairDelimiter + startTimestamp + queryTimeSpanDelimiter + endTimestamp);
+      buf.append(deleteDelimiter).append(timestampKey).append(tagPairDelimiter).append(startTimestamp)
+         .append(queryTimeSpanDelimiter).append(endTimestamp);
     } else {
-      buf.append(deleteDelimiter)
-         .append(timestampKey + tagPairDelimiter + startTimestamp);  
+      buf.append(deleteDelimiter).append(timestampKey).append(tagPairDelimiter).append(startTimestamp);
     }
     
     db.delete(table, buf.toString());
   }
   
+  /**
+   * Builds the query field set with a random tag value (or group-by key) per
+   * tag, the time range and any aggregation fields.
+   * @param state The calling thread's state.
+   * @param random The random source to pick tag values with.
+   * @param startTimestamp The first timestamp of the query.
+   * @param downsampleField The downsampling field to add if downsampling is on.
+   * @return A new query field set, which the DB may keep.
+   */
+  protected Set<String> buildQueryFields(final ThreadState state, final Random random, 
+                                         final long startTimestamp, final String downsampleField) {
+    final Set<String> fields = new HashSet<String>();
+    for (int i = 0; i < tagPairs; ++i) {
+      if (groupBy && groupBys[i]) {
+        fields.add(tagKeys[i]);
+      } else {
+        fields.add(tagPairStrings[i][random.nextInt(tagCardinality[i])]);
+      }
+    }
+    
+    final StringBuilder buf = state.queryBuffer;
+    buf.setLength(0);
+    buf.append(timestampKey).append(tagPairDelimiter).append(startTimestamp);
+    if (queryTimeSpan > 0) {
+      final long endTimestamp;
+      if (queryRandomTimeSpan) {
+        endTimestamp = startTimestamp + (timestampInterval * random.nextInt(queryTimeSpan / timestampInterval));
+      } else {
+        endTimestamp = startTimestamp + queryTimeSpan;
+      }
+      buf.append(queryTimeSpanDelimiter).append(endTimestamp);
+    }
+    fields.add(buf.toString());
+    if (groupBy) {
+      fields.add(groupByField);
+    }
+    if (downsample) {
+      fields.add(downsampleField);
+    }
+    return fields;
+  }
+  
   /**
    * Parses the values returned by a read or scan operation and determines whether
    * or not the integer value matches the hash and timestamp of the original timestamp.
@@ -915,7 +1234,7 @@ public class TimeSeriesWorkload extends Workload {
       verifyStatus = Status.OK;
     }
     long endTime = System.nanoTime();
-    measurements.measure("VERIFY", (int) (endTime - startTime) / 1000);
+    measurements.measureNanos("VERIFY", endTime - startTime);
     measurements.reportStatus("VERIFY", verifyStatus);
     return verifyStatus;
   }
@@ -953,9 +1272,14 @@ public class TimeSeriesWorkload extends Workload {
     final int tagValueLength = Integer.parseInt(properties.getProperty(
         TAG_VALUE_LENGTH_PROPERTY, TAG_VALUE_LENGTH_PROPERTY_DEFAULT));
     
-    keyGenerator = new IncrementingPrintableStringGenerator(keyLength);
-    tagKeyGenerator = new IncrementingPrintableStringGenerator(tagKeyLength);
-    tagValueGenerator = new IncrementingPrintableStringGenerator(tagValueLength);
+    final IncrementingPrintableStringGenerator keyGen = new IncrementingPrintableStringGenerator(keyLength);
+    final IncrementingPrintableStringGenerator tagKeyGen = 
+        new IncrementingPrintableStringGenerator(tagKeyLength);
+    final IncrementingPrintableStringGenerator tagValueGen = 
+        new IncrementingPrintableStringGenerator(tagValueLength);
+    keyGenerator = keyGen;
+    tagKeyGenerator = tagKeyGen;
+    tagValueGenerator = tagValueGen;
     
     final int threads = Integer.parseInt(properties.getProperty(Client.THREAD_COUNT_PROPERTY, "1"));
     final String tagCardinalityString = properties.getProperty(
@@ -1006,25 +1330,26 @@ public class TimeSeriesWorkload extends Workload {
       }
     }
     
+    // Each string is a pure function of its index so large key and tag value
+    // sets are generated in parallel.
     keys = new String[numKeys];
     tagKeys = new String[tagPairs];
     tagValues = new String[maxCardinality];
-    for (int i = 0; i < numKeys; ++i) {
-      keys[i] = keyGenerator.nextString();
-    }
-
-    for (int i = 0; i < tagPairs; ++i) {
-      tagKeys[i] = tagKeyGenerator.nextString();
-    }
-    
-    for (int i = 0; i < maxCardinality; i++) {
-      tagValues[i] = tagValueGenerator.nextString();
-    }
+    Arrays.parallelSetAll(keys, keyGen::valueAt);
+    Arrays.setAll(tagKeys, tagKeyGen::valueAt);
+    Arrays.parallelSetAll(tagValues, tagValueGen::valueAt);
     if (randomizeTimeseriesOrder) {
       Utils.shuffleArray(keys);
       Utils.shuffleArray(tagValues);
     }
     
+    tagPairStrings = new String[tagPairs][];
+    for (int i = 0; i < tagPairs; ++i) {
+      final String prefix = tagKeys[i] + tagPairDelimiter;
+      tagPairStrings[i] = new String[tagCardinality[i]];
+      Arrays.parallelSetAll(tagPairStrings[i], v -> prefix + tagValues[v]);
+    }
+    
     maxOffsets = (recordcount / totalCardinality) + 1;
     final int[] keyAndTagCardinality = new int[tagPairs + 1];
     keyAndTagCardinality[0] = numKeys;
@@ -1050,6 +1375,24 @@ public class TimeSeriesWorkload extends Workload {
    * @throws WorkloadException If one or more settings were invalid.
    */
   protected void validateSettings() throws WorkloadException {
+    if (independentIngestion) {
+      if (seriesIntervalMultiples < 1) {
+        throw new WorkloadException("'" + SERIES_INTERVAL_MULTIPLES_PROPERTY + "' must be 1 or more.");
+      }
+      if (seriesJitter < 0 || seriesJitter >= 1) {
+        throw new WorkloadException("'" + SERIES_JITTER_PROPERTY + "' must be in [0, 1).");
+      }
+      if (latePoints < 0 || latePoints > 1 || backfillProbability < 0 || backfillProbability > 1) {
+        throw new WorkloadException("'" + LATE_POINTS_PROPERTY + "' and '" + BACKFILL_PROBABILITY_PROPERTY 
+            + "' must be in [0, 1].");
+      }
+      if (backfillSize < 1) {
+        throw new WorkloadException("'" + BACKFILL_SIZE_PROPERTY + "' must be 1 or more.");
+      }
+      if ((long) numKeys * perKeyCardinality > Integer.MAX_VALUE) {
+        throw new WorkloadException("Too many time series for the independent ingestion mode.");
+      }
+    }
     if (dataintegrity) {
       if (valueType != ValueType.INTEGERS) {
         throw new WorkloadException("Data integrity was enabled. 'valuetype' must "
@@ -1107,6 +1450,36 @@ public class TimeSeriesWorkload extends Workload {
     /** The starting timestamp. */
     protected long startTimestamp;
     
+    /** Scratch buffer for building query and delete strings. */
+    protected final StringBuilder queryBuffer = new StringBuilder();
+    
+    /** Reused result holder for dashboard panel scans. */
+    protected final Vector<HashMap<String, ByteIterator>> scanResults = 
+        new Vector<HashMap<String, ByteIterator>>();
+    
+    /** Upcoming reports and late deliveries ordered by arrival time. Only used
+     * by the independent ingestion mode and created on the first insert. */
+    protected PriorityQueue<PendingPoint> arrivals;
+    
+    /** The reporting interval of each of this thread's series, in timestamp units. */
+    protected int[] seriesIntervals;
+    
+    /** The key and tag value indices of the last point generated. */
+    protected int lastKeyIdx;
+    protected final int[] lastTagValueIdxs = new int[tagPairs];
+    
+    /** The batch being filled when batching is on, created on first use. */
+    protected TimeseriesBatch batch;
+    
+    /** When the first point of the current batch was added. */
+    protected long batchStartNs;
+    
+    /** Set once the DB turns out not to support batches. */
+    protected boolean batchUnsupported;
+    
+    /** Scratch map points are generated into before being added to the batch. */
+    protected final Map<String, ByteIterator> batchScratch = new TreeMap<String, ByteIterator>();
+    
     /**
      * Default ctor.
      * @param threadID The zero based thread ID.
@@ -1170,7 +1543,7 @@ public class TimeSeriesWorkload extends Workload {
      * @return The next key to write.
      */
     protected String nextDataPoint(final Map<String, ByteIterator> map, final boolean isInsert) {
-      final Random random = ThreadLocalRandom.current();
+      final Random random = Utils.random();
       int iterations = sparsity <= 0 ? 1 : random.nextInt((int) ((double) perKeyCardinality * sparsity));
       if (iterations < 1) {
         iterations = 1;
@@ -1190,6 +1563,8 @@ public class TimeSeriesWorkload extends Workload {
             validationTags = null;
           }
           key = keys[keyIdx];
+          lastKeyIdx = keyIdx;
+          System.arraycopy(tagValueIdxs, 0, lastTagValueIdxs, 0, tagPairs);
           int overallIdx = keyIdx * cumulativeCardinality[0];
           for (int i = 0; i < tagPairs; ++i) {
             int tvidx = tagValueIdxs[i];
@@ -1224,29 +1599,7 @@ public class TimeSeriesWorkload extends Workload {
             map.put(timestampKey, new NumericByteIterator(timestampGenerator.currentValue()));
           }
           
-          if (dataintegrity) {
-            map.put(valueKey, new NumericByteIterator(validationFunction(key, 
-                timestampGenerator.currentValue(), validationTags)));
-          } else {
-            switch (valueType) {
-            case INTEGERS:
-              map.put(valueKey, new NumericByteIterator(random.nextInt()));
-              break;
-            case FLOATS:
-              map.put(valueKey, new NumericByteIterator(random.nextDouble() * (double) 100000));
-              break;
-            case MIXED:
-              if (random.nextBoolean()) {
-                map.put(valueKey, new NumericByteIterator(random.nextInt()));
-              } else {
-                map.put(valueKey, new NumericByteIterator(random.nextDouble() * (double) 100000));
-              }
-              break;
-            default:
-              throw new IllegalStateException("Somehow we didn't have a value "
-                  + "type configured that we support: " + valueType);
-            }        
-          }
+          putValue(map, random, key, timestampGenerator.currentValue(), validationTags);
         }
         
         boolean tagRollover = false;
@@ -1281,6 +1634,251 @@ public class TimeSeriesWorkload extends Workload {
         }
       }
     }
+    
+    /**
+     * Generates the next point to arrive for the independent ingestion mode.
+     * Reports are popped in arrival order; each one schedules the series' next
+     * report and may be deferred as a late delivery or start an outage whose
+     * reports are backfilled in one burst.
+     * @param map An initialized map to populate with tag keys and values as well
+     * as the timestamp and actual value.
+     * @return The key of the series the point belongs to.
+     */
+    protected String nextArrivingDataPoint(final Map<String, ByteIterator> map) {
+      final Random random = Utils.random();
+      if (arrivals == null) {
+        initArrivals(random);
+      }
+      while (true) {
+        final PendingPoint next = arrivals.poll();
+        if (!next.report) {
+          return putDataPoint(map, random, next.series, next.timestamp);
+        }
+        
+        final int interval = seriesIntervals[next.series];
+        final long pointTimestamp = next.arrival;
+        final long scheduled = next.timestamp;
+        if (backfillProbability > 0 && random.nextDouble() < backfillProbability) {
+          // Hold back this and the following reports and send them with the first one after the outage.
+          next.timestamp = scheduled + (long) backfillSize * interval;
+          next.arrival = next.timestamp + jitter(random, interval);
+          arrivals.add(next);
+          arrivals.add(new PendingPoint(next.series, pointTimestamp, next.arrival, false));
+          for (int i = 1; i < backfillSize; i++) {
+            final long historic = scheduled + (long) i * interval + jitter(random, interval);
+            arrivals.add(new PendingPoint(next.series, historic, next.arrival, false));
+          }
+          continue;
+        }
+        
+        // Reuse the polled entry for the series' next report.
+        next.timestamp = scheduled + interval;
+        next.arrival = next.timestamp + jitter(random, interval);
+        arrivals.add(next);
+        
+        if (latePoints > 0 && random.nextDouble() < latePoints) {
+          final long delay = (long) Math.ceil(-Math.log(1 - random.nextDouble()) * lateDelayMean * interval);
+          arrivals.add(new PendingPoint(next.series, pointTimestamp, pointTimestamp + Math.max(delay, 1), false));
+          continue;
+        }
+        return putDataPoint(map, random, next.series, pointTimestamp);
+      }
+    }
+    
+    /**
+     * Adds the next point to the thread's batch and sends the batch once it is
+     * full or its first point has waited {@code batchlingerms}.
+     * @param db The DB to write to, which must be a {@link TimeseriesBatchWriter}.
+     * @return False if a batch was sent and failed.
+     */
+    protected boolean bufferDataPoint(final DB db) {
+      if (batch == null) {
+        batch = new TimeseriesBatch(batchSize, keys, tagKeys, tagValues);
+      }
+      batchScratch.clear();
+      if (independentIngestion) {
+        nextArrivingDataPoint(batchScratch);
+      } else {
+        nextDataPoint(batchScratch, true);
+      }
+      final long timestamp = ((NumericByteIterator) batchScratch.get(timestampKey)).getLong();
+      final NumericByteIterator value = (NumericByteIterator) batchScratch.get(valueKey);
+      if (batch.size() == 0) {
+        batchStartNs = System.nanoTime();
+      }
+      if (value.isFloatingPoint()) {
+        batch.add(lastKeyIdx, timestamp, lastTagValueIdxs, value.getDouble());
+      } else {
+        batch.add(lastKeyIdx, timestamp, lastTagValueIdxs, value.getLong());
+      }
+      if (batch.isFull() || (batchLingerNs > 0 && System.nanoTime() - batchStartNs >= batchLingerNs)) {
+        return flushBatch(db);
+      }
+      return true;
+    }
+    
+    /**
+     * Sends the current batch if its first point has waited {@code batchlingerms}.
+     * Only checked when the thread runs an operation, so a thread that is idle,
+     * e.g. throttled by a target, holds its points until its next operation.
+     * @return False if a batch was sent and failed.
+     */
+    protected boolean flushLingeringBatch(final DB db) {
+      if (batch == null || batch.size() == 0 || batchLingerNs <= 0
+          || System.nanoTime() - batchStartNs < batchLingerNs) {
+        return true;
+      }
+      return flushBatch(db);
+    }
+    
+    /**
+     * Sends the current batch, falling back to one insert per point if the DB
+     * has no batch support.
+     * @return Whether every point was written.
+     */
+    protected boolean flushBatch(final DB db) {
+      if (batch.size() == 0) {
+        return true;
+      }
+      Status status = Status.NOT_IMPLEMENTED;
+      if (db instanceof TimeseriesBatchWriter) {
+        status = ((TimeseriesBatchWriter) db).insertBatch(table, batch);
+      }
+      if (status == Status.NOT_IMPLEMENTED) {
+        batchUnsupported = true;
+        status = Status.OK;
+        for (int i = 0; i < batch.size() && status.isOk(); i++) {
+          final Map<String, ByteIterator> point = new TreeMap<String, ByteIterator>();
+          for (int t = 0; t < tagPairs; t++) {
+            point.put(tagKeys[t], new StringByteIterator(batch.getTagValue(i, t)));
+          }
+          point.put(timestampKey, new NumericByteIterator(batch.getTimestamp(i)));
+          point.put(valueKey, batch.isFloatingPoint(i) ? new NumericByteIterator(batch.getDoubleValue(i)) 
+              : new NumericByteIterator(batch.getLongValue(i)));
+          status = db.insert(table, batch.getMetric(i), point);
+        }
+      }
+      batch.clear();
+      return status.isOk();
+    }
+    
+    /**
+     * Gives each of this thread's series an interval and a random phase within
+     * it and queues its first report.
+     */
+    private void initArrivals(final Random random) {
+      final int series = (keyIdxEnd - keyIdxStart) * perKeyCardinality;
+      seriesIntervals = new int[series];
+      arrivals = new PriorityQueue<PendingPoint>(series + 16);
+      for (int i = 0; i < series; i++) {
+        final int interval = timestampInterval * (1 + random.nextInt(seriesIntervalMultiples));
+        seriesIntervals[i] = interval;
+        final long first = startTimestamp + random.nextInt(interval);
+        arrivals.add(new PendingPoint(i, first, first + jitter(random, interval), true));
+      }
+    }
+    
+    private long jitter(final Random random, final int interval) {
+      return seriesJitter > 0 ? (long) (random.nextDouble() * seriesJitter * interval) : 0;
+    }
+    
+    /**
+     * Writes the tags, timestamp and value of one point of a series owned by
+     * this thread, indexed from zero in key then tag value order.
+     */
+    private String putDataPoint(final Map<String, ByteIterator> map, final Random random, 
+                                final int series, final long timestamp) {
+      lastKeyIdx = keyIdxStart + series / perKeyCardinality;
+      final String key = keys[lastKeyIdx];
+      final int combination = series % perKeyCardinality;
+      final TreeMap<String, String> validationTags = dataintegrity ? new TreeMap<String, String>() : null;
+      for (int i = 0; i < tagPairs; ++i) {
+        final int tvidx = (combination / cumulativeCardinality[i + 1]) % tagCardinality[i];
+        lastTagValueIdxs[i] = tvidx;
+        map.put(tagKeys[i], new StringByteIterator(tagValues[tvidx]));
+        if (dataintegrity) {
+          validationTags.put(tagKeys[i], tagValues[tvidx]);
+        }
+      }
+      map.put(timestampKey, new NumericByteIterator(timestamp));
+      putValue(map, random, key, timestamp, validationTags);
+      return key;
+    }
+    
+    /**
+     * Adds the value for a point, either the validation hash when data
+     * integrity is enabled or a random value of the configured type.
+     */
+    private void putValue(final Map<String, ByteIterator> map, final Random random, final String key, 
+                          final long timestamp, final TreeMap<String, String> validationTags) {
+      if (dataintegrity) {
+        map.put(valueKey, new NumericByteIterator(validationFunction(key, timestamp, validationTags)));
+        return;
+      }
+      switch (valueType) {
+      case INTEGERS:
+        map.put(valueKey, new NumericByteIterator(random.nextInt()));
+        break;
+      case FLOATS:
+        map.put(valueKey, new NumericByteIterator(random.nextDouble() * (double) 100000));
+        break;
+      case MIXED:
+        if (random.nextBoolean()) {
+          map.put(valueKey, new NumericByteIterator(random.nextInt()));
+        } else {
+          map.put(valueKey, new NumericByteIterator(random.nextDouble() * (double) 100000));
+        }
+        break;
+      default:
+        throw new IllegalStateException("Somehow we didn't have a value "
+            + "type configured that we support: " + valueType);
+      }
+    }
+  }
+  
+  /**
+   * One query of a dashboard: a time series key and the tag filters, group-by
+   * and post-processing fields sent with it.
+   */
+  protected static final class DashboardPanel {
+    private final String key;
+    private final Set<String> fields;
+    
+    DashboardPanel(final String key, final Set<String> fields) {
+      this.key = key;
+      this.fields = Collections.unmodifiableSet(fields);
+    }
+  }
+  
+  /**
+   * A report or delivery waiting in a thread's arrival queue.
+   */
+  protected static final class PendingPoint implements Comparable<PendingPoint> {
+    /** The index of the series within the thread. */
+    private final int series;
+    
+    /** The point's timestamp, or the nominal time of the next report. */
+    private long timestamp;
+    
+    /** When the point reaches the database, in timestamp units. */
+    private long arrival;
+    
+    /** Whether this is a scheduled report rather than a late or backfilled point. */
+    private final boolean report;
+    
+    PendingPoint(final int series, final long timestamp, final long arrival, final boolean report) {
+      this.series = series;
+      this.timestamp = timestamp;
+      this.arrival = arrival;
+      this.report = report;
+    }
+    
+    @Override
+    public int compareTo(final PendingPoint other) {
+      // Points arriving together, like a backfill burst, are delivered oldest first.
+      final int order = Long.compare(arrival, other.arrival);
+      return order != 0 ? order : Long.compare(timestamp, other.timestamp);
+    }
   }
 
 }
\ No newline at end of file
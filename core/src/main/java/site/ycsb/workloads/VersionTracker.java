@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.workloads;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the versions of the writes sent during a run to detect stale reads
+ * and lost updates, shared by all client threads. Only keys written by this
+ * process are tracked.
+ * <p>
+ * Concurrent writes to a field may be applied in any order, so a read is only
+ * stale if it returns a version whose write had completed before another
+ * write to the field was sent, and that write was acknowledged before the read
+ * was sent. For every field this keeps the floor: the highest version known
+ * to be superseded that way. Writes that fail may still be applied later, so
+ * they keep the floor below their version until the staleness bound has
+ * passed since they failed, after which they are assumed to have been lost.
+ * <p>
+ * A key is forgotten once it has no pending writes and its floors were
+ * acknowledged more than the staleness bound ago, so memory is bounded by the
+ * keys written recently rather than all keys written. Reads of a forgotten
+ * key are not checked until it is written again.
+ */
+final class VersionTracker {
+  /** Returned by {@link #staleness} when a read is not known to be stale. */
+  static final long CURRENT = -1;
+
+  /** Covers every field in {@link #begin}. */
+  static final int ALL_FIELDS = -1;
+
+  private final ConcurrentHashMap<String, KeyVersions> keys = new ConcurrentHashMap<>();
+  private final AtomicLong versions;
+  private final int fieldcount;
+  private final long expiryns;
+
+  /** Writes ended since the last sweep for keys to forget. */
+  private final AtomicLong endsSinceSweep = new AtomicLong();
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+  /** How many writes to end before the next sweep, the keys left after the last one. */
+  private volatile long sweepInterval = MIN_SWEEP_INTERVAL;
+
+  /** Fewest writes between sweeps, so small key sets are not swept all the time. */
+  private static final int MIN_SWEEP_INTERVAL = 1024;
+
+  // Layout of a pending write.
+  private static final int VERSION = 0;
+  private static final int FIELD = 1;
+  private static final int FAILED = 2;
+  private static final int FAILED_NS = 3;
+  private static final int FLOORS = 4;
+
+  /**
+   * @param versions Where versions for writes are taken from.
+   * @param fieldcount The number of fields in a record.
+   * @param expiryns How long after failing a write stops holding back the floor.
+   */
+  VersionTracker(final AtomicLong versions, final int fieldcount, final long expiryns) {
+    this.versions = versions;
+    this.fieldcount = fieldcount;
+    this.expiryns = expiryns;
+  }
+
+  /**
+   * Takes the version for a write that is about to be sent.
+   *
+   * @param key The key to write.
+   * @param field The index of the field to write, or {@link #ALL_FIELDS}.
+   * @return The version to write.
+   */
+  long begin(final String key, final int field) {
+    while (true) {
+      KeyVersions entry = keys.get(key);
+      if (entry == null) {
+        final KeyVersions created = new KeyVersions(fieldcount);
+        entry = keys.putIfAbsent(key, created);
+        if (entry == null) {
+          entry = created;
+        }
+      }
+      synchronized (entry) {
+        // Forgotten by a sweep since it was looked up, so start over with a new entry.
+        if (!entry.forgotten) {
+          return nextVersion(entry, field);
+        }
+      }
+    }
+  }
+
+  /**
+   * Takes the version for a write to a key, holding the lock of its entry.
+   */
+  private long nextVersion(final KeyVersions entry, final int field) {
+    expire(entry, System.nanoTime());
+    // Taken under the lock so writes to a key are pending in version order.
+    final long version = versions.getAndIncrement() & IntegrityValue.MAX_VERSION;
+    final long[] write = new long[FLOORS + fieldcount];
+    write[VERSION] = version;
+    write[FIELD] = field;
+    for (int f = 0; f < fieldcount; f++) {
+      write[FLOORS + f] = version - 1;
+    }
+    for (long[] pending : entry.pending) {
+      for (int f = 0; f < fieldcount; f++) {
+        if (covers(pending, f)) {
+          write[FLOORS + f] = Math.min(write[FLOORS + f], pending[VERSION] - 1);
+        }
+      }
+    }
+    entry.pending.add(write);
+    return version;
+  }
+
+  /**
+   * Records the outcome of a write.
+   *
+   * @param key The key written.
+   * @param version The version from {@link #begin}.
+   * @param acknowledged Whether the database acknowledged the write.
+   * @param ackNs When the write returned, in {@link System#nanoTime()}.
+   */
+  void end(final String key, final long version, final boolean acknowledged, final long ackNs) {
+    final KeyVersions entry = keys.get(key);
+    if (entry == null) {
+      return;
+    }
+    synchronized (entry) {
+      for (int i = 0; i < entry.pending.size(); i++) {
+        final long[] write = entry.pending.get(i);
+        if (write[VERSION] != version) {
+          continue;
+        }
+        if (!acknowledged) {
+          write[FAILED] = 1;
+          write[FAILED_NS] = ackNs;
+          break;
+        }
+        entry.pending.remove(i);
+        for (int f = 0; f < fieldcount; f++) {
+          if (covers(write, f) && write[FLOORS + f] > entry.floor[f]) {
+            entry.floor[f] = write[FLOORS + f];
+            entry.floorAckNs[f] = ackNs;
+          }
+        }
+        break;
+      }
+      expire(entry, ackNs);
+    }
+    // Sweeping takes time proportional to the keys tracked, at most the keys
+    // left after the last sweep plus those written since, so waiting for as
+    // many writes as were left keeps its cost per write constant.
+    if (endsSinceSweep.incrementAndGet() >= sweepInterval && sweeping.compareAndSet(false, true)) {
+      try {
+        endsSinceSweep.set(0);
+        sweep(ackNs);
+        sweepInterval = Math.max(keys.size(), MIN_SWEEP_INTERVAL);
+      } finally {
+        sweeping.set(false);
+      }
+    }
+  }
+
+  /**
+   * Forgets the keys that have nothing pending and whose floors were all
+   * acknowledged more than the expiry before.
+   */
+  private void sweep(final long nowNs) {
+    final Iterator<Map.Entry<String, KeyVersions>> it = keys.entrySet().iterator();
+    while (it.hasNext()) {
+      final KeyVersions entry = it.next().getValue();
+      synchronized (entry) {
+        expire(entry, nowNs);
+        if (settled(entry, nowNs)) {
+          entry.forgotten = true;
+          it.remove();
+        }
+      }
+    }
+  }
+
+  private boolean settled(final KeyVersions entry, final long nowNs) {
+    if (!entry.pending.isEmpty()) {
+      return false;
+    }
+    for (int f = 0; f < fieldcount; f++) {
+      if (entry.floor[f] >= 0 && nowNs - entry.floorAckNs[f] <= expiryns) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The number of keys tracked.
+   */
+  int size() {
+    return keys.size();
+  }
+
+  /**
+   * Drops the failed writes of a key that failed more than the expiry ago.
+   * Writes begun afterwards no longer keep their floor below those versions.
+   */
+  private void expire(final KeyVersions entry, final long nowNs) {
+    for (int i = entry.pending.size() - 1; i >= 0; i--) {
+      final long[] write = entry.pending.get(i);
+      if (write[FAILED] != 0 && nowNs - write[FAILED_NS] > expiryns) {
+        entry.pending.remove(i);
+      }
+    }
+  }
+
+  /**
+   * Forgets a write the database reports it did not apply, such as a
+   * conditional write that found another value.
+   *
+   * @param key The key written.
+   * @param version The version from {@link #begin}.
+   */
+  void discard(final String key, final long version) {
+    final KeyVersions entry = keys.get(key);
+    if (entry == null) {
+      return;
+    }
+    synchronized (entry) {
+      for (int i = 0; i < entry.pending.size(); i++) {
+        if (entry.pending.get(i)[VERSION] == version) {
+          entry.pending.remove(i);
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks a version read back against the acknowledged writes.
+   *
+   * @param key The key read.
+   * @param field The index of the field read.
+   * @param version The version read.
+   * @param readStartNs When the read was sent, in {@link System#nanoTime()}.
+   * @return How long before the read a newer version was acknowledged in
+   * nanoseconds, or {@link #CURRENT}.
+   */
+  long staleness(final String key, final int field, final long version, final long readStartNs) {
+    final KeyVersions entry = keys.get(key);
+    if (entry == null) {
+      return CURRENT;
+    }
+    synchronized (entry) {
+      if (version <= entry.floor[field] && entry.floorAckNs[field] - readStartNs < 0) {
+        return readStartNs - entry.floorAckNs[field];
+      }
+    }
+    return CURRENT;
+  }
+
+  private static boolean covers(final long[] write, final int field) {
+    return write[FIELD] == ALL_FIELDS || write[FIELD] == field;
+  }
+
+  /**
+   * The floors of the fields of one key and its pending writes.
+   */
+  private static final class KeyVersions {
+    private final long[] floor;
+    private final long[] floorAckNs;
+    /** The version, field, failure and per field floor candidates of every write not yet acknowledged. */
+    private final List<long[]> pending = new ArrayList<>(2);
+    /** Removed from the tracked keys, writes have to start over with a new entry. */
+    private boolean forgotten;
+
+    KeyVersions(final int fieldcount) {
+      floor = new long[fieldcount];
+      floorAckNs = new long[fieldcount];
+      Arrays.fill(floor, -1);
+    }
+  }
+}
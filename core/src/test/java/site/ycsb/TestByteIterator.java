@@ -18,6 +18,13 @@
 package site.ycsb;
 
 import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.testng.AssertJUnit.*;
 
 public class TestByteIterator {
@@ -36,4 +43,101 @@ public class TestByteIterator {
     assertFalse(itor.hasNext());
     assertEquals(0, itor.bytesLeft());
   }
+
+  @Test
+  public void testNextBufHeapAndDirect() {
+    byte[] data = "abcdefghij".getBytes(StandardCharsets.UTF_8);
+    ByteIterator[] itors = {
+        new ByteArrayByteIterator(data),
+        new StringByteIterator("abcdefghij"),
+        new InputStreamByteIterator(new ByteArrayInputStream(data), data.length),
+    };
+    for (ByteIterator itor : itors) {
+      ByteBuffer heap = ByteBuffer.allocate(4);
+      assertEquals(4, itor.nextBuf(heap));
+      assertFalse(heap.hasRemaining());
+      assertEquals(6, itor.bytesLeft());
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(16);
+      assertEquals(6, itor.nextBuf(direct));
+      assertEquals(0, itor.bytesLeft());
+      assertEquals(0, itor.nextBuf(direct));
+
+      heap.flip();
+      direct.flip();
+      byte[] out = new byte[10];
+      heap.get(out, 0, 4);
+      direct.get(out, 4, 6);
+      assertEquals("abcdefghij", new String(out, StandardCharsets.UTF_8));
+    }
+
+    ByteIterator itor = new RandomByteIterator(10);
+    assertEquals(10, itor.nextBuf(ByteBuffer.allocateDirect(32)));
+    assertFalse(itor.hasNext());
+  }
+
+  @Test
+  public void testNextBufRespectsLimit() {
+    ByteBuffer buf = ByteBuffer.allocate(8);
+    buf.position(2).limit(5);
+    ByteIterator itor = new StringByteIterator("abcdefghij");
+    assertEquals(3, itor.nextBuf(buf));
+    assertEquals(7, itor.bytesLeft());
+    assertEquals(5, buf.position());
+    assertEquals('a', buf.array()[2]);
+    assertEquals(0, buf.array()[5]);
+  }
+
+  @Test
+  public void testAsInputStream() throws IOException {
+    ByteIterator itor = new ByteArrayByteIterator("hello world".getBytes(StandardCharsets.UTF_8));
+    InputStream in = itor.asInputStream();
+    assertEquals(11, in.available());
+    assertEquals('h', in.read());
+    byte[] b = new byte[32];
+    assertEquals(10, in.read(b, 0, b.length));
+    assertEquals("ello world", new String(b, 0, 10, StandardCharsets.UTF_8));
+    assertEquals(-1, in.read());
+    assertEquals(-1, in.read(b, 0, b.length));
+  }
+
+  @Test
+  public void testRandomByteIteratorMixedReads() {
+    int size = 1000;
+    RandomByteIterator itor = new RandomByteIterator(size);
+    byte[] out = new byte[size];
+    int pos = 0;
+    for (int i = 0; i < 3; i++) {
+      out[pos++] = itor.nextByte();
+    }
+    pos = itor.nextBuf(new byte[0], 0) + pos;
+    ByteBuffer direct = ByteBuffer.allocateDirect(17);
+    assertEquals(17, itor.nextBuf(direct));
+    direct.flip();
+    direct.get(out, pos, 17);
+    pos += 17;
+    assertEquals(size - pos, itor.bytesLeft());
+    ByteBuffer heap = ByteBuffer.wrap(out, pos, 100).slice();
+    assertEquals(100, itor.nextBuf(heap));
+    pos += 100;
+    pos = itor.nextBuf(out, pos);
+    assertEquals(size, pos);
+    assertFalse(itor.hasNext());
+    for (byte b : out) {
+      assertTrue(b >= ' ' && b <= '_');
+    }
+  }
+
+  @Test
+  public void testRandomFillRegion() {
+    byte[] out = new byte[64];
+    RandomByteIterator.fill(out, 5, 23);
+    for (int i = 0; i < out.length; i++) {
+      if (i < 5 || i >= 28) {
+        assertEquals(0, out[i]);
+      } else {
+        assertTrue(out[i] >= ' ' && out[i] <= '_');
+      }
+    }
+  }
 }
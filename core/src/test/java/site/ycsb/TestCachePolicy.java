@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link CachePolicy}.
+ */
+public class TestCachePolicy {
+
+  @Test
+  public void lruEvictsLeastRecentlyUsed() {
+    final CachePolicy<String> cache = CachePolicy.create("lru", 3);
+    cache.put("a", "a");
+    cache.put("b", "b");
+    cache.put("c", "c");
+    cache.get("a");
+    cache.put("d", "d");
+    assertEquals(cache.size(), 3);
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+    assertNotNull(cache.get("d"));
+  }
+
+  @Test
+  public void slruProtectsEntriesUsedTwice() {
+    final CachePolicy<String> cache = CachePolicy.create("slru", 10);
+    for (int i = 0; i < 5; i++) {
+      cache.put("hot" + i, "hot");
+      cache.get("hot" + i);
+    }
+    // A stream of one-off entries only churns the probation segment.
+    for (int i = 0; i < 100; i++) {
+      cache.put("cold" + i, "cold");
+    }
+    assertEquals(cache.size(), 10);
+    for (int i = 0; i < 5; i++) {
+      assertNotNull(cache.get("hot" + i));
+    }
+  }
+
+  @Test
+  public void tinyLfuKeepsFrequentEntries() {
+    final CachePolicy<String> cache = CachePolicy.create("tinylfu", 100);
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 50; i++) {
+        if (cache.get("hot" + i) == null) {
+          cache.put("hot" + i, "hot");
+        }
+      }
+    }
+    for (int i = 0; i < 1000; i++) {
+      if (cache.get("cold" + i) == null) {
+        cache.put("cold" + i, "cold");
+      }
+    }
+    assertTrue(cache.size() <= 100);
+    int hits = 0;
+    for (int i = 0; i < 50; i++) {
+      if (cache.get("hot" + i) != null) {
+        hits++;
+      }
+    }
+    assertTrue(hits >= 45, "only " + hits + " frequent entries survived");
+  }
+
+  @Test
+  public void removeAndReplace() {
+    for (final String policy : new String[] {"lru", "slru", "tinylfu"}) {
+      final CachePolicy<String> cache = CachePolicy.create(policy, 10);
+      cache.put("a", "1");
+      cache.get("a");
+      cache.put("a", "2");
+      assertEquals(cache.get("a"), "2", policy);
+      assertEquals(cache.size(), 1, policy);
+      cache.remove("a");
+      assertNull(cache.get("a"), policy);
+      assertEquals(cache.size(), 0, policy);
+    }
+  }
+
+  @Test
+  public void sketchRowsHashIndependently() {
+    // 32 counters per row: a key only inherits another's count if it collides in every row.
+    final CachePolicy.FrequencySketch sketch = new CachePolicy.FrequencySketch(16);
+    for (int i = 0; i < 15; i++) {
+      sketch.increment("hot");
+    }
+    int inflated = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (sketch.frequency("key" + i) > 0) {
+        inflated++;
+      }
+    }
+    assertTrue(inflated < 5, inflated + " keys share every counter of another one");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void unknownPolicy() {
+    CachePolicy.create("fifo", 10);
+  }
+}
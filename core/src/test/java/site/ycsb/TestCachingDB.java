@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import site.ycsb.measurements.Measurements;
+
+/**
+ * Tests for {@link CachingDB}.
+ */
+public class TestCachingDB {
+
+  @AfterMethod
+  public void clear() {
+    MemoryDB.clear();
+  }
+
+  @Test
+  public void readThrough() throws Exception {
+    final CountingDB backend = new CountingDB();
+    final DB db = newDB(backend, "through");
+    final Measurements measurements = Measurements.getMeasurements();
+    final long hits = measurements.getCount("CACHE", "Hits");
+    final long misses = measurements.getCount("CACHE", "Misses");
+    try {
+      db.insert("t", "k", values("f0", "a", "f1", "b"));
+      assertEquals(db.read("t", "missing", null, new HashMap<String, ByteIterator>()), Status.NOT_FOUND);
+
+      final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      assertEquals(db.read("t", "k", Collections.singleton("f1"), result), Status.OK);
+      assertEquals(result.size(), 1);
+      assertEquals(result.get("f1").toString(), "b");
+
+      // The whole record was cached by the insert, so no read reaches the DB.
+      result.clear();
+      assertEquals(db.read("t", "k", null, result), Status.OK);
+      assertEquals(result.size(), 2);
+      assertEquals(backend.reads, 1);
+      assertEquals(measurements.getCount("CACHE", "Hits"), hits + 2);
+      assertEquals(measurements.getCount("CACHE", "Misses"), misses + 1);
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test
+  public void writeThrough() throws Exception {
+    final CountingDB backend = new CountingDB();
+    final DB db = newDB(backend, "through");
+    try {
+      db.insert("t", "k", values("f0", "a", "f1", "b"));
+      db.update("t", "k", values("f1", "c"));
+      final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      db.read("t", "k", null, result);
+      assertEquals(result.get("f0").toString(), "a");
+      assertEquals(result.get("f1").toString(), "c");
+      assertEquals(backend.reads, 0);
+
+      // The DB got the update too.
+      result.clear();
+      backend.read("t", "k", null, result);
+      assertEquals(result.get("f1").toString(), "c");
+
+      db.delete("t", "k");
+      assertEquals(db.read("t", "k", null, result), Status.NOT_FOUND);
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test
+  public void writeInvalidate() throws Exception {
+    final CountingDB backend = new CountingDB();
+    final DB db = newDB(backend, "invalidate");
+    try {
+      db.insert("t", "k", values("f0", "a"));
+      final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      db.read("t", "k", null, result);
+      db.read("t", "k", null, result);
+      assertEquals(backend.reads, 1);
+
+      db.update("t", "k", values("f0", "b"));
+      result.clear();
+      db.read("t", "k", null, result);
+      assertEquals(result.get("f0").toString(), "b");
+      assertEquals(backend.reads, 2);
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test
+  public void conditionalWritesInvalidate() throws Exception {
+    final CountingDB backend = new CountingDB();
+    final DB db = newDB(backend, "through");
+    try {
+      db.insert("t", "k", values("f0", "a"));
+      assertEquals(db.compareAndSet("t", "k", "f0", new StringByteIterator("a"), new StringByteIterator("b")),
+          Status.OK);
+      final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      db.read("t", "k", null, result);
+      assertEquals(result.get("f0").toString(), "b");
+      assertEquals(backend.reads, 1);
+
+      assertEquals(db.increment("t", "k", "n", 1), Status.OK);
+      result.clear();
+      db.read("t", "k", null, result);
+      assertEquals(result.get("n").toString(), "1");
+      assertEquals(backend.reads, 2);
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test
+  public void writeDuringReadMiss() throws Exception {
+    final CountingDB backend = new CountingDB();
+    final DB db = newDB(backend, "through");
+    try {
+      backend.insert("t", "k", values("f0", "a"));
+      // The update lands after the miss fetched the record, which is now stale.
+      backend.hook = new Runnable() {
+        @Override
+        public void run() {
+          db.update("t", "k", values("f0", "b"));
+        }
+      };
+      final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      db.read("t", "k", null, result);
+      assertEquals(result.get("f0").toString(), "a");
+
+      result.clear();
+      db.read("t", "k", null, result);
+      assertEquals(result.get("f0").toString(), "b");
+      assertEquals(backend.reads, 2);
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test
+  public void overlappingUpdates() throws Exception {
+    final CountingDB backend = new CountingDB();
+    final DB db = newDB(backend, "through");
+    try {
+      db.insert("t", "k", values("f0", "a"));
+      // The DB applies the nested update first, so the outer one must not be cached as the latest.
+      backend.hook = new Runnable() {
+        @Override
+        public void run() {
+          db.update("t", "k", values("f0", "c"));
+        }
+      };
+      db.update("t", "k", values("f0", "b"));
+      final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      db.read("t", "k", null, result);
+      assertEquals(backend.reads, 1);
+
+      db.update("t", "k", values("f0", "d"));
+      result.clear();
+      db.read("t", "k", null, result);
+      assertEquals(result.get("f0").toString(), "d");
+      assertEquals(backend.reads, 1);
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test(expectedExceptions = DBException.class)
+  public void badWritePolicy() throws Exception {
+    newDB(new CountingDB(), "around");
+  }
+
+  private static DB newDB(final DB backend, final String writePolicy) throws DBException {
+    final Properties p = new Properties();
+    p.setProperty(CachingDB.SIZE_PROPERTY, "100");
+    p.setProperty(CachingDB.POLICY_PROPERTY, "tinylfu");
+    p.setProperty(CachingDB.WRITE_POLICY_PROPERTY, writePolicy);
+    Measurements.setProperties(p);
+    final DB db = new CachingDB(backend);
+    db.setProperties(p);
+    db.init();
+    return db;
+  }
+
+  private static Map<String, ByteIterator> values(final String... fieldsAndValues) {
+    final Map<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    for (int i = 0; i < fieldsAndValues.length; i += 2) {
+      values.put(fieldsAndValues[i], new StringByteIterator(fieldsAndValues[i + 1]));
+    }
+    return values;
+  }
+
+  /** Counts the reads that reach the store, and can run a write in the middle of the next read or update. */
+  static class CountingDB extends MemoryDB {
+    private int reads;
+    private Runnable hook;
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      reads++;
+      final Status status = super.read(table, key, fields, result);
+      runHook();
+      return status;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      runHook();
+      return super.update(table, key, values);
+    }
+
+    private void runHook() {
+      final Runnable pending = hook;
+      hook = null;
+      if (pending != null) {
+        pending.run();
+      }
+    }
+  }
+}
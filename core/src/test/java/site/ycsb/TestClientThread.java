@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import site.ycsb.measurements.Measurements;
+
+/**
+ * Tests for {@link ClientThread}.
+ */
+public class TestClientThread {
+
+  @AfterMethod
+  public void stopWarmingUp() {
+    Measurements.getMeasurements().setWarmingUp(false);
+  }
+
+  @Test
+  public void warmUpThenStartTogether() throws Exception {
+    final Properties p = new Properties();
+    Measurements.setProperties(p);
+    Measurements.getMeasurements().setWarmingUp(true);
+    final CountDownLatch done = new CountDownLatch(2);
+    final StartBarrier barrier = new StartBarrier(2);
+    final CountingWorkload workload = new CountingWorkload();
+    final StubDB slow = new StubDB(100);
+    final ClientThread fast = client(new StubDB(0), workload, p, barrier, done);
+    final ClientThread late = client(slow, workload, p, barrier, done);
+
+    new Thread(fast).start();
+    new Thread(late).start();
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+
+    // Both clients did their 3 warm-up transactions plus 5 counted ones.
+    assertEquals(workload.transactions.get(), 16);
+    assertEquals(workload.warmUpTransactions.get(), 6);
+    assertEquals(fast.getOpsDone(), 5);
+    assertEquals(late.getOpsDone(), 5);
+    // No counted transaction ran before the slow client had connected.
+    assertTrue(workload.firstMeasuredNs.get() >= slow.initDoneNs);
+    assertTrue(barrier.getStartTimeMs() > 0);
+    assertFalse(Measurements.getMeasurements().isWarmingUp());
+  }
+
+  @Test
+  public void failedInitDoesNotBlockOthers() throws Exception {
+    final Properties p = new Properties();
+    Measurements.setProperties(p);
+    final CountDownLatch done = new CountDownLatch(1);
+    final StartBarrier barrier = new StartBarrier(2);
+    final CountingWorkload workload = new CountingWorkload();
+    final ClientThread broken = client(new StubDB(-1), workload, p, barrier, new CountDownLatch(1));
+    final ClientThread ok = client(new StubDB(0), workload, p, barrier, done);
+
+    new Thread(broken).start();
+    new Thread(ok).start();
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals(ok.getOpsDone(), 5);
+  }
+
+  private static ClientThread client(final DB db, final Workload workload, final Properties p,
+                                     final StartBarrier barrier, final CountDownLatch done) {
+    final ClientThread client = new ClientThread(db, true, workload, p, 5, 0, done);
+    client.setStartBarrier(barrier);
+    client.setWarmUp(3, 0);
+    return client;
+  }
+
+  /** Counts transactions, and those issued while warming up. */
+  static class CountingWorkload extends Workload {
+    private final AtomicInteger transactions = new AtomicInteger();
+    private final AtomicInteger warmUpTransactions = new AtomicInteger();
+    private final AtomicLong firstMeasuredNs = new AtomicLong(Long.MAX_VALUE);
+
+    @Override
+    public boolean doInsert(DB db, Object threadstate) {
+      return true;
+    }
+
+    @Override
+    public boolean doTransaction(DB db, Object threadstate) {
+      transactions.incrementAndGet();
+      if (Measurements.getMeasurements().isWarmingUp()) {
+        warmUpTransactions.incrementAndGet();
+      } else {
+        final long now = System.nanoTime();
+        firstMeasuredNs.accumulateAndGet(now, Math::min);
+      }
+      return true;
+    }
+  }
+
+  /** A DB whose init takes a while, or fails for a negative delay. */
+  static class StubDB extends DB {
+    private final long initDelayMs;
+    private volatile long initDoneNs;
+
+    StubDB(final long initDelayMs) {
+      this.initDelayMs = initDelayMs;
+    }
+
+    @Override
+    public void init() throws DBException {
+      if (initDelayMs < 0) {
+        throw new DBException("Expected failure");
+      }
+      try {
+        Thread.sleep(initDelayMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      initDoneNs = System.nanoTime();
+    }
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return Status.OK;
+    }
+  }
+}
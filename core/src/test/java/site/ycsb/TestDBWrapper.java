@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.htrace.core.HTraceConfiguration;
+import org.apache.htrace.core.Tracer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import site.ycsb.measurements.Measurements;
+import site.ycsb.measurements.exporter.TextMeasurementsExporter;
+
+/**
+ * Tests for {@link DBWrapper}.
+ */
+public class TestDBWrapper {
+
+  @AfterMethod
+  public void clear() {
+    MemoryDB.clear();
+  }
+
+  @Test
+  public void deadlineCapsLatency() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(DBWrapper.OPERATION_DEADLINE_PROPERTY, "10");
+    p.setProperty("reportlatencyforeacherror", "true");
+    p.setProperty("fault.delete.latency", "constant:50000");
+    final DB db = newDB(new FaultInjectingDB(new MemoryDB()), p);
+    db.insert("t", "k", Collections.<String, ByteIterator>singletonMap("f0", new StringByteIterator("v")));
+    assertEquals(db.read("t", "k", null, new HashMap<String, ByteIterator>()), Status.OK);
+    final long start = System.nanoTime();
+    assertEquals(db.delete("t", "k"), Status.TIMEOUT);
+    assertTrue(System.nanoTime() - start < 40_000_000L, "the client waited for the stuck delete");
+    // The next operation runs on a new instance instead of queueing behind the stuck one.
+    assertEquals(db.read("t", "k", null, new HashMap<String, ByteIterator>()), Status.OK);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (TextMeasurementsExporter exporter = new TextMeasurementsExporter(out)) {
+      Measurements.getMeasurements().exportMeasurements(exporter);
+    }
+    final String report = out.toString("UTF-8");
+    assertTrue(report.contains("[DELETE-TIMEOUT], Operations, 1"), report);
+    final String max = report.split("\\[DELETE-TIMEOUT\\], MaxLatency\\(us\\), ")[1].split("\\s")[0];
+    assertTrue(Double.parseDouble(max) <= 10100, max);
+  }
+
+  @Test
+  public void stuckClientsAreReported() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(DBWrapper.OPERATION_DEADLINE_PROPERTY, "1");
+    BlockingDB.release = new CountDownLatch(1);
+    final DBWrapper db = newDB(new BlockingDB(), p);
+    final CountDownLatch done = new CountDownLatch(1);
+    final ClientThread client = new ClientThread(db, true, null, p, 1, 0, done);
+    final StatusThread status = new StatusThread(done, Collections.singletonList(client), "", false, 1);
+    status.setStuckThreadFactor(5);
+    assertEquals(status.getStuckClientSummary(), "");
+
+    try {
+      // The client gives up at the deadline, but the abandoned read is still running.
+      assertEquals(db.read("t", "k", null, new HashMap<String, ByteIterator>()), Status.TIMEOUT);
+      Thread.sleep(10);
+      assertTrue(status.getStuckClientSummary().startsWith(" [STUCK: Threads=1, Longest=client 0 in READ for "),
+          status.getStuckClientSummary());
+    } finally {
+      BlockingDB.release.countDown();
+    }
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (!status.getStuckClientSummary().isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(status.getStuckClientSummary(), "");
+  }
+
+  /**
+   * A MemoryDB whose reads block until released. A nested class, so it can be replicated.
+   */
+  public static class BlockingDB extends MemoryDB {
+    private static volatile CountDownLatch release;
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return Status.OK;
+    }
+  }
+
+  private static DBWrapper newDB(final DB inner, final Properties p) throws DBException {
+    Measurements.setProperties(p);
+    inner.setProperties(p);
+    final Tracer tracer = new Tracer.Builder("test")
+        .conf(HTraceConfiguration.fromMap(Collections.<String, String>emptyMap())).build();
+    final DBWrapper db = new DBWrapper(inner, tracer);
+    db.init();
+    return db;
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.htrace.core.HTraceConfiguration;
+import org.apache.htrace.core.Tracer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import site.ycsb.measurements.Measurements;
+
+/**
+ * Tests for {@link FaultInjectingDB}.
+ */
+public class TestFaultInjectingDB {
+
+  @AfterMethod
+  public void clear() {
+    MemoryDB.clear();
+  }
+
+  @Test
+  public void errorsPerOperation() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("fault.read.errorprobability", "1");
+    p.setProperty("fault.read.errorstatus", "SERVICE_UNAVAILABLE");
+    final DB db = newDB(p);
+    assertEquals(db.insert("t", "k", values()), Status.OK);
+    assertEquals(db.read("t", "k", null, new HashMap<String, ByteIterator>()), Status.SERVICE_UNAVAILABLE);
+    assertEquals(db.update("t", "k", values()), Status.OK);
+  }
+
+  @Test
+  public void keyRange() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(FaultInjectingDB.KEY_MIN_PROPERTY, "user2");
+    p.setProperty(FaultInjectingDB.KEY_MAX_PROPERTY, "user4");
+    p.setProperty("fault.errorprobability", "1");
+    final DB db = newDB(p);
+    assertEquals(db.insert("t", "user1", values()), Status.OK);
+    assertEquals(db.insert("t", "user2", values()), Status.ERROR);
+    assertEquals(db.insert("t", "user3", values()), Status.ERROR);
+    assertEquals(db.insert("t", "user4", values()), Status.OK);
+  }
+
+  @Test
+  public void keyRangePerOperation() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(FaultInjectingDB.KEY_MIN_PROPERTY, "user2");
+    p.setProperty("fault.read.keymin", "user3");
+    p.setProperty("fault.errorprobability", "1");
+    final DB db = newDB(p);
+    assertEquals(db.insert("t", "user2", values()), Status.ERROR);
+    assertEquals(db.read("t", "user2", null, new HashMap<String, ByteIterator>()), Status.NOT_FOUND);
+    assertEquals(db.read("t", "user3", null, new HashMap<String, ByteIterator>()), Status.ERROR);
+  }
+
+  @Test
+  public void latencyAndTimeouts() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("fault.insert.latency", "constant:20000");
+    p.setProperty("fault.delete.timeoutprobability", "1");
+    p.setProperty("fault.delete.timeout", "30");
+    final DB db = newDB(p);
+
+    long start = System.nanoTime();
+    assertEquals(db.insert("t", "k", values()), Status.OK);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+
+    start = System.nanoTime();
+    assertEquals(db.delete("t", "k"), Status.TIMEOUT);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+    assertEquals(db.read("t", "k", null, new HashMap<String, ByteIterator>()), Status.OK);
+  }
+
+  @Test
+  public void stalls() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(FaultInjectingDB.STALL_INTERVAL_PROPERTY, "100");
+    p.setProperty(FaultInjectingDB.STALL_DURATION_PROPERTY, "99");
+    final DB db = newDB(p);
+    final long start = System.nanoTime();
+    for (int i = 0; i < 3; i++) {
+      db.read("t", "k", null, new HashMap<String, ByteIterator>());
+    }
+    // Nearly all the time is a stall, so at least one read has to wait.
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  @Test
+  public void interruptEndsFaultAndStaysSet() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("fault.read.timeoutprobability", "1");
+    p.setProperty("fault.read.timeout", "60000");
+    final DB db = newDB(p);
+    Thread.currentThread().interrupt();
+    assertEquals(db.read("t", "k", null, new HashMap<String, ByteIterator>()), Status.TIMEOUT);
+    assertTrue(Thread.interrupted());
+  }
+
+  @Test(expectedExceptions = DBException.class)
+  public void badLatency() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("fault.latency", "gaussian:5");
+    newDB(p);
+  }
+
+  @Test
+  public void factoryAppliesDecorators() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(DBFactory.DECORATORS_PROPERTY, "fault");
+    p.setProperty("fault.errorprobability", "1");
+    Measurements.setProperties(p);
+    final Tracer tracer = new Tracer.Builder("test")
+        .conf(HTraceConfiguration.fromMap(Collections.<String, String>emptyMap())).build();
+    final DB db = DBFactory.newDB(MemoryDB.class.getName(), p, tracer);
+    assertTrue(db instanceof DBWrapper);
+    db.init();
+    assertEquals(db.insert("t", "k", values()), Status.ERROR);
+  }
+
+  @Test(expectedExceptions = UnknownDBException.class)
+  public void factoryRejectsUnknownDecorators() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(DBFactory.DECORATORS_PROPERTY, "nosuchdecorator");
+    DBFactory.newDB(MemoryDB.class.getName(), p, null);
+  }
+
+  private static DB newDB(final Properties p) throws DBException {
+    final DB db = new FaultInjectingDB(new MemoryDB());
+    db.setProperties(p);
+    db.init();
+    return db;
+  }
+
+  private static Map<String, ByteIterator> values() {
+    final Map<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("f0", new StringByteIterator("value"));
+    return values;
+  }
+}
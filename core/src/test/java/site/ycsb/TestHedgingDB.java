@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import site.ycsb.measurements.Measurements;
+import site.ycsb.measurements.exporter.TextMeasurementsExporter;
+
+/**
+ * Tests for {@link HedgingDB}.
+ */
+public class TestHedgingDB {
+
+  @BeforeMethod
+  public void reset() {
+    SlowDB.READS.set(0);
+    SlowDB.slowEvery = 0;
+    SlowDB.failFirst = false;
+    SlowDB.failFirstSlowly = false;
+  }
+
+  @AfterMethod
+  public void clear() {
+    MemoryDB.clear();
+  }
+
+  @Test
+  public void hedgeBeatsSlowRead() throws Exception {
+    // Every other read stalls, so the hedge of a stalled read comes back first.
+    SlowDB.slowEvery = 2;
+    final DB db = newDB("1000", "0", "1");
+    try {
+      db.insert("t", "k", values());
+      for (int i = 0; i < 5; i++) {
+        final long start = System.nanoTime();
+        final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+        assertEquals(db.read("t", "k", null, result), Status.OK);
+        assertEquals(result.get("f0").toString(), "value");
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(150));
+      }
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test
+  public void budgetLimitsHedges() throws Exception {
+    SlowDB.slowEvery = 1;
+    final DB db = newDB("100", "0", "0");
+    try {
+      db.insert("t", "k", values());
+      for (int i = 0; i < 12; i++) {
+        db.read("t", "k", null, new HashMap<String, ByteIterator>());
+        // Let the read that lost return, as it counts against the budget until then.
+        Thread.sleep(10);
+      }
+      // 12 reads plus the 10 hedges the empty budget starts out with.
+      assertEquals(SlowDB.READS.get(), 22);
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test
+  public void hedgeWinsAreReported() throws Exception {
+    SlowDB.slowEvery = 2;
+    final Measurements measurements = Measurements.getMeasurements();
+    final DB db = newDB("1000", "0", "1");
+    try {
+      db.insert("t", "k", values());
+      final long hedges = measurements.getCount("HEDGE", "Hedges");
+      final long wins = measurements.getCount("HEDGE", "HedgeWins");
+      final long reads = measurements.getCount("HEDGE", "Reads");
+      final long savedBefore = savedCount(report());
+      assertEquals(db.read("t", "k", null, new HashMap<String, ByteIterator>()), Status.OK);
+      assertEquals(measurements.getCount("HEDGE", "Hedges"), hedges + 1);
+      assertEquals(measurements.getCount("HEDGE", "HedgeWins"), wins + 1);
+      assertEquals(measurements.getCount("HEDGE", "Reads"), reads + 1);
+
+      // The time saved is known once the stalled read returns.
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      String report = report();
+      while (savedCount(report) == savedBefore && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+        report = report();
+      }
+      assertTrue(report.contains("[HEDGE], HedgeRate, "), report);
+      final String saved = report.split("\\[READ-HEDGE-SAVED\\], MaxLatency\\(us\\), ")[1].split("\\s")[0];
+      assertTrue(Double.parseDouble(saved) >= 400000, saved);
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test
+  public void retriesFailedReads() throws Exception {
+    SlowDB.failFirst = true;
+    DB db = newDB("1000000", "1", "1");
+    try {
+      db.insert("t", "k", values());
+      assertEquals(db.read("t", "k", null, new HashMap<String, ByteIterator>()), Status.OK);
+      assertEquals(SlowDB.READS.get(), 2);
+    } finally {
+      db.cleanup();
+    }
+
+    SlowDB.READS.set(0);
+    db = newDB("1000000", "0", "1");
+    try {
+      assertEquals(db.read("t", "k", null, new HashMap<String, ByteIterator>()), Status.ERROR);
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test
+  public void otherReadOutlivesFailure() throws Exception {
+    // The primary fails after the hedge went out, and the slower hedge succeeds.
+    SlowDB.failFirstSlowly = true;
+    final DB db = newDB("1000", "0", "1");
+    try {
+      db.insert("t", "k", values());
+      final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      assertEquals(db.read("t", "k", null, result), Status.OK);
+      assertEquals(result.get("f0").toString(), "value");
+      assertEquals(SlowDB.READS.get(), 2);
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  @Test(expectedExceptions = DBException.class)
+  public void badDelay() throws Exception {
+    newDB("soon", "0", "1");
+  }
+
+  private static DB newDB(final String delay, final String retries, final String budget) throws DBException {
+    final Properties p = new Properties();
+    p.setProperty(HedgingDB.DELAY_PROPERTY, delay);
+    p.setProperty(HedgingDB.RETRIES_PROPERTY, retries);
+    p.setProperty(HedgingDB.BUDGET_PROPERTY, budget);
+    Measurements.setProperties(p);
+    final DB db = new HedgingDB(new SlowDB());
+    db.setProperties(p);
+    db.init();
+    return db;
+  }
+
+  private static long savedCount(final String report) {
+    final String[] parts = report.split("\\[READ-HEDGE-SAVED\\], Operations, ");
+    return parts.length < 2 ? 0 : Long.parseLong(parts[1].split("\\s")[0]);
+  }
+
+  private static String report() throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (TextMeasurementsExporter exporter = new TextMeasurementsExporter(out)) {
+      Measurements.getMeasurements().exportMeasurements(exporter);
+    }
+    return out.toString("UTF-8");
+  }
+
+  private static Map<String, ByteIterator> values() {
+    final Map<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("f0", new StringByteIterator("value"));
+    return values;
+  }
+
+  /** A store whose reads can be made slow or fail. */
+  public static class SlowDB extends MemoryDB {
+    static final AtomicInteger READS = new AtomicInteger();
+    static volatile int slowEvery;
+    static volatile boolean failFirst;
+    static volatile boolean failFirstSlowly;
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      final int read = READS.incrementAndGet();
+      if (failFirst && read == 1) {
+        return Status.ERROR;
+      }
+      if (failFirstSlowly) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(read == 1 ? 20 : 60));
+        return read == 1 ? Status.ERROR : super.read(table, key, fields, result);
+      }
+      if (slowEvery > 0 && read % slowEvery == 1 % slowEvery) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(slowEvery == 1 ? 5 : 500));
+      }
+      return super.read(table, key, fields, result);
+    }
+  }
+}
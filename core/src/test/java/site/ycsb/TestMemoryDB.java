@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import site.ycsb.measurements.Measurements;
+import site.ycsb.measurements.exporter.TextMeasurementsExporter;
+import site.ycsb.workloads.CoreWorkload;
+
+/**
+ * Tests for {@link MemoryDB}.
+ */
+public class TestMemoryDB {
+
+  @AfterMethod
+  public void clear() {
+    MemoryDB.clear();
+  }
+
+  @Test
+  public void crud() throws Exception {
+    final MemoryDB db = newDB(new Properties());
+    assertEquals(db.read("t", "k", null, new HashMap<String, ByteIterator>()), Status.NOT_FOUND);
+    assertEquals(db.update("t", "k", values("f0", "a")), Status.NOT_FOUND);
+
+    final Map<String, ByteIterator> values = values("f0", "a");
+    values.put("f1", new StringByteIterator("bb"));
+    assertEquals(db.insert("t", "k", values), Status.OK);
+    assertEquals(db.update("t", "k", values("f1", "cc")), Status.OK);
+    assertEquals(db.update("t", "k", values("f2", "ddd")), Status.OK);
+
+    final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(db.read("t", "k", null, result), Status.OK);
+    assertEquals(result.size(), 3);
+    assertEquals(result.get("f0").toString(), "a");
+    assertEquals(result.get("f1").toString(), "cc");
+    assertEquals(result.get("f2").toString(), "ddd");
+
+    result.clear();
+    assertEquals(db.read("t", "k", Collections.singleton("f1"), result), Status.OK);
+    assertEquals(result.size(), 1);
+    assertEquals(result.get("f1").toString(), "cc");
+
+    assertEquals(db.delete("t", "k"), Status.OK);
+    assertEquals(db.delete("t", "k"), Status.NOT_FOUND);
+    assertEquals(db.read("t", "k", null, result), Status.NOT_FOUND);
+  }
+
+  @Test
+  public void valuesAreCopied() throws Exception {
+    final MemoryDB db = newDB(new Properties());
+    final byte[] bytes = "abc".getBytes();
+    final Map<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("f0", new ByteArrayByteIterator(bytes));
+    db.insert("t", "k", values);
+    bytes[0] = 'z';
+
+    final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    db.read("t", "k", null, result);
+    assertEquals(result.get("f0").toString(), "abc");
+  }
+
+  @Test
+  public void scanMergesShardsInKeyOrder() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(MemoryDB.SHARDS_PROPERTY, "4");
+    p.setProperty(MemoryDB.OFF_HEAP_PROPERTY, "true");
+    final MemoryDB db = newDB(p);
+    for (int i = 0; i < 100; i++) {
+      db.insert("t", String.format("user%03d", i), values("f0", Integer.toString(i)));
+    }
+
+    final Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+    assertEquals(db.scan("t", "user050", 10, null, result), Status.OK);
+    assertEquals(result.size(), 10);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(result.get(i).get("f0").toString(), Integer.toString(50 + i));
+    }
+
+    result.clear();
+    assertEquals(db.scan("t", "user095", 10, null, result), Status.OK);
+    assertEquals(result.size(), 5);
+  }
+
+  @Test
+  public void offHeapUpdatesUnderContention() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(MemoryDB.OFF_HEAP_PROPERTY, "true");
+    final MemoryDB db = newDB(p);
+    db.insert("t", "k", values("f0", "abc"));
+    final Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final String field = "f" + (t + 1);
+      threads[t] = new Thread(() -> {
+          for (int i = 0; i < 500; i++) {
+            db.increment("t", "k", "counter", 1);
+            db.update("t", "k", values(field, Integer.toString(i)));
+          }
+        });
+      threads[t].start();
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+
+    final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(db.read("t", "k", null, result), Status.OK);
+    assertEquals(result.get("counter").toString(), "2000");
+    assertEquals(result.get("f0").toString(), "abc");
+    for (int t = 1; t <= threads.length; t++) {
+      assertEquals(result.get("f" + t).toString(), "499");
+    }
+  }
+
+  @Test
+  public void snapshot() throws Exception {
+    final File file = File.createTempFile("memorydb", ".snapshot");
+    file.delete();
+    try {
+      final Properties p = new Properties();
+      p.setProperty(MemoryDB.SNAPSHOT_PROPERTY, file.getPath());
+      MemoryDB db = newDB(p);
+      db.insert("t", "k", values("f0", "abc"));
+      db.cleanup();
+      assertTrue(file.exists());
+
+      MemoryDB.clear();
+      p.setProperty(MemoryDB.OFF_HEAP_PROPERTY, "true");
+      db = newDB(p);
+      final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      assertEquals(db.read("t", "k", null, result), Status.OK);
+      assertEquals(result.get("f0").toString(), "abc");
+      db.cleanup();
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void dataIntegrity() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "50");
+    p.setProperty(CoreWorkload.DATA_INTEGRITY_PROPERTY, "true");
+    p.setProperty(CoreWorkload.FIELD_LENGTH_DISTRIBUTION_PROPERTY, "constant");
+    p.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "0.5");
+    p.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0.5");
+    Measurements.setProperties(p);
+    final CoreWorkload workload = new CoreWorkload();
+    workload.init(p);
+    final MemoryDB db = newDB(p);
+    final Object state = workload.initThread(p, 0, 1);
+    for (int i = 0; i < 50; i++) {
+      assertTrue(workload.doInsert(db, state));
+    }
+    for (int i = 0; i < 500; i++) {
+      assertTrue(workload.doTransaction(db, state));
+    }
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (TextMeasurementsExporter exporter = new TextMeasurementsExporter(out)) {
+      Measurements.getMeasurements().exportMeasurements(exporter);
+    }
+    final String report = out.toString("UTF-8");
+    assertTrue(report.contains("[VERIFY], Return=OK"));
+    assertFalse(report.contains("[VERIFY], Return=UNEXPECTED_STATE"));
+  }
+
+  @Test
+  public void compareAndSetAndIncrement() throws Exception {
+    final MemoryDB db = newDB(new Properties());
+    assertEquals(db.compareAndSet("t", "k", "f0", new StringByteIterator("a"), new StringByteIterator("b")),
+        Status.NOT_FOUND);
+    assertEquals(db.increment("t", "k", "n", 1), Status.NOT_FOUND);
+
+    db.insert("t", "k", values("f0", "a"));
+    assertEquals(db.compareAndSet("t", "k", "f0", new StringByteIterator("x"), new StringByteIterator("b")),
+        Status.CONFLICT);
+    assertEquals(db.compareAndSet("t", "k", "f1", new StringByteIterator("a"), new StringByteIterator("b")),
+        Status.CONFLICT);
+    assertEquals(db.compareAndSet("t", "k", "f0", new StringByteIterator("a"), new StringByteIterator("b")),
+        Status.OK);
+    assertEquals(db.increment("t", "k", "n", 5), Status.OK);
+    assertEquals(db.increment("t", "k", "n", -2), Status.OK);
+    assertEquals(db.increment("t", "k", "f0", 1), Status.BAD_REQUEST);
+
+    final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(db.read("t", "k", null, result), Status.OK);
+    assertEquals(result.get("f0").toString(), "b");
+    assertEquals(result.get("n").toString(), "3");
+  }
+
+  @Test
+  public void contendedIncrements() throws Exception {
+    final Properties p = contentionProperties(CoreWorkload.INCREMENT_PROPORTION_PROPERTY, "2");
+    final CoreWorkload workload = loadedWorkload(p);
+    final MemoryDB db = newDB(p);
+    runThreads(workload, p, db, 4, 500);
+
+    for (int i = 0; i < 2; i++) {
+      final Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      db.read(p.getProperty(CoreWorkload.TABLENAME_PROPERTY, CoreWorkload.TABLENAME_PROPERTY_DEFAULT),
+          "user" + i, null, result);
+      assertEquals(result.get(CoreWorkload.INCREMENT_FIELD_PROPERTY_DEFAULT).toString(), "1000");
+    }
+  }
+
+  @Test
+  public void contendedCompareAndSet() throws Exception {
+    final Properties p = contentionProperties(CoreWorkload.COMPARE_AND_SET_PROPORTION_PROPERTY, "4");
+    final CoreWorkload workload = loadedWorkload(p);
+    final AtomicInteger applied = new AtomicInteger();
+    final AtomicInteger conflicts = new AtomicInteger();
+    final DB db = new DBDecorator(newDB(p)) {
+      @Override
+      public Status compareAndSet(String table, String key, String field, ByteIterator expected,
+                                  ByteIterator value) {
+        assertEquals(key, "user0");
+        final Status status = super.compareAndSet(table, key, field, expected, value);
+        (status == Status.OK ? applied : conflicts).incrementAndGet();
+        return status;
+      }
+    };
+    runThreads(workload, p, db, 4, 500);
+
+    assertEquals(applied.get() + conflicts.get(), 2000);
+    assertTrue(applied.get() >= 500);
+  }
+
+  private static Properties contentionProperties(final String operation, final String threads) {
+    final Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "10");
+    p.setProperty(CoreWorkload.INSERT_ORDER_PROPERTY, "ordered");
+    p.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "0");
+    p.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    p.setProperty(operation, "1");
+    p.setProperty(CoreWorkload.CONTENTION_THREADS_PROPERTY, threads);
+    return p;
+  }
+
+  private static CoreWorkload loadedWorkload(final Properties p) throws Exception {
+    Measurements.setProperties(p);
+    final CoreWorkload workload = new CoreWorkload();
+    workload.init(p);
+    final MemoryDB db = newDB(p);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(workload.doInsert(db, null));
+    }
+    return workload;
+  }
+
+  private static void runThreads(final CoreWorkload workload, final Properties p, final DB db,
+                                 final int threadcount, final int operations) throws Exception {
+    final Thread[] threads = new Thread[threadcount];
+    for (int t = 0; t < threadcount; t++) {
+      final int threadid = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            final Object state = workload.initThread(p, threadid, threadcount);
+            for (int i = 0; i < operations; i++) {
+              workload.doTransaction(db, state);
+            }
+          } catch (WorkloadException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+  }
+
+  private static MemoryDB newDB(final Properties p) throws DBException {
+    final MemoryDB db = new MemoryDB();
+    db.setProperties(p);
+    db.init();
+    return db;
+  }
+
+  private static Map<String, ByteIterator> values(final String field, final String value) {
+    final Map<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put(field, new StringByteIterator(value));
+    return values;
+  }
+}
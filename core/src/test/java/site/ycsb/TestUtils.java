@@ -24,6 +24,10 @@ import java.util.Arrays;
 
 import org.testng.annotations.Test;
 
+import site.ycsb.generator.NumberGenerator;
+import site.ycsb.generator.UniformLongGenerator;
+import site.ycsb.generator.ZipfianGenerator;
+
 public class TestUtils {
 
   @Test
@@ -116,6 +120,39 @@ public class TestUtils {
     assertTrue(Utils.getGCStatst().size() >= 0);
   }
    
+  @Test
+  public void seededRandomStreams() throws Exception {
+    try {
+      Utils.setRandomSeed(42L);
+      Utils.setRandomStream(1);
+      final String first = draw();
+      Utils.setRandomStream(1);
+      assertEquals(draw(), first);
+      Utils.setRandomStream(2);
+      assertTrue(!draw().equals(first));
+
+      Utils.setRandomSeed(43L);
+      Utils.setRandomStream(1);
+      assertTrue(!draw().equals(first));
+    } finally {
+      Utils.setRandomSeed(null);
+    }
+    assertTrue(Utils.random() instanceof java.util.concurrent.ThreadLocalRandom);
+  }
+
+  /**
+   * @return Values drawn from every kind of random source.
+   */
+  private static String draw() {
+    final StringBuilder sb = new StringBuilder();
+    final NumberGenerator zipfian = new ZipfianGenerator(1000);
+    final NumberGenerator uniform = new UniformLongGenerator(0, 1000);
+    for (int i = 0; i < 20; i++) {
+      sb.append(zipfian.nextValue()).append(',').append(uniform.nextValue()).append(',');
+    }
+    return sb.append(new RandomByteIterator(100).toString()).toString();
+  }
+
   /**
    * Since this version of TestNG doesn't appear to have an assertArrayEquals,
    * this will compare the two to make sure they're the same. 
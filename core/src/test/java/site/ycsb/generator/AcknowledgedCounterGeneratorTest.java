@@ -16,9 +16,17 @@
  */
 package site.ycsb.generator;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.testng.annotations.Test;
 
@@ -32,7 +40,7 @@ public class AcknowledgedCounterGeneratorTest {
    */
   @Test
   public void testIncrementPastIntegerMaxValue() {
-    final long toTry = AcknowledgedCounterGenerator.WINDOW_SIZE * 3;
+    final long toTry = AcknowledgedCounterGenerator.SEGMENT_SIZE * 48;
 
     AcknowledgedCounterGenerator generator =
         new AcknowledgedCounterGenerator(Integer.MAX_VALUE - 1000);
@@ -58,4 +66,87 @@ public class AcknowledgedCounterGeneratorTest {
     }
 
   }
+
+  /**
+   * Test that one value left unacknowledged while many more are generated
+   * holds the limit back without failing.
+   */
+  @Test
+  public void testLongTail() {
+    final AcknowledgedCounterGenerator generator = new AcknowledgedCounterGenerator(0);
+    final long straggler = generator.nextValue();
+    long value = 0;
+    for (int i = 0; i < AcknowledgedCounterGenerator.SEGMENT_SIZE * 20; ++i) {
+      value = generator.nextValue();
+      generator.acknowledge(value);
+    }
+    assertEquals(generator.lastValue().longValue(), straggler - 1);
+    generator.acknowledge(straggler);
+    assertEquals(generator.lastValue().longValue(), value);
+  }
+
+  /**
+   * Test that concurrent acknowledgements out of order never move the limit
+   * past an unacknowledged value and end at the last value generated.
+   */
+  @Test
+  public void testConcurrentAcknowledge() throws Exception {
+    final int threads = 8;
+    final int perThread = 200000;
+    final AcknowledgedCounterGenerator generator = new AcknowledgedCounterGenerator(0);
+    final AtomicIntegerArray acked = new AtomicIntegerArray(threads * perThread);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    final List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; ++t) {
+      workers.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final long[] pending = new long[64];
+            int held = 0;
+            for (int i = 0; i < perThread; ++i) {
+              pending[held++] = generator.nextValue();
+              // Acknowledge a random pending value, sometimes holding many back.
+              if (held == pending.length || random.nextInt(4) == 0) {
+                final int pick = random.nextInt(held);
+                acknowledge(pending[pick]);
+                pending[pick] = pending[--held];
+              }
+            }
+            while (held > 0) {
+              acknowledge(pending[--held]);
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+
+        private void acknowledge(final long value) {
+          acked.set((int) value, 1);
+          generator.acknowledge(value);
+        }
+      }));
+    }
+    for (Thread worker : workers) {
+      worker.start();
+    }
+
+    long checked = -1;
+    boolean running = true;
+    while (running) {
+      running = false;
+      for (Thread worker : workers) {
+        running |= worker.isAlive();
+      }
+      final long limit = generator.lastValue();
+      for (; checked < limit; ++checked) {
+        assertEquals(acked.get((int) checked + 1), 1, "limit " + limit + " passed an unacknowledged value");
+      }
+    }
+
+    assertTrue(failure.get() == null, String.valueOf(failure.get()));
+    assertEquals(generator.lastValue().longValue(), threads * perThread - 1);
+  }
 }
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.generator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+public class TestAliasGenerator {
+
+  @Test
+  public void choosesInProportion() {
+    final double[] weights = {0.5, 0.0, 0.3, 0.15, 0.05};
+    final AliasGenerator<String> generator =
+        new AliasGenerator<>(Arrays.asList("A", "B", "C", "D", "E"), weights);
+    final int samples = 1000000;
+    final int[] counts = new int[weights.length];
+    for (int i = 0; i < samples; i++) {
+      counts[generator.nextIndex()]++;
+    }
+    assertEquals(counts[1], 0);
+    for (int i = 0; i < weights.length; i++) {
+      assertEquals(counts[i] / (double) samples, weights[i], 0.005);
+    }
+    assertTrue(Arrays.asList("A", "C", "D", "E").contains(generator.nextValue()));
+  }
+
+  @Test
+  public void unnormalizedWeights() {
+    final AliasGenerator<String> generator = new AliasGenerator<>(Arrays.asList("A", "B"), new double[] {3, 1});
+    int a = 0;
+    for (int i = 0; i < 100000; i++) {
+      if (generator.nextValue().equals("A")) {
+        a++;
+      }
+    }
+    assertEquals(a / 100000.0, 0.75, 0.01);
+  }
+
+  @Test (expectedExceptions = IllegalArgumentException.class)
+  public void allWeightsZero() {
+    new AliasGenerator<>(Arrays.asList("A", "B"), new double[] {0, 0});
+  }
+
+  @Test (expectedExceptions = IllegalArgumentException.class)
+  public void negativeWeight() {
+    new AliasGenerator<>(Arrays.asList("A", "B"), new double[] {1, -1});
+  }
+
+  @Test (expectedExceptions = IllegalArgumentException.class)
+  public void weightCountMismatch() {
+    new AliasGenerator<>(Arrays.asList("A", "B"), new double[] {1});
+  }
+}
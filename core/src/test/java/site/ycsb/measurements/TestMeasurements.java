@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.measurements;
+
+import site.ycsb.Status;
+import site.ycsb.measurements.exporter.TextMeasurementsExporter;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link Measurements}.
+ */
+public class TestMeasurements {
+
+  @Test
+  public void testBytesNotTrackedByDefault() {
+    Measurements mm = new Measurements(new Properties());
+    mm.measureBytes("READ", 100, 0);
+    assertEquals(mm.getTotalBytesRead(), 0);
+    assertEquals(mm.getSummary().trim(), "");
+  }
+
+  @Test
+  public void testTrackBytes() throws IOException {
+    Properties props = new Properties();
+    props.put(Measurements.MEASUREMENT_TRACK_BYTES_PROPERTY, "true");
+    Measurements mm = new Measurements(props);
+    mm.measureBytes("READ", 100, 0);
+    mm.measureBytes("READ", 50, 0);
+    mm.measureBytes("INSERT", 0, 1000);
+    assertEquals(mm.getTotalBytesRead(), 150);
+    assertEquals(mm.getTotalBytesWritten(), 1000);
+
+    String summary = mm.getSummary();
+    assertTrue(summary.contains("[READ-BYTES: Read=150, Written=0]"));
+    assertTrue(summary.contains("[INSERT-BYTES: Read=0, Written=1000]"));
+    // The window is drained by the status report but the totals are kept.
+    assertEquals(mm.getSummary().trim(), "");
+    assertEquals(mm.getTotalBytesRead(), 150);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextMeasurementsExporter export = new TextMeasurementsExporter(out);
+    mm.exportMeasurements(export);
+    export.close();
+    String text = out.toString("UTF-8");
+    assertTrue(text.contains("[READ], BytesRead, 150"));
+    assertTrue(text.contains("[INSERT], BytesWritten, 1000"));
+  }
+
+  @Test
+  public void testAllIntervalsRecordsThreeMeasurements() throws IOException {
+    Properties props = new Properties();
+    props.put(Measurements.MEASUREMENT_INTERVAL, "all");
+    Measurements mm = new Measurements(props);
+    // Intended to start at 1ms, started at 3ms and completed 1.5us later.
+    mm.measure("READ", 1000000L, 3000000L, 3001500L);
+
+    String text = export(mm);
+    assertTrue(text.contains("[READ], MaxLatency(us), 1.5"));
+    assertTrue(text.contains("[Intended-READ], Operations, 1"));
+    assertTrue(text.contains("[Queue-READ], Operations, 1"));
+  }
+
+  @Test
+  public void testLatenciesBeyondIntRange() throws IOException {
+    // One hour is well beyond Integer.MAX_VALUE microseconds once in nanos.
+    long hourNs = 3600L * 1000 * 1000 * 1000;
+    for (String type : new String[]{"hdrhistogram", "histogram", "timeseries", "raw"}) {
+      Properties props = new Properties();
+      props.put(Measurements.MEASUREMENT_TYPE_PROPERTY, type);
+      props.put(Measurements.MEASUREMENT_INTERVAL, "op");
+      Measurements mm = new Measurements(props);
+      mm.measureNanos("UPDATE", hourNs);
+      mm.measureNanos("UPDATE", 500);
+      String text = export(mm);
+      assertTrue(text.contains(", 3.6"), type + ": " + text);
+      assertTrue(text.contains("0.5"), type + ": " + text);
+    }
+  }
+
+  @Test
+  public void testFailureBurst() throws IOException {
+    Measurements mm = new Measurements(new Properties());
+    for (int i = 0; i < 98; i++) {
+      mm.reportStatus("READ", Status.OK);
+    }
+    mm.reportStatus("READ", Status.ERROR);
+    mm.reportStatus("READ", Status.ERROR);
+    String summary = mm.getSummary();
+    assertTrue(summary.contains("[READ-STATUS: ERROR=2, ErrorRate(%)=2] [READ-FAILURE-BURST]"), summary);
+
+    // Only the errors of the current interval are reported.
+    for (int i = 0; i < 1000; i++) {
+      mm.reportStatus("READ", Status.OK);
+    }
+    mm.reportStatus("READ", Status.ERROR);
+    summary = mm.getSummary();
+    assertTrue(summary.contains("[READ-STATUS: ERROR=1, ErrorRate(%)=0.1]"), summary);
+    assertFalse(summary.contains("FAILURE-BURST"), summary);
+
+    String text = export(mm);
+    assertTrue(text.contains("[READ], Return=ERROR, 3"), text);
+    assertTrue(text.contains("[READ], FailureBursts, 1"), text);
+  }
+
+  private static String export(Measurements mm) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextMeasurementsExporter export = new TextMeasurementsExporter(out);
+    mm.exportMeasurements(export);
+    export.close();
+    return out.toString("UTF-8");
+  }
+}
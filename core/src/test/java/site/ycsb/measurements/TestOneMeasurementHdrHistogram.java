@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.measurements;
+
+import org.testng.annotations.Test;
+
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link OneMeasurementHdrHistogram}.
+ */
+public class TestOneMeasurementHdrHistogram {
+
+  @Test
+  public void testDefaultSummary() {
+    OneMeasurementHdrHistogram m = new OneMeasurementHdrHistogram("READ", new Properties());
+    // Values below 2048ns are recorded exactly with three significant digits.
+    m.measureNanos(1000);
+    m.measureNanos(1500);
+    m.measureNanos(2000);
+    m.measureNanos(15);
+    assertEquals(m.getSummary(),
+        "[READ: Count=4, Max=2, Min=0.02, Avg=1.13, 90=2, 99=2, 99.9=2, 99.99=2]");
+  }
+
+  @Test
+  public void testStatusPercentilesAndWindows() {
+    Properties props = new Properties();
+    props.put(OneMeasurementHdrHistogram.STATUS_PERCENTILES_PROPERTY, "50,99.5");
+    props.put(OneMeasurementHdrHistogram.STATUS_WINDOWS_PROPERTY, "10,60");
+    OneMeasurementHdrHistogram m = new OneMeasurementHdrHistogram("UPDATE", props);
+    m.measureNanos(1000);
+    assertEquals(m.getSummary(), "[UPDATE: Count=1, Max=1, Min=1, Avg=1, 50=1, 99.5=1]"
+        + " [UPDATE 10s: Count=1, Max=1, Min=1, Avg=1, 50=1, 99.5=1]"
+        + " [UPDATE 60s: Count=1, Max=1, Min=1, Avg=1, 50=1, 99.5=1]");
+
+    // The windows keep the earlier interval while the snapshot only shows the latest one.
+    m.measureNanos(2000);
+    String summary = m.getSummary();
+    assertTrue(summary.startsWith("[UPDATE: Count=1, Max=2, Min=2"), summary);
+    assertTrue(summary.contains("[UPDATE 10s: Count=2, Max=2, Min=1"), summary);
+    assertTrue(summary.contains("[UPDATE 60s: Count=2, Max=2, Min=1"), summary);
+  }
+
+  @Test
+  public void testInvalidWindowsAreIgnored() {
+    Properties props = new Properties();
+    props.put(OneMeasurementHdrHistogram.STATUS_PERCENTILES_PROPERTY, "50");
+    props.put(OneMeasurementHdrHistogram.STATUS_WINDOWS_PROPERTY, "0,-5,x,10");
+    OneMeasurementHdrHistogram m = new OneMeasurementHdrHistogram("READ", props);
+    m.measureNanos(1000);
+    assertEquals(m.getSummary(), "[READ: Count=1, Max=1, Min=1, Avg=1, 50=1]"
+        + " [READ 10s: Count=1, Max=1, Min=1, Avg=1, 50=1]");
+  }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.workloads;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import site.ycsb.ByteIterator;
+import site.ycsb.Client;
+import site.ycsb.DB;
+import site.ycsb.Status;
+import site.ycsb.WorkloadException;
+import site.ycsb.measurements.Measurements;
+
+public class TestChurnWorkload {
+
+  @Test
+  public void deletesOldest() throws Exception {
+    final ChurnWorkload workload = workload("oldest", "1");
+    final KeySetDB db = load(workload);
+    for (int i = 0; i < 100; i++) {
+      assertTrue(workload.doTransaction(db, null));
+    }
+    assertEquals(db.keys.size(), 20);
+    for (int i = 100; i < 120; i++) {
+      assertTrue(db.keys.contains("user" + i), "user" + i);
+    }
+  }
+
+  @Test
+  public void deletesRandom() throws Exception {
+    final ChurnWorkload workload = workload("random", "1");
+    final KeySetDB db = load(workload);
+    for (int i = 0; i < 100; i++) {
+      assertTrue(workload.doTransaction(db, null));
+    }
+    assertEquals(db.keys.size(), 20);
+    assertTrue(db.keys.contains("user119"));
+  }
+
+  @Test
+  public void readsLiveKeys() throws Exception {
+    for (String order : new String[] {"oldest", "random"}) {
+      final ChurnWorkload workload = workload(order, "0.5");
+      final KeySetDB db = load(workload);
+      for (int i = 0; i < 1000; i++) {
+        assertTrue(workload.doTransaction(db, null));
+      }
+      assertEquals(db.keys.size(), 20);
+      assertTrue(db.reads.get() > 0);
+      assertEquals(db.misses.get(), 0, order);
+    }
+  }
+
+  @Test
+  public void concurrentChurn() throws Exception {
+    for (String order : new String[] {"oldest", "random"}) {
+      final ChurnWorkload workload = workload(order, "0.5");
+      final KeySetDB db = load(workload);
+      final Thread[] threads = new Thread[4];
+      for (int t = 0; t < threads.length; t++) {
+        threads[t] = new Thread() {
+          @Override
+          public void run() {
+            for (int i = 0; i < 2000; i++) {
+              workload.doTransaction(db, null);
+            }
+          }
+        };
+        threads[t].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertEquals(db.keys.size(), 20, order);
+    }
+  }
+
+  @Test
+  public void slowInsertHoldsDeletes() throws Exception {
+    final ChurnWorkload workload = workload("oldest", "0.5");
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final KeySetDB db = new KeySetDB() {
+      @Override
+      public Status insert(String table, String key, Map<String, ByteIterator> values) {
+        if (key.equals("user20")) {
+          entered.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.insert(table, key, values);
+      }
+    };
+    for (int i = 0; i < 20; i++) {
+      assertTrue(workload.doInsert(db, null));
+    }
+    final Thread slow = new Thread() {
+      @Override
+      public void run() {
+        workload.doTransactionChurn(db);
+      }
+    };
+    slow.start();
+    entered.await();
+
+    for (int i = 0; i < 200; i++) {
+      assertTrue(workload.doTransaction(db, null));
+    }
+    assertTrue(db.keys.size() > 20);
+    assertTrue(db.keys.contains("user0"));
+    assertEquals(db.misses.get(), 0);
+
+    release.countDown();
+    slow.join();
+    assertEquals(db.keys.size(), 20);
+  }
+
+  @Test (expectedExceptions = WorkloadException.class)
+  public void unknownOrder() throws Exception {
+    workload("newest", "1");
+  }
+
+  private static ChurnWorkload workload(String order, String churnproportion) throws WorkloadException {
+    final Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "20");
+    p.setProperty(CoreWorkload.INSERT_ORDER_PROPERTY, "ordered");
+    p.setProperty(CoreWorkload.REQUEST_DISTRIBUTION_PROPERTY, "uniform");
+    p.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "1");
+    p.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    p.setProperty(CoreWorkload.FIELD_COUNT_PROPERTY, "1");
+    p.setProperty(ChurnWorkload.CHURN_PROPORTION_PROPERTY, churnproportion);
+    p.setProperty(ChurnWorkload.CHURN_ORDER_PROPERTY, order);
+    if (churnproportion.equals("1")) {
+      p.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "0");
+    }
+    Measurements.setProperties(p);
+    final ChurnWorkload workload = new ChurnWorkload();
+    workload.init(p);
+    return workload;
+  }
+
+  private static KeySetDB load(ChurnWorkload workload) {
+    final KeySetDB db = new KeySetDB();
+    for (int i = 0; i < 20; i++) {
+      assertTrue(workload.doInsert(db, null));
+    }
+    return db;
+  }
+
+  /**
+   * Keeps the keys of the records only, and counts reads of missing ones.
+   */
+  private static class KeySetDB extends DB {
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger reads = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      reads.incrementAndGet();
+      if (!keys.contains(key)) {
+        misses.incrementAndGet();
+        return Status.NOT_FOUND;
+      }
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      keys.add(key);
+      return Status.OK;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return keys.remove(key) ? Status.OK : Status.NOT_FOUND;
+    }
+  }
+}
@@ -16,13 +16,36 @@
  */
 package site.ycsb.workloads;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.testng.annotations.Test;
 
+import site.ycsb.ByteArrayByteIterator;
+import site.ycsb.ByteIterator;
+import site.ycsb.DB;
+import site.ycsb.Status;
+import site.ycsb.StringByteIterator;
+import site.ycsb.WorkloadException;
 import site.ycsb.generator.DiscreteGenerator;
+import site.ycsb.measurements.Measurements;
+import site.ycsb.measurements.exporter.TextMeasurementsExporter;
 
 public class TestCoreWorkload {
 
@@ -67,4 +90,337 @@ public class TestCoreWorkload {
   public void createOperationChooserNullProperties() {
     CoreWorkload.createOperationGenerator(null);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void customOperation() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(CoreWorkload.OPERATIONS_PROPERTY, "MARK:" + MarkOperation.class.getName());
+    p.setProperty("markproportion", "1");
+    p.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "0");
+    p.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    p.setProperty("recordcount", "10");
+    Measurements.setProperties(p);
+    final CoreWorkload workload = new CoreWorkload();
+    workload.init(p);
+
+    final CapturingDB db = new CapturingDB();
+    for (int i = 0; i < 5; i++) {
+      assertTrue(workload.doTransaction(db, null));
+    }
+    assertEquals(db.maps.size(), 5);
+    assertEquals(db.values.get(0), "usertable");
+  }
+
+  @Test (expectedExceptions = WorkloadException.class)
+  public void customOperationUnknownClass() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(CoreWorkload.OPERATIONS_PROPERTY, "MARK:site.ycsb.NoSuchOperation");
+    Measurements.setProperties(p);
+    new CoreWorkload().init(p);
+  }
+
+  @Test
+  public void noOperations() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "0");
+    p.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    Measurements.setProperties(p);
+    final CoreWorkload workload = new CoreWorkload();
+    workload.init(p);
+    assertFalse(workload.doTransaction(new CapturingDB(), null));
+  }
+
+  /**
+   * Writes the table name to a key chosen by the workload.
+   */
+  public static class MarkOperation implements CoreOperation {
+    private String table;
+
+    @Override
+    public void init(CoreWorkload workload, Properties p) {
+      table = workload.getTable();
+    }
+
+    @Override
+    public void execute(CoreWorkload workload, DB db) {
+      final Map<String, ByteIterator> values = new HashMap<>();
+      values.put("field0", new StringByteIterator(table));
+      db.update(table, workload.nextKeyName(), values);
+    }
+  }
+
+  @Test
+  public void pooledValuesReuseRecord() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(CoreWorkload.FIELD_COUNT_PROPERTY, "3");
+    p.setProperty(CoreWorkload.FIELD_LENGTH_PROPERTY, "64");
+    p.setProperty(CoreWorkload.POOLED_VALUES_PROPERTY, "true");
+    p.setProperty("recordcount", "10");
+    Measurements.setProperties(p);
+    final CoreWorkload workload = new CoreWorkload();
+    workload.init(p);
+
+    final CapturingDB db = new CapturingDB();
+    assertTrue(workload.doInsert(db, null));
+    assertTrue(workload.doInsert(db, null));
+
+    assertEquals(db.maps.size(), 2);
+    assertSame(db.maps.get(0), db.maps.get(1));
+    assertEquals(db.values.size(), 6);
+    for (String value : db.values) {
+      assertEquals(value.length(), 64);
+      for (char c : value.toCharArray()) {
+        assertTrue(c >= ' ' && c <= '_');
+      }
+    }
+    assertNotEquals(db.values.get(0), db.values.get(3));
+  }
+
+  @Test (expectedExceptions = WorkloadException.class)
+  public void incrementsWithIntegrity() throws Exception {
+    final Properties p = checksumProperties("1000");
+    p.setProperty(CoreWorkload.INCREMENT_PROPORTION_PROPERTY, "0.1");
+    checksumWorkload(p);
+  }
+
+  @Test
+  public void checksumIntegrity() throws Exception {
+    final CoreWorkload workload = checksumWorkload("1000");
+    final StoreDB db = new StoreDB();
+    assertTrue(workload.doInsert(db, null));
+    workload.doTransactionRead(db);
+    workload.doTransactionUpdate(db);
+    workload.doTransactionRead(db);
+    String report = verifyReport();
+    assertTrue(report.contains("[VERIFY], Return=OK, 2"));
+
+    db.loseUpdates = true;
+    workload.doTransactionUpdate(db);
+    workload.doTransactionRead(db);
+    report = verifyReport();
+    assertTrue(report.contains("[VERIFY], Return=STALE_READ, 1"));
+    assertFalse(report.contains("LOST_UPDATE"));
+
+    final byte[] value = db.rows.get("user0").get("field1");
+    value[value.length - 1] ^= 1;
+    workload.doTransactionRead(db);
+    assertTrue(verifyReport().contains("[VERIFY], Return=UNEXPECTED_STATE, 1"));
+  }
+
+  @Test
+  public void checksumIntegrityLostUpdate() throws Exception {
+    final CoreWorkload workload = checksumWorkload("0");
+    final StoreDB db = new StoreDB();
+    assertTrue(workload.doInsert(db, null));
+    final int lost = verifyCount("LOST_UPDATE");
+    db.loseUpdates = true;
+    workload.doTransactionUpdate(db);
+    Thread.sleep(1);
+    workload.doTransactionRead(db);
+    assertEquals(verifyCount("LOST_UPDATE"), lost + 1);
+  }
+
+  @Test
+  public void checksumIntegrityFailedWritesExpire() throws Exception {
+    final Properties p = checksumProperties("0");
+    p.setProperty(CoreWorkload.WRITE_ALL_FIELDS_PROPERTY, "true");
+    final CoreWorkload workload = checksumWorkload(p);
+    final StoreDB db = new StoreDB();
+    assertTrue(workload.doInsert(db, null));
+    db.failUpdates = true;
+    workload.doTransactionUpdate(db);
+    Thread.sleep(1);
+
+    // The failed update no longer holds back the floor, so the lost one is noticed.
+    db.failUpdates = false;
+    workload.doTransactionUpdate(db);
+    final int lost = verifyCount("LOST_UPDATE");
+    db.loseUpdates = true;
+    workload.doTransactionUpdate(db);
+    Thread.sleep(1);
+    workload.doTransactionRead(db);
+    assertEquals(verifyCount("LOST_UPDATE"), lost + 1);
+  }
+
+  @Test
+  public void versionFileCarriesVersionsToTheRun() throws Exception {
+    final Path file = Files.createTempFile("versions", null);
+    try {
+      // A load phase that wrote its versions far ahead of the clock.
+      Files.write(file, "100000000000000".getBytes(StandardCharsets.UTF_8));
+      final Properties p = checksumProperties("0");
+      p.setProperty(CoreWorkload.DATA_INTEGRITY_VERSION_FILE_PROPERTY, file.toString());
+      final CoreWorkload load = checksumWorkload(p);
+      final StoreDB db = new StoreDB();
+      assertTrue(load.doInsert(db, null));
+      load.cleanup();
+      assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "100000000000001");
+
+      // The run continues above the loaded versions, so an update lost before any read is still noticed.
+      final CoreWorkload run = checksumWorkload(p);
+      final int lost = verifyCount("LOST_UPDATE");
+      db.loseUpdates = true;
+      run.doTransactionUpdate(db);
+      Thread.sleep(1);
+      run.doTransactionRead(db);
+      assertEquals(verifyCount("LOST_UPDATE"), lost + 1);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void settledKeysAreForgotten() {
+    final VersionTracker tracker = new VersionTracker(new AtomicLong(1), 1, 10);
+    final long pending = tracker.begin("pending", VersionTracker.ALL_FIELDS);
+    for (int i = 0; i < 2000; i++) {
+      final String key = "user" + i;
+      tracker.end(key, tracker.begin(key, VersionTracker.ALL_FIELDS), true, i);
+    }
+    // Swept at the 1024th write, forgetting the keys acknowledged more than 10ns before it.
+    assertEquals(tracker.size(), 2001 - 1013);
+    assertEquals(tracker.staleness("user0", 0, 0, 2000), VersionTracker.CURRENT);
+    assertEquals(tracker.staleness("user1999", 0, 0, 2000), 1);
+
+    // A forgotten key is tracked again once written.
+    tracker.end("user0", tracker.begin("user0", VersionTracker.ALL_FIELDS), true, 2000);
+    assertEquals(tracker.staleness("user0", 0, 0, 2001), 1);
+    // The key with a write pending was kept.
+    tracker.end("pending", pending, true, 2000);
+    assertEquals(tracker.staleness("pending", 0, 0, 2001), 1);
+  }
+
+  private static CoreWorkload checksumWorkload(final String stalenessBound) throws Exception {
+    return checksumWorkload(checksumProperties(stalenessBound));
+  }
+
+  private static CoreWorkload checksumWorkload(final Properties p) throws Exception {
+    Measurements.setProperties(p);
+    final CoreWorkload workload = new CoreWorkload();
+    workload.init(p);
+    return workload;
+  }
+
+  private static Properties checksumProperties(final String stalenessBound) {
+    final Properties p = new Properties();
+    p.setProperty("recordcount", "1");
+    p.setProperty(CoreWorkload.FIELD_COUNT_PROPERTY, "2");
+    p.setProperty(CoreWorkload.FIELD_LENGTH_PROPERTY, "100");
+    p.setProperty(CoreWorkload.FIELD_LENGTH_DISTRIBUTION_PROPERTY, "uniform");
+    p.setProperty(CoreWorkload.INSERT_ORDER_PROPERTY, "ordered");
+    p.setProperty(CoreWorkload.DATA_INTEGRITY_PROPERTY, "true");
+    p.setProperty(CoreWorkload.DATA_INTEGRITY_MODE_PROPERTY, "checksum");
+    p.setProperty(CoreWorkload.DATA_INTEGRITY_STALENESS_BOUND_PROPERTY, stalenessBound);
+    return p;
+  }
+
+  private static int verifyCount(final String status) throws Exception {
+    final String prefix = "[VERIFY], Return=" + status + ", ";
+    for (String line : verifyReport().split("\n")) {
+      if (line.startsWith(prefix)) {
+        return Integer.parseInt(line.substring(prefix.length()).trim());
+      }
+    }
+    return 0;
+  }
+
+  private static String verifyReport() throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (TextMeasurementsExporter exporter = new TextMeasurementsExporter(out)) {
+      Measurements.getMeasurements().exportMeasurements(exporter);
+    }
+    return out.toString("UTF-8");
+  }
+
+  /**
+   * Keeps records in memory, optionally acknowledging updates without applying them.
+   */
+  private static class StoreDB extends DB {
+    private final Map<String, Map<String, byte[]>> rows = new HashMap<>();
+    private boolean loseUpdates;
+    private boolean failUpdates;
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      final Map<String, byte[]> row = rows.get(key);
+      if (row == null) {
+        return Status.NOT_FOUND;
+      }
+      for (Map.Entry<String, byte[]> field : row.entrySet()) {
+        if (fields == null || fields.contains(field.getKey())) {
+          result.put(field.getKey(), new ByteArrayByteIterator(field.getValue()));
+        }
+      }
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.NOT_IMPLEMENTED;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      if (failUpdates) {
+        return Status.ERROR;
+      }
+      if (!loseUpdates) {
+        for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+          rows.get(key).put(value.getKey(), value.getValue().toArray());
+        }
+      }
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      rows.put(key, new HashMap<String, byte[]>());
+      return update(table, key, values);
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      rows.remove(key);
+      return Status.OK;
+    }
+  }
+
+  /**
+   * Consumes every written value as the contract requires: before returning.
+   */
+  private static class CapturingDB extends DB {
+    private final List<Map<String, ByteIterator>> maps = new ArrayList<>();
+    private final List<String> values = new ArrayList<>();
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> v) {
+      return insert(table, key, v);
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> v) {
+      maps.add(v);
+      for (ByteIterator value : v.values()) {
+        values.add(value.toString());
+      }
+      return Status.OK;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return Status.OK;
+    }
+  }
+}
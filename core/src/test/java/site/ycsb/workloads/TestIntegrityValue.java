@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.workloads;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import site.ycsb.ByteArrayByteIterator;
+
+public class TestIntegrityValue {
+  private final IntegrityValue integrity = new IntegrityValue(42);
+
+  @Test
+  public void roundTrip() {
+    final int keyHash = integrity.keyHash("user1");
+    for (int length : new int[] {1, 32, 33, 100, 1000}) {
+      final byte[] value = integrity.encode(keyHash, 3, 12345, length);
+      assertEquals(value.length, Math.max(length, IntegrityValue.HEADER_LENGTH));
+      for (byte b : value) {
+        assertTrue(b >= ' ' && b <= '~');
+      }
+      assertEquals(integrity.verify(new ByteArrayByteIterator(value), keyHash, 3), 12345);
+    }
+  }
+
+  @Test
+  public void detectsCorruption() {
+    final int keyHash = integrity.keyHash("user1");
+    final byte[] value = integrity.encode(keyHash, 3, IntegrityValue.MAX_VERSION, 100);
+    assertEquals(integrity.verify(new ByteArrayByteIterator(value), keyHash, 3), IntegrityValue.MAX_VERSION);
+    assertEquals(integrity.verify(new ByteArrayByteIterator(value), integrity.keyHash("user2"), 3),
+        IntegrityValue.INVALID);
+    assertEquals(integrity.verify(new ByteArrayByteIterator(value), keyHash, 4), IntegrityValue.INVALID);
+    assertEquals(integrity.verify(new ByteArrayByteIterator(value, 0, 99), keyHash, 3), IntegrityValue.INVALID);
+    assertEquals(integrity.verify(new ByteArrayByteIterator(value, 0, 20), keyHash, 3), IntegrityValue.INVALID);
+
+    for (int i = 0; i < value.length; i++) {
+      value[i] ^= 1;
+      assertEquals(integrity.verify(new ByteArrayByteIterator(value), keyHash, 3), IntegrityValue.INVALID);
+      value[i] ^= 1;
+    }
+  }
+
+  @Test
+  public void valuesDifferByVersion() {
+    final int keyHash = integrity.keyHash("user1");
+    final String first = new String(integrity.encode(keyHash, 0, 1, 100));
+    final String second = new String(integrity.encode(keyHash, 0, 2, 100));
+    assertTrue(!first.substring(IntegrityValue.HEADER_LENGTH).equals(second.substring(IntegrityValue.HEADER_LENGTH)));
+  }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2017 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package site.ycsb.workloads;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+import org.testng.annotations.Test;
+
+import site.ycsb.ByteArrayByteIterator;
+import site.ycsb.ByteIterator;
+import site.ycsb.Client;
+import site.ycsb.DB;
+import site.ycsb.Status;
+import site.ycsb.WorkloadException;
+import site.ycsb.measurements.Measurements;
+import site.ycsb.measurements.exporter.TextMeasurementsExporter;
+
+public class TestStalenessWorkload {
+
+  @Test
+  public void measuresVersionsBehind() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "1");
+    Measurements.setProperties(p);
+    final StalenessWorkload workload = new StalenessWorkload();
+    workload.init(p);
+    final Object writer = workload.initThread(p, 0, 2);
+    final Object reader = workload.initThread(p, 1, 2);
+    final LaggingDB db = new LaggingDB(2);
+    assertTrue(workload.doInsert(db, null));
+    final Measurements measurements = Measurements.getMeasurements();
+    final long reads = measurements.getCount("READ-VERSIONS-BEHIND", "Reads");
+    final long versions = measurements.getCount("READ-VERSIONS-BEHIND", "Versions");
+
+    workload.doTransaction(db, reader);
+    for (int i = 0; i < 5; i++) {
+      workload.doTransaction(db, writer);
+    }
+    workload.doTransaction(db, reader);
+
+    final String report = report();
+    assertTrue(report.contains("[READ-STALENESS], Return=OK, 1"), report);
+    assertTrue(report.contains("[READ-STALENESS], Return=STALE_READ, 1"), report);
+    assertEquals(measurements.getCount("READ-VERSIONS-BEHIND", "Reads"), reads + 2);
+    assertEquals(measurements.getCount("READ-VERSIONS-BEHIND", "Versions"), versions + 2);
+    assertTrue(report.contains("[READ-VERSIONS-BEHIND], Max, 2"), report);
+    assertTrue(report.contains("[READ-VERSIONS-BEHIND], Average, "), report);
+  }
+
+  @Test
+  public void parsesValues() throws Exception {
+    final Properties p = new Properties();
+    final StalenessWorkload workload = new StalenessWorkload();
+    workload.init(p);
+    assertEquals(workload.parseVersion(value("1:7:123:xyz")), 0);
+    assertEquals(workload.parseVersion(value("1:7")), -1);
+    assertEquals(workload.parseVersion(value("abc")), -1);
+    assertEquals(workload.parseVersion(null), -1);
+  }
+
+  @Test(expectedExceptions = WorkloadException.class)
+  public void needsReaders() throws Exception {
+    final Properties p = new Properties();
+    final StalenessWorkload workload = new StalenessWorkload();
+    workload.init(p);
+    workload.initThread(p, 0, 1);
+  }
+
+  @Test
+  public void historyMustFitAnArray() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "100000000");
+    p.setProperty(StalenessWorkload.HISTORY_PROPERTY, "64");
+    try {
+      new StalenessWorkload().init(p);
+      fail("accepted more version times than an array holds");
+    } catch (WorkloadException e) {
+      assertTrue(e.getMessage().contains(StalenessWorkload.HISTORY_PROPERTY), e.getMessage());
+    }
+  }
+
+  private static ByteIterator value(final String s) {
+    return new ByteArrayByteIterator(s.getBytes());
+  }
+
+  private static String report() throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (TextMeasurementsExporter exporter = new TextMeasurementsExporter(out)) {
+      Measurements.getMeasurements().exportMeasurements(exporter);
+    }
+    return out.toString("UTF-8");
+  }
+
+  /**
+   * Reads return the value written a fixed number of writes before the latest.
+   */
+  private static class LaggingDB extends DB {
+    private final int lag;
+    private final Map<String, List<byte[]>> writes = new HashMap<>();
+
+    LaggingDB(final int lag) {
+      this.lag = lag;
+    }
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      final List<byte[]> values = writes.get(key);
+      final byte[] value = values.get(Math.max(0, values.size() - 1 - lag));
+      result.put(StalenessWorkload.FIELD, new ByteArrayByteIterator(value));
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.NOT_IMPLEMENTED;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      writes.get(key).add(values.get(StalenessWorkload.FIELD).toArray());
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      writes.put(key, new ArrayList<byte[]>());
+      return update(table, key, values);
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return Status.NOT_IMPLEMENTED;
+    }
+  }
+}
@@ -22,8 +22,11 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -39,9 +42,12 @@ import site.ycsb.DB;
 import site.ycsb.NumericByteIterator;
 import site.ycsb.Status;
 import site.ycsb.StringByteIterator;
+import site.ycsb.TimeseriesBatch;
+import site.ycsb.TimeseriesBatchWriter;
 import site.ycsb.Utils;
 import site.ycsb.WorkloadException;
 import site.ycsb.measurements.Measurements;
+import site.ycsb.measurements.exporter.TextMeasurementsExporter;
 
 import org.testng.annotations.Test;
 
@@ -388,6 +394,147 @@ public class TestTimeSeriesWorkload {
     }
   }
   
+  @Test
+  public void independentIngestionLatePoints() throws Exception {
+    final Properties p = getUTProperties();
+    p.put(TimeSeriesWorkload.INGESTION_MODE_PROPERTY, "independent");
+    p.put(TimeSeriesWorkload.SERIES_INTERVAL_MULTIPLES_PROPERTY, "3");
+    p.put(TimeSeriesWorkload.SERIES_JITTER_PROPERTY, "0.2");
+    p.put(TimeSeriesWorkload.LATE_POINTS_PROPERTY, "0.3");
+    final TimeSeriesWorkload wl = getWorkload(p, true);
+    final Object threadState = wl.initThread(p, 0, 1);
+    
+    final MockDB db = new MockDB();
+    for (int i = 0; i < 400; i++) {
+      assertTrue(wl.doInsert(db, threadState));
+    }
+    
+    final Set<String> series = new HashSet<String>();
+    int outOfOrder = 0;
+    long last = 0;
+    for (int i = 0; i < db.keys.size(); i++) {
+      series.add(db.keys.get(i) + db.values.get(i).get("AB").toString());
+      final long timestamp = ((NumericByteIterator) db.values.get(i).get("YCSBTS")).getLong();
+      assertTrue(timestamp >= 1451606400);
+      if (timestamp < last) {
+        ++outOfOrder;
+      }
+      last = Math.max(last, timestamp);
+    }
+    assertEquals(series.size(), 4);
+    assertTrue(outOfOrder > 0);
+  }
+  
+  @Test
+  public void independentIngestionBackfill() throws Exception {
+    final Properties p = getUTProperties();
+    p.put(TimeSeriesWorkload.INGESTION_MODE_PROPERTY, "independent");
+    p.put(TimeSeriesWorkload.BACKFILL_PROBABILITY_PROPERTY, "0.3");
+    p.put(TimeSeriesWorkload.BACKFILL_SIZE_PROPERTY, "3");
+    final TimeSeriesWorkload wl = getWorkload(p, true);
+    final Object threadState = wl.initThread(p, 0, 1);
+    
+    final MockDB db = new MockDB();
+    for (int i = 0; i < 200; i++) {
+      assertTrue(wl.doInsert(db, threadState));
+    }
+    
+    // Without late points every point older than the newest one seen by more
+    // than an interval must come from a backfill.
+    int backfilled = 0;
+    long newest = 0;
+    final Map<String, List<Long>> series = new HashMap<String, List<Long>>();
+    for (int i = 0; i < db.keys.size(); i++) {
+      final long timestamp = ((NumericByteIterator) db.values.get(i).get("YCSBTS")).getLong();
+      if (timestamp < newest - 60) {
+        ++backfilled;
+      }
+      newest = Math.max(newest, timestamp);
+      final String name = db.keys.get(i) + db.values.get(i).get("AB").toString();
+      if (!series.containsKey(name)) {
+        series.put(name, new ArrayList<Long>());
+      }
+      series.get(name).add(timestamp);
+    }
+    assertTrue(backfilled > 0);
+    
+    // Held back reports fill the gap of the outage, so each series reports
+    // every interval exactly once.
+    assertEquals(series.size(), 4);
+    for (final List<Long> timestamps : series.values()) {
+      Collections.sort(timestamps);
+      for (int i = 1; i < timestamps.size(); i++) {
+        assertEquals(timestamps.get(i) - timestamps.get(i - 1), 60L);
+      }
+    }
+  }
+  
+  @Test (expectedExceptions = WorkloadException.class)
+  public void badIngestionMode() throws Exception {
+    final Properties p = getUTProperties();
+    p.put(TimeSeriesWorkload.INGESTION_MODE_PROPERTY, "bogus");
+    getWorkload(p, true);
+  }
+  
+  @Test
+  public void batchedInserts() throws Exception {
+    final Properties p = getUTProperties();
+    p.put(TimeSeriesWorkload.BATCH_SIZE_PROPERTY, "4");
+    p.put(TimeSeriesWorkload.VALUE_TYPE_PROPERTY, "integers");
+    final TimeSeriesWorkload wl = getWorkload(p, true);
+    final Object threadState = wl.initThread(p, 0, 1);
+    
+    final MockBatchDB db = new MockBatchDB();
+    for (int i = 0; i < 10; i++) {
+      assertTrue(wl.doInsert(db, threadState));
+    }
+    assertEquals(db.batchSizes.size(), 2);
+    wl.cleanupThread(db, threadState);
+    assertEquals(db.batchSizes.size(), 3);
+    assertEquals(db.batchSizes.get(2).intValue(), 2);
+    assertTrue(db.keys.isEmpty());
+    
+    // Same order as the unbatched insertTwoKeysTwoTagsLowCardinality test.
+    assertEquals(db.points.get(0), "AAAA AAAA AAAA 1451606400");
+    assertEquals(db.points.get(1), "AAAA AAAA AAAB 1451606400");
+    assertEquals(db.points.get(2), "AAAB AAAA AAAA 1451606400");
+  }
+  
+  @Test
+  public void lingeringBatchSentByNextOperation() throws Exception {
+    final Properties p = getUTProperties();
+    p.put(TimeSeriesWorkload.BATCH_SIZE_PROPERTY, "4");
+    p.put(TimeSeriesWorkload.BATCH_LINGER_PROPERTY, "1");
+    p.put(CoreWorkload.READ_PROPORTION_PROPERTY, "1");
+    p.put(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    p.put(CoreWorkload.INSERT_PROPORTION_PROPERTY, "0");
+    final TimeSeriesWorkload wl = getWorkload(p, true);
+    final Object threadState = wl.initThread(p, 0, 1);
+    
+    final MockBatchDB db = new MockBatchDB();
+    assertTrue(wl.doInsert(db, threadState));
+    Thread.sleep(5);
+    // A read, not an insert, finds the point has waited long enough.
+    assertTrue(wl.doTransaction(db, threadState));
+    assertEquals(db.batchSizes.size(), 1);
+    assertEquals(db.batchSizes.get(0).intValue(), 1);
+  }
+  
+  @Test
+  public void batchedInsertsFallBackWithoutBatchSupport() throws Exception {
+    final Properties p = getUTProperties();
+    p.put(TimeSeriesWorkload.BATCH_SIZE_PROPERTY, "4");
+    final TimeSeriesWorkload wl = getWorkload(p, true);
+    final Object threadState = wl.initThread(p, 0, 1);
+    
+    final MockDB db = new MockDB();
+    for (int i = 0; i < 10; i++) {
+      assertTrue(wl.doInsert(db, threadState));
+    }
+    wl.cleanupThread(db, threadState);
+    assertEquals(db.keys.size(), 10);
+  }
+  
   @Test
   public void read() throws Exception {
     final Properties p = getUTProperties();
@@ -400,6 +547,103 @@ public class TestTimeSeriesWorkload {
     }
   }
   
+  @Test
+  public void readQueryFields() throws Exception {
+    final Properties p = getUTProperties();
+    p.put(TimeSeriesWorkload.DOWNSAMPLING_FUNCTION_PROPERTY, "sum");
+    p.put(TimeSeriesWorkload.DOWNSAMPLING_INTERVAL_PROPERTY, "60");
+    final TimeSeriesWorkload wl = getWorkload(p, true);
+    final Object threadState = wl.initThread(p, 0, 1);
+    
+    final MockDB db = new MockDB();
+    for (int i = 0; i < 10; i++) {
+      wl.doTransactionRead(db, threadState);
+    }
+    assertEquals(db.readFields.size(), 10);
+    for (final Set<String> fields : db.readFields) {
+      assertEquals(fields.size(), 4);
+      assertTrue(fields.contains("AA=AAAA"));
+      assertTrue(fields.contains("AB=AAAA") || fields.contains("AB=AAAB"));
+      assertTrue(fields.contains("YCSBDS=sum60"));
+    }
+  }
+  
+  @Test
+  public void dashboardRefresh() throws Exception {
+    final Properties p = getUTProperties();
+    p.put(TimeSeriesWorkload.DASHBOARD_PROPORTION_PROPERTY, "1");
+    p.put(TimeSeriesWorkload.DASHBOARD_COUNT_PROPERTY, "1");
+    p.put(TimeSeriesWorkload.DASHBOARD_PANELS_PROPERTY, "5");
+    p.put(TimeSeriesWorkload.DASHBOARD_REFRESH_PROPERTY, "3600");
+    p.put(TimeSeriesWorkload.DASHBOARD_TIMESPAN_PROPERTY, "600");
+    p.put(TimeSeriesWorkload.DASHBOARD_TOPN_PROPORTION_PROPERTY, "0.5");
+    p.put(TimeSeriesWorkload.DASHBOARD_RATE_PROPORTION_PROPERTY, "0.5");
+    p.put(TimeSeriesWorkload.DASHBOARD_FUNCTIONS_PROPERTY, "SUM");
+    final TimeSeriesWorkload wl = getWorkload(p, true);
+    final Object threadState = wl.initThread(p, 0, 1);
+    
+    final MockDB db = new MockDB();
+    wl.doTransactionDashboard(db, threadState);
+    wl.doTransactionDashboard(db, threadState);
+    assertEquals(db.readFields.size(), 10);
+    // Both refreshes fall in the same period so they issue identical queries.
+    assertEquals(db.readFields.subList(0, 5), db.readFields.subList(5, 10));
+    assertEquals(db.keys.subList(0, 5), db.keys.subList(5, 10));
+    
+    // 10 records over 4 series load 3 intervals, the range ends at the last one.
+    final String range = "YCSBTS=" + (1451606400L + 120 - 600) + "," + (1451606400L + 120);
+    for (final Set<String> fields : db.readFields) {
+      assertTrue(fields.contains(range));
+      assertTrue(fields.contains("YCSBGB=SUM"));
+      assertTrue(fields.contains("AA") || fields.contains("AB"));
+      boolean extra = false;
+      for (final String field : fields) {
+        extra |= field.equals("YCSBTOPN=10") || field.equals("YCSBRATE=rate") 
+            || field.equals("YCSBRATE=derivative");
+      }
+      assertTrue(extra);
+    }
+  }
+  
+  @Test
+  public void dashboardStatus() throws Exception {
+    final Properties p = getUTProperties();
+    p.put(TimeSeriesWorkload.DASHBOARD_PROPORTION_PROPERTY, "1");
+    p.put(TimeSeriesWorkload.DASHBOARD_COUNT_PROPERTY, "1");
+    p.put(TimeSeriesWorkload.DASHBOARD_PANELS_PROPERTY, "3");
+    final TimeSeriesWorkload wl = getWorkload(p, true);
+    final Object threadState = wl.initThread(p, 0, 1);
+    
+    // The second panel of the second refresh fails.
+    final MockDB db = new MockDB() {
+      @Override
+      public Status scan(String table, String startkey, int recordcount,
+          Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
+        super.scan(table, startkey, recordcount, fields, result);
+        return readFields.size() == 5 ? Status.SERVICE_UNAVAILABLE : Status.OK;
+      }
+    };
+    wl.doTransactionDashboard(db, threadState);
+    wl.doTransactionDashboard(db, threadState);
+    assertEquals(db.readFields.size(), 6);
+    
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (TextMeasurementsExporter exporter = new TextMeasurementsExporter(out)) {
+      wl.measurements.exportMeasurements(exporter);
+    }
+    final String report = out.toString("UTF-8");
+    assertTrue(report.contains("[DASHBOARD], Return=OK, "), report);
+    assertTrue(report.contains("[DASHBOARD], Return=SERVICE_UNAVAILABLE, 1"), report);
+  }
+  
+  @Test (expectedExceptions = WorkloadException.class)
+  public void dashboardBadFunction() throws Exception {
+    final Properties p = getUTProperties();
+    p.put(TimeSeriesWorkload.DASHBOARD_PROPORTION_PROPERTY, "1");
+    p.put(TimeSeriesWorkload.DASHBOARD_FUNCTIONS_PROPERTY, "SUM,median");
+    getWorkload(p, true);
+  }
+  
   @Test
   public void verifyRow() throws Exception {
     final Properties p = getUTProperties();
@@ -514,21 +758,42 @@ public class TestTimeSeriesWorkload {
     }
   }
   
+  static class MockBatchDB extends MockDB implements TimeseriesBatchWriter {
+    final List<Integer> batchSizes = new ArrayList<Integer>();
+    final List<String> points = new ArrayList<String>();
+    
+    @Override
+    public Status insertBatch(String table, TimeseriesBatch batch) {
+      batchSizes.add(batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+        final StringBuilder sb = new StringBuilder(batch.getMetric(i));
+        for (int t = 0; t < batch.getTagCount(); t++) {
+          sb.append(' ').append(batch.getTagValue(i, t));
+        }
+        points.add(sb.append(' ').append(batch.getTimestamp(i)).toString());
+      }
+      return Status.OK;
+    }
+  }
+  
   static class MockDB extends DB {
     final List<String> keys = new ArrayList<String>();
     final List<Map<String, ByteIterator>> values = 
         new ArrayList<Map<String, ByteIterator>>();
+    final List<Set<String>> readFields = new ArrayList<Set<String>>();
     
     @Override
     public Status read(String table, String key, Set<String> fields,
                        Map<String, ByteIterator> result) {
+      readFields.add(fields);
       return Status.OK;
     }
 
     @Override
     public Status scan(String table, String startkey, int recordcount,
         Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
-      // TODO Auto-generated method stub
+      keys.add(startkey);
+      readFields.add(fields);
       return Status.OK;
     }
 